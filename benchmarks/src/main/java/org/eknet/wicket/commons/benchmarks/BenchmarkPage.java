@@ -0,0 +1,53 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.benchmarks;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.eknet.wicket.commons.ComponentSupplier;
+
+/**
+ * A page that contains a single component created by the given supplier. It
+ * brings its own markup and is stateless, so rendering it many times does not
+ * fill up the page store.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 04:52
+ */
+public class BenchmarkPage extends WebPage implements IMarkupResourceStreamProvider {
+
+  public BenchmarkPage() {
+    this(null);
+  }
+
+  public BenchmarkPage(ComponentSupplier<?> content) {
+    if (content != null) {
+      add(content.get("content"));
+    } else {
+      add(new WebMarkupContainer("content"));
+    }
+  }
+
+  @Override
+  public IResourceStream getMarkupResourceStream(MarkupContainer container, Class<?> containerClass) {
+    return new StringResourceStream("<html><body><div wicket:id=\"content\"></div></body></html>");
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.benchmarks;
+
+import org.eknet.wicket.commons.ComponentSupplier;
+import org.eknet.wicket.commons.LabelSuppliers;
+import org.eknet.wicket.commons.components.DivContainer;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates and renders a {@link DivContainer} with a number of labels in both layouts.
+ * The bottom-up layout reverses the children on every render.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 05:04
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DivContainerBenchmark extends WicketBenchmark {
+
+  @Param
+  public DivContainer.Layout layout;
+
+  @Param({ "10", "100" })
+  public int items;
+
+  private ComponentSupplier<DivContainer> container;
+
+  @Override
+  protected void prepare() {
+    container = new ContainerSupplier(layout, items);
+  }
+
+  @Benchmark
+  public DivContainer create() {
+    return container.get("content");
+  }
+
+  @Benchmark
+  public String render() {
+    return render(container);
+  }
+
+  private static class ContainerSupplier implements ComponentSupplier<DivContainer> {
+
+    private final DivContainer.Layout layout;
+    private final int items;
+
+    private ContainerSupplier(DivContainer.Layout layout, int items) {
+      this.layout = layout;
+      this.items = items;
+    }
+
+    @NotNull
+    @Override
+    public DivContainer get(@NotNull String id) {
+      DivContainer container = new DivContainer(id, layout);
+      for (int i = 0; i < items; i++) {
+        container.add(LabelSuppliers.create("Item " + i));
+      }
+      return container;
+    }
+  }
+}
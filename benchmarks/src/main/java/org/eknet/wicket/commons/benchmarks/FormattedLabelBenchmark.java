@@ -0,0 +1,82 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.benchmarks;
+
+import org.eknet.wicket.commons.ComponentSupplier;
+import org.eknet.wicket.commons.components.FormattedLabel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders a {@link FormattedLabel} as plain text, with line breaks converted to html
+ * and wrapped in a format.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 05:01
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormattedLabelBenchmark extends WicketBenchmark {
+
+  public enum Kind {
+    SINGLE_LINE, MULTI_LINE, FORMATTED
+  }
+
+  private final static String text = "Lorem ipsum dolor sit amet, consectetur adipisici elit,\n"
+      + "sed eiusmod tempor incidunt ut labore et dolore magna aliqua.\n"
+      + "Ut enim ad minim veniam, quis nostrud exercitation ullamco laboris\n"
+      + "nisi ut aliquid ex ea commodi consequat.";
+
+  @Param
+  public Kind kind;
+
+  private ComponentSupplier<FormattedLabel> label;
+
+  @Override
+  protected void prepare() {
+    FormattedLabel.Builder builder = FormattedLabel.create().withText(text);
+    switch (kind) {
+      case MULTI_LINE:
+        builder.mulitLine(true);
+        break;
+      case FORMATTED:
+        builder.asParagraph("lead");
+        break;
+      default:
+    }
+    label = builder.freeze();
+  }
+
+  @Benchmark
+  public String render() {
+    return render(label);
+  }
+}
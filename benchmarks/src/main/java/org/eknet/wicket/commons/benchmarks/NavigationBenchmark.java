@@ -0,0 +1,83 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.benchmarks;
+
+import org.eknet.wicket.commons.ComponentSupplier;
+import org.eknet.wicket.commons.components.navlist.Navigation;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders a {@link Navigation} with bookmarkable links. Every item is wrapped
+ * in a list element by a {@code ListItemWrapper}.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 05:07
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NavigationBenchmark extends WicketBenchmark {
+
+  @Param({ "5", "50" })
+  public int items;
+
+  private ComponentSupplier<Navigation> navigation;
+
+  @Override
+  protected void prepare() {
+    navigation = new NavigationSupplier(items);
+  }
+
+  @Benchmark
+  public String render() {
+    return render(navigation);
+  }
+
+  private static class NavigationSupplier implements ComponentSupplier<Navigation> {
+
+    private final int items;
+
+    private NavigationSupplier(int items) {
+      this.items = items;
+    }
+
+    @NotNull
+    @Override
+    public Navigation get(@NotNull String id) {
+      Navigation navigation = new Navigation(id);
+      for (int i = 0; i < items; i++) {
+        navigation.addLinkItem(BenchmarkPage.class, "Item " + i);
+      }
+      return navigation;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.benchmarks;
+
+import org.apache.wicket.model.Model;
+import org.eknet.wicket.commons.ComponentSupplier;
+import org.eknet.wicket.commons.ComponentSuppliers;
+import org.eknet.wicket.commons.components.DivContainer;
+import org.eknet.wicket.commons.components.FormattedLabel;
+import org.eknet.wicket.commons.components.tab.TabPanelBuilder;
+import org.eknet.wicket.commons.devutils.SerializationSizeAnalyzer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes a page with a tabbed panel, whose tabs are held by the page. The tab
+ * contents are either mutable builders or shared suppliers, which are written as a
+ * reference only. Run it with {@code -prof gc} to compare the bytes allocated per
+ * serialization. The {@link SerializationSizeAnalyzer} gives the serialized size of
+ * the page and its details.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 05:16
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageSerializationBenchmark extends WicketBenchmark {
+
+  private final static int tabs = 10;
+
+  /**
+   * The shared tab contents. Names can be shared only once per owner, so they are
+   * created once for all trials and threads, like an application would do it.
+   */
+  private final static List<ComponentSupplier<DivContainer>> sharedTabs = createTabs(true);
+
+  @Param({ "false", "true" })
+  public boolean shared;
+
+  private BenchmarkPage page;
+
+  private static List<ComponentSupplier<DivContainer>> createTabs(boolean shared) {
+    List<ComponentSupplier<DivContainer>> contents = new ArrayList<ComponentSupplier<DivContainer>>(tabs);
+    for (int i = 0; i < tabs; i++) {
+      ComponentSupplier<DivContainer> content = DivContainer.create()
+          .add(FormattedLabel.create().withText("Tab " + i).asHeadline(2))
+          .add(FormattedLabel.create().withText("Content of tab " + i).asParagraph());
+      if (shared) {
+        content = ComponentSuppliers.freeze(content).share(PageSerializationBenchmark.class, "tab" + i);
+      }
+      contents.add(content);
+    }
+    return contents;
+  }
+
+  @Override
+  protected void prepare() {
+    List<ComponentSupplier<DivContainer>> contents = shared ? sharedTabs : createTabs(false);
+    TabPanelBuilder builder = new TabPanelBuilder();
+    for (int i = 0; i < tabs; i++) {
+      builder.addTab(contents.get(i), Model.of("Tab " + i));
+    }
+    page = new BenchmarkPage(builder);
+  }
+
+  @Benchmark
+  public int serialize() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(page);
+    out.close();
+    return bytes.size();
+  }
+}
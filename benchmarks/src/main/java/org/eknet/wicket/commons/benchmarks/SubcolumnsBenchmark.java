@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.benchmarks;
+
+import org.eknet.wicket.commons.ComponentSupplier;
+import org.eknet.wicket.commons.LabelSuppliers;
+import org.eknet.wicket.commons.yaml.SubcolumnDef;
+import org.eknet.wicket.commons.yaml.Subcolumns;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders {@link Subcolumns} with two to four columns, built from a mutable
+ * and from a frozen builder.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 05:09
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubcolumnsBenchmark extends WicketBenchmark {
+
+  private final static SubcolumnDef.ColumnDef[][] layouts = {
+      { SubcolumnDef.ColumnDef.L_50, SubcolumnDef.ColumnDef.R_50 },
+      { SubcolumnDef.ColumnDef.L_33, SubcolumnDef.ColumnDef.L_33, SubcolumnDef.ColumnDef.R_33 },
+      { SubcolumnDef.ColumnDef.L_25, SubcolumnDef.ColumnDef.L_25, SubcolumnDef.ColumnDef.L_25, SubcolumnDef.ColumnDef.R_25 }
+  };
+
+  @Param({ "2", "3", "4" })
+  public int columns;
+
+  private Subcolumns.Builder builder;
+  private ComponentSupplier<Subcolumns> frozen;
+
+  @Override
+  protected void prepare() {
+    builder = Subcolumns.create();
+    SubcolumnDef.ColumnDef[] defs = layouts[columns - 2];
+    for (int i = 0; i < defs.length; i++) {
+      builder.addColumn(SubcolumnDef.create()
+          .setColumnDef(defs[i])
+          .setContentLeft(LabelSuppliers.create("Column " + i)));
+    }
+    frozen = builder.freeze();
+  }
+
+  @Benchmark
+  public String renderBuilder() {
+    return render(builder);
+  }
+
+  @Benchmark
+  public String renderFrozen() {
+    return render(frozen);
+  }
+}
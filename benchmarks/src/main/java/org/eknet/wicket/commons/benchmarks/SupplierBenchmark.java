@@ -0,0 +1,92 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.benchmarks;
+
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.eknet.wicket.commons.ComponentSupplier;
+import org.eknet.wicket.commons.ComponentSuppliers;
+import org.eknet.wicket.commons.LabelSuppliers;
+import org.eknet.wicket.commons.components.FormattedLabel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates components with the reflective {@link ComponentSuppliers.Builder}, with
+ * generated suppliers and with plain constructor calls.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 04:57
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SupplierBenchmark extends WicketBenchmark {
+
+  private IModel<String> model;
+  private ComponentSupplier<Label> reflective;
+  private ComponentSupplier<Label> generated;
+  private ComponentSupplier<FormattedLabel> builder;
+  private ComponentSupplier<FormattedLabel> frozen;
+
+  @Override
+  protected void prepare() {
+    model = Model.of("Some text");
+    reflective = ComponentSuppliers.provide(Label.class, model);
+    generated = LabelSuppliers.create(model);
+    builder = FormattedLabel.create().withText(model).asHeadline(2);
+    frozen = FormattedLabel.create().withText(model).asHeadline(2).freeze();
+  }
+
+  @Benchmark
+  public Label constructor() {
+    return new Label("label", model);
+  }
+
+  @Benchmark
+  public Label reflectiveBuilder() {
+    return reflective.get("label");
+  }
+
+  @Benchmark
+  public Label generatedSupplier() {
+    return generated.get("label");
+  }
+
+  @Benchmark
+  public FormattedLabel formattedLabelBuilder() {
+    return builder.get("label");
+  }
+
+  @Benchmark
+  public FormattedLabel frozenFormattedLabel() {
+    return frozen.get("label");
+  }
+}
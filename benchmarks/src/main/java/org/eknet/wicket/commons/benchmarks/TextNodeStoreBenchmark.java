@@ -0,0 +1,109 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.benchmarks;
+
+import org.eknet.wicket.commons.textstore.CompressingTextNodeStore;
+import org.eknet.wicket.commons.textstore.MemoryTextNodeStore;
+import org.eknet.wicket.commons.textstore.TextNodeSnapshot;
+import org.eknet.wicket.commons.textstore.TextNodeStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads values from an in-memory store, with and without compression. Values of
+ * 256 characters stay below the compression threshold. Run it with {@code -prof gc}
+ * to see how much the snapshots allocate.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 05:12
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextNodeStoreBenchmark {
+
+  public enum StoreType {
+    MEMORY, COMPRESSING
+  }
+
+  private final static String nodeId = "benchmark";
+  private final static String key = "content";
+  private final static String[] words = {
+      "wicket", "component", "supplier", "panel", "markup", "model", "page", "text", "node", "store"
+  };
+
+  @Param
+  public StoreType store;
+
+  @Param({ "256", "8192" })
+  public int size;
+
+  private TextNodeStore textStore;
+
+  @Setup
+  public void setUp() {
+    textStore = store == StoreType.COMPRESSING
+        ? new CompressingTextNodeStore(new MemoryTextNodeStore())
+        : new MemoryTextNodeStore();
+    textStore.createTextNode(nodeId).setText(key, newText(size));
+  }
+
+  private static String newText(int size) {
+    Random random = new Random(42);
+    StringBuilder buf = new StringBuilder(size + 16);
+    while (buf.length() < size) {
+      buf.append(words[random.nextInt(words.length)]).append(' ');
+    }
+    return buf.substring(0, size);
+  }
+
+  @Benchmark
+  public String readNode() {
+    return textStore.requireTextNode(nodeId).getText(key);
+  }
+
+  @Benchmark
+  public String readSnapshot() {
+    return textStore.getSnapshot(nodeId).getText(key);
+  }
+
+  @Benchmark
+  public int textSize() {
+    return textStore.requireTextNode(nodeId).getTextSize(key);
+  }
+
+  @Benchmark
+  public TextNodeSnapshot applyChange() {
+    return textStore.getSnapshot(nodeId).apply(Collections.singletonMap("title", "A title"));
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.benchmarks;
+
+import org.eknet.wicket.commons.textstore.AbstractTextNode;
+import org.eknet.wicket.commons.textstore.TextNodeSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies the values of a headline node into a snapshot, which keeps them in the
+ * compact slot layout, and into a hash map. The values are shared, so that only
+ * the layout is measured. Run it with {@code -prof gc} and compare
+ * {@code gc.alloc.rate.norm}, the bytes allocated per node.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 13:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextValuesBenchmark {
+
+  private final static String nodeId = "benchmark";
+
+  private Map<String, String> values;
+
+  @Setup
+  public void setUp() {
+    values = new HashMap<String, String>();
+    values.put(AbstractTextNode.UUID_KEY, "node");
+    values.put("headline", "Headline");
+    values.put("centerContent1", "Left");
+    values.put("centerContent2", "Right");
+  }
+
+  @Benchmark
+  public TextNodeSnapshot snapshot() {
+    return TextNodeSnapshot.of(nodeId, 1, values);
+  }
+
+  @Benchmark
+  public Map<String, String> hashMap() {
+    return new HashMap<String, String>(values);
+  }
+}
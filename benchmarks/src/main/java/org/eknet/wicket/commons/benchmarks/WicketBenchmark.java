@@ -0,0 +1,64 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.benchmarks;
+
+import org.apache.wicket.util.tester.WicketTester;
+import org.eknet.wicket.commons.ComponentSupplier;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Base class for benchmarks that need a wicket application. Each thread gets
+ * its own {@link WicketTester}, since wicket binds the application to the
+ * current thread.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 04:54
+ */
+public abstract class WicketBenchmark {
+
+  protected WicketTester tester;
+
+  @Setup
+  public void setUp() {
+    tester = new WicketTester();
+    prepare();
+  }
+
+  @TearDown
+  public void tearDown() {
+    tester.destroy();
+  }
+
+  /**
+   * Called after the application has been set up.
+   */
+  protected void prepare() {
+  }
+
+  /**
+   * Renders a {@link BenchmarkPage} with the component of the given supplier
+   * and returns the markup.
+   *
+   * @param content
+   * @return
+   */
+  protected String render(ComponentSupplier<?> content) {
+    tester.startPage(new BenchmarkPage(content));
+    return tester.getLastResponseAsString();
+  }
+}
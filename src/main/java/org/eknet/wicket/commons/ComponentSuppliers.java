@@ -19,23 +19,33 @@ package org.eknet.wicket.commons;
 import org.apache.wicket.Component;
 import org.apache.wicket.Page;
 import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.link.BookmarkablePageLink;
 import org.apache.wicket.markup.html.panel.EmptyPanel;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.eknet.wicket.commons.apt.GenerateSuppliers;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.Serializable;
 import java.lang.reflect.Constructor;
-import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 /**
+ * Factory methods for {@link ComponentSupplier}s.
+ * <p/>
+ * The {@link Builder} returned by {@link #provide(Class)} creates components
+ * using reflection. Prefer the suppliers generated for constructors annotated
+ * with {@link org.eknet.wicket.commons.apt.GenerateSupplier}, they create the
+ * components directly. Suppliers for {@link Label} and {@link EmptyPanel} are
+ * available from {@link LabelSuppliers} and {@link EmptyPanelSuppliers}.
+ *
  * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
  * @since 05.12.11 19:07
  */
+@GenerateSuppliers({ Label.class, EmptyPanel.class })
 public final class ComponentSuppliers {
   
   private ComponentSuppliers() {}
@@ -68,7 +78,27 @@ public final class ComponentSuppliers {
    */
   @NotNull
   public static ComponentSupplier<EmptyPanel> emptyInvisiblePanel() {
-    return invisible(provide(EmptyPanel.class));
+    return invisible(EmptyPanelSuppliers.create());
+  }
+
+  /**
+   * Returns an immutable version of the given supplier, that can be shared
+   * by all pages and threads. {@link FreezableSupplier}s, like the builders in
+   * this library, are frozen. Any other supplier is wrapped as it is and must not
+   * be changed afterwards.
+   *
+   * @param supplier
+   * @return
+   */
+  @NotNull
+  public static <T extends Component> SharedSupplier<T> freeze(@NotNull ComponentSupplier<T> supplier) {
+    if (supplier instanceof SharedSupplier) {
+      return (SharedSupplier<T>) supplier;
+    }
+    if (supplier instanceof FreezableSupplier) {
+      return ((FreezableSupplier<T>) supplier).freeze();
+    }
+    return SharedSupplier.of(supplier);
   }
 
   @NotNull
@@ -169,15 +199,19 @@ public final class ComponentSuppliers {
 
     private final List<Pair> arguments = new LinkedList<Pair>();
     private final List<Behavior> behaviors = new LinkedList<Behavior>();
+
+    private transient volatile Invocation<T> invocation;
     
     public Builder<T> withArgument(@NotNull Class<?> parameterType, @Nullable Object argument) {
       Pair pair = new Pair(parameterType, argument);
       this.arguments.add(pair);
+      this.invocation = null;
       return this;
     }
 
     public Builder<T> withArgument(@NotNull Object argument) {
       this.arguments.add(new Pair(argument.getClass(), argument));
+      this.invocation = null;
       return this;
     }
 
@@ -186,22 +220,22 @@ public final class ComponentSuppliers {
       return this;
     }
 
+    /**
+     * Creates the component using the constructor matching the arguments. The constructor
+     * is resolved on the first call and reused until another argument is added.
+     *
+     * @param id
+     * @return
+     */
     @NotNull
     public T get(@NotNull String id) {
-      List<Pair> arguments = new ArrayList<Pair>(this.arguments);
-      arguments.add(0, new Pair(String.class, id));
-      Class[] types = new Class[arguments.size()];
-      for (int i = 0; i < types.length; i++) {
-        types[i] = arguments.get(i).parameter;
-      }
+      Invocation<T> invocation = this.invocation;
       try {
-        Constructor<T> ctor = clazz.getConstructor(types);
-        Object[] args = new Object[arguments.size()];
-        for (int i = 0; i < args.length; i++) {
-          args[i] = arguments.get(i).argument;
+        if (invocation == null) {
+          invocation = new Invocation<T>(clazz, arguments);
+          this.invocation = invocation;
         }
-        ctor.setAccessible(true);
-        T component = ctor.newInstance(args);
+        T component = invocation.newInstance(id);
         for (Behavior behavior : behaviors) {
           component.add(behavior);
         }
@@ -211,4 +245,32 @@ public final class ComponentSuppliers {
       }
     }
   }
+
+  /**
+   * A resolved constructor together with the arguments to pass
+   * after the component id.
+   */
+  private static final class Invocation<T> {
+    private final Constructor<T> constructor;
+    private final Object[] arguments;
+
+    private Invocation(Class<T> clazz, List<Builder.Pair> pairs) throws NoSuchMethodException {
+      Class<?>[] types = new Class<?>[pairs.size() + 1];
+      this.arguments = new Object[pairs.size() + 1];
+      types[0] = String.class;
+      int i = 1;
+      for (Builder.Pair pair : pairs) {
+        types[i] = pair.parameter;
+        arguments[i] = pair.argument;
+        i++;
+      }
+      this.constructor = ConstructorCache.get(clazz, types);
+    }
+
+    private T newInstance(String id) throws Exception {
+      Object[] args = arguments.clone();
+      args[0] = id;
+      return constructor.newInstance(args);
+    }
+  }
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Resolves public constructors by the types of the arguments and caches them per
+ * class and signature. A constructor matches if each argument type is assignable to
+ * the corresponding parameter type, where primitive parameters accept their wrapper
+ * types. If more than one constructor matches, the most specific one is used; if
+ * none of them is more specific than all others, the call is ambiguous and an
+ * {@link IllegalArgumentException} is thrown.
+ * <p/>
+ * Classes are referenced weakly and the resolved constructors softly, so the
+ * cache does not keep classes from being unloaded.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 03:12
+ */
+final class ConstructorCache {
+
+  private static final Map<Class<?>, SoftReference<Map<List<Class<?>>, Constructor<?>>>> cache =
+      new WeakHashMap<Class<?>, SoftReference<Map<List<Class<?>>, Constructor<?>>>>();
+
+  private static final Map<Class<?>, Class<?>> wrappers = new HashMap<Class<?>, Class<?>>();
+  static {
+    wrappers.put(boolean.class, Boolean.class);
+    wrappers.put(byte.class, Byte.class);
+    wrappers.put(char.class, Character.class);
+    wrappers.put(short.class, Short.class);
+    wrappers.put(int.class, Integer.class);
+    wrappers.put(long.class, Long.class);
+    wrappers.put(float.class, Float.class);
+    wrappers.put(double.class, Double.class);
+  }
+
+  private ConstructorCache() {
+  }
+
+  /**
+   * Returns the constructor of {@code clazz} that accepts arguments of the given types.
+   *
+   * @param clazz
+   * @param types
+   * @return
+   * @throws NoSuchMethodException if there is no matching public constructor
+   * @throws IllegalArgumentException if more than one constructor matches and none is the most specific
+   */
+  @NotNull
+  static <T> Constructor<T> get(@NotNull Class<T> clazz, @NotNull Class<?>... types) throws NoSuchMethodException {
+    List<Class<?>> signature = Arrays.<Class<?>>asList(types.clone());
+    synchronized (cache) {
+      SoftReference<Map<List<Class<?>>, Constructor<?>>> ref = cache.get(clazz);
+      Map<List<Class<?>>, Constructor<?>> constructors = ref != null ? ref.get() : null;
+      if (constructors != null && constructors.containsKey(signature)) {
+        //noinspection unchecked
+        return (Constructor<T>) constructors.get(signature);
+      }
+    }
+    Constructor<T> constructor = resolve(clazz, types);
+    synchronized (cache) {
+      SoftReference<Map<List<Class<?>>, Constructor<?>>> ref = cache.get(clazz);
+      Map<List<Class<?>>, Constructor<?>> constructors = ref != null ? ref.get() : null;
+      if (constructors == null) {
+        constructors = new HashMap<List<Class<?>>, Constructor<?>>();
+        cache.put(clazz, new SoftReference<Map<List<Class<?>>, Constructor<?>>>(constructors));
+      }
+      constructors.put(signature, constructor);
+    }
+    return constructor;
+  }
+
+  private static <T> Constructor<T> resolve(Class<T> clazz, Class<?>[] types) throws NoSuchMethodException {
+    Constructor<T> constructor;
+    try {
+      constructor = clazz.getConstructor(types);
+    } catch (NoSuchMethodException e) {
+      List<Constructor<?>> applicable = new ArrayList<Constructor<?>>();
+      for (Constructor<?> candidate : clazz.getConstructors()) {
+        if (isApplicable(candidate.getParameterTypes(), types)) {
+          applicable.add(candidate);
+        }
+      }
+      if (applicable.isEmpty()) {
+        throw e;
+      }
+      Constructor<?> best = null;
+      for (Constructor<?> candidate : applicable) {
+        if (isMostSpecific(candidate, applicable)) {
+          if (best != null) {
+            throw new IllegalArgumentException("Ambiguous constructors in " + clazz.getName()
+                + " for arguments " + Arrays.toString(types) + ": " + best + " and " + candidate);
+          }
+          best = candidate;
+        }
+      }
+      if (best == null) {
+        throw new IllegalArgumentException("Ambiguous constructors in " + clazz.getName()
+            + " for arguments " + Arrays.toString(types) + ": " + applicable);
+      }
+      //noinspection unchecked
+      constructor = (Constructor<T>) best;
+    }
+    constructor.setAccessible(true);
+    return constructor;
+  }
+
+  /**
+   * Returns whether the given constructor is at least as specific as every
+   * other applicable constructor, that is, whether its parameter types can be
+   * passed to each of them.
+   *
+   * @param candidate
+   * @param applicable
+   * @return
+   */
+  private static boolean isMostSpecific(Constructor<?> candidate, List<Constructor<?>> applicable) {
+    for (Constructor<?> other : applicable) {
+      if (other != candidate && !isApplicable(other.getParameterTypes(), candidate.getParameterTypes())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether arguments of the given types can be passed to
+   * parameters of the given types.
+   *
+   * @param parameters
+   * @param arguments
+   * @return
+   */
+  private static boolean isApplicable(Class<?>[] parameters, Class<?>[] arguments) {
+    if (parameters.length != arguments.length) {
+      return false;
+    }
+    for (int i = 0; i < parameters.length; i++) {
+      if (!wrap(parameters[i]).isAssignableFrom(wrap(arguments[i]))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Class<?> wrap(Class<?> type) {
+    Class<?> wrapper = wrappers.get(type);
+    return wrapper != null ? wrapper : type;
+  }
+}
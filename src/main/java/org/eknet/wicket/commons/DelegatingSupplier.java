@@ -34,6 +34,14 @@ public abstract class DelegatingSupplier<T extends Component> implements Compone
     this.delegate = delegate;
   }
 
+  /**
+   * Delegates to a supplier that creates the components using reflection. Use
+   * {@link #DelegatingSupplier(ComponentSupplier)} with a generated supplier
+   * instead, if the component has one.
+   *
+   * @param componentClass
+   * @see org.eknet.wicket.commons.apt.GenerateSupplier
+   */
   public DelegatingSupplier(@NotNull Class<T> componentClass) {
     this.delegate = provide(componentClass);
   }
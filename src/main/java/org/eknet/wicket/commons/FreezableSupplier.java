@@ -0,0 +1,42 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons;
+
+import org.apache.wicket.Component;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A mutable {@link ComponentSupplier}, usually a builder, that can create an
+ * immutable copy of itself.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 04:05
+ */
+public interface FreezableSupplier<T extends Component> extends ComponentSupplier<T> {
+
+  /**
+   * Returns an immutable supplier that creates the same components as this
+   * one does now. Changes made to this supplier afterwards do not affect the
+   * returned supplier. Contained suppliers are frozen as well.
+   *
+   * @return
+   * @see ComponentSuppliers#freeze(ComponentSupplier)
+   */
+  @NotNull
+  SharedSupplier<T> freeze();
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons;
+
+import org.apache.wicket.Component;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * An immutable {@link ComponentSupplier} that can be shared by all pages and threads,
+ * for example by defining it as a static constant. It is usually obtained by freezing
+ * a builder:
+ * <pre>
+ *   private final static ComponentSupplier&lt;FormattedLabel&gt; title = FormattedLabel.create()
+ *       .withText(new ResourceModel("title"))
+ *       .asHeadline(2)
+ *       .freeze()
+ *       .share(MyPage.class, "title");
+ * </pre>
+ * A supplier that is {@link #share(Class, String) shared} under a name is registered
+ * globally and is serialized as a reference to this name. When read back, the owner class
+ * is initialized and the registered supplier is returned, so all pages hold the same
+ * instance.
+ * <p/>
+ * The registry references the owner classes and the shared suppliers weakly, so it does
+ * not keep the class loader of the owner from being unloaded, for example when a client
+ * bundle is redeployed. The shared supplier must therefore be kept reachable by the owner,
+ * usually in a static field, for as long as serialized pages may refer to it.
+ * <p/>
+ * The components created by a shared supplier share the models that have been given to
+ * the builder, unless the builder copies them (like {@link org.eknet.wicket.commons.components.FormattedLabel.Builder}
+ * does for plain {@link org.apache.wicket.model.Model}s). Shared models must therefore
+ * not hold any state, like a {@link org.apache.wicket.model.Model} of a constant value
+ * that is never changed or an {@link org.apache.wicket.model.IComponentAssignedModel}.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 04:07
+ */
+public final class SharedSupplier<T extends Component> implements ComponentSupplier<T> {
+
+  private final static Map<Class<?>, Map<String, WeakReference<SharedSupplier<?>>>> registry =
+      new WeakHashMap<Class<?>, Map<String, WeakReference<SharedSupplier<?>>>>();
+
+  private final ComponentSupplier<T> delegate;
+  private final Class<?> owner;
+  private final String name;
+
+  private SharedSupplier(ComponentSupplier<T> delegate, Class<?> owner, String name) {
+    this.delegate = delegate;
+    this.owner = owner;
+    this.name = name;
+  }
+
+  /**
+   * Wraps the given supplier, that must not be changed anymore. Use
+   * {@link ComponentSuppliers#freeze(ComponentSupplier)} to freeze a builder.
+   *
+   * @param supplier
+   * @return
+   */
+  @NotNull
+  public static <T extends Component> SharedSupplier<T> of(@NotNull ComponentSupplier<T> supplier) {
+    if (supplier instanceof SharedSupplier) {
+      return (SharedSupplier<T>) supplier;
+    }
+    return new SharedSupplier<T>(supplier, null, null);
+  }
+
+  /**
+   * Registers this supplier under the given name and returns the registered supplier.
+   * The name must be unique within the owner class, which is usually the class that
+   * holds the supplier in a static field.
+   *
+   * @param owner
+   * @param name
+   * @return
+   * @throws IllegalStateException if another supplier is already shared under this name
+   */
+  @NotNull
+  public SharedSupplier<T> share(@NotNull Class<?> owner, @NotNull String name) {
+    SharedSupplier<T> shared = new SharedSupplier<T>(delegate, owner, name);
+    synchronized (registry) {
+      Map<String, WeakReference<SharedSupplier<?>>> suppliers = registry.get(owner);
+      if (suppliers == null) {
+        suppliers = new HashMap<String, WeakReference<SharedSupplier<?>>>();
+        registry.put(owner, suppliers);
+      }
+      WeakReference<SharedSupplier<?>> ref = suppliers.get(name);
+      if (ref != null && ref.get() != null) {
+        throw new IllegalStateException("A supplier is already shared as " + key(owner, name));
+      }
+      suppliers.put(name, new WeakReference<SharedSupplier<?>>(shared));
+    }
+    return shared;
+  }
+
+  /**
+   * Returns the name this supplier is shared with, or {@code null}
+   * if it is not shared.
+   *
+   * @return
+   */
+  @Nullable
+  public String getName() {
+    return name;
+  }
+
+  @NotNull
+  @Override
+  public T get(@NotNull String id) {
+    return delegate.get(id);
+  }
+
+  private Object writeReplace() throws ObjectStreamException {
+    if (name != null) {
+      return new Reference(owner, name);
+    }
+    return this;
+  }
+
+  private static String key(Class<?> owner, String name) {
+    return owner.getName() + "#" + name;
+  }
+
+  @Nullable
+  private static SharedSupplier<?> lookup(Class<?> owner, String name) {
+    synchronized (registry) {
+      Map<String, WeakReference<SharedSupplier<?>>> suppliers = registry.get(owner);
+      WeakReference<SharedSupplier<?>> ref = suppliers != null ? suppliers.get(name) : null;
+      return ref != null ? ref.get() : null;
+    }
+  }
+
+  private static final class Reference implements Serializable {
+
+    private final Class<?> owner;
+    private final String name;
+
+    private Reference(Class<?> owner, String name) {
+      this.owner = owner;
+      this.name = name;
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+      String key = key(owner, name);
+      SharedSupplier<?> supplier = lookup(owner, name);
+      if (supplier == null) {
+        try {
+          Class.forName(owner.getName(), true, owner.getClassLoader());
+        } catch (ClassNotFoundException e) {
+          throw new InvalidObjectException("Cannot initialize owner of shared supplier " + key);
+        }
+        supplier = lookup(owner, name);
+      }
+      if (supplier == null) {
+        throw new InvalidObjectException("No shared supplier registered as " + key);
+      }
+      return supplier;
+    }
+  }
+}
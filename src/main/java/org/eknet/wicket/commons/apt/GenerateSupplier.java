@@ -0,0 +1,50 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.apt;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a constructor of a component for that a typed
+ * {@link org.eknet.wicket.commons.ComponentSupplier} is generated. The
+ * constructor must take the component id as its first argument.
+ * <p/>
+ * The {@link SupplierProcessor} generates a class {@code <Component>Suppliers}
+ * next to the component, that has a static {@code create()} method for each
+ * annotated constructor. It takes the remaining arguments of the constructor and
+ * returns a supplier that creates the component with a plain {@code new}:
+ * <pre>
+ *   public class MyPanel extends Panel {
+ *     &#64;GenerateSupplier
+ *     public MyPanel(String id, IModel&lt;?&gt; model) {...}
+ *   }
+ *
+ *   ComponentSupplier&lt;MyPanel&gt; supplier = MyPanelSuppliers.create(model);
+ * </pre>
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 03:40
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.CONSTRUCTOR)
+public @interface GenerateSupplier {
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.apt;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates typed {@link org.eknet.wicket.commons.ComponentSupplier}s for
+ * components that cannot be annotated with {@link GenerateSupplier}, like
+ * the ones provided by wicket.
+ * <p/>
+ * The {@link SupplierProcessor} generates a class {@code <Component>Suppliers} for
+ * each of the given components in the package of the annotated type. It contains a
+ * {@code create()} method for every public constructor that takes the component id
+ * as its first argument.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 03:41
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateSuppliers {
+
+  /**
+   * The component classes to generate suppliers for.
+   *
+   * @return
+   */
+  Class<?>[] value();
+
+}
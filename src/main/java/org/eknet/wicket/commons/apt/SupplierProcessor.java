@@ -0,0 +1,356 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.apt;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates the {@link org.eknet.wicket.commons.ComponentSupplier}s requested by
+ * {@link GenerateSupplier} and {@link GenerateSuppliers}.
+ * <p/>
+ * For each component a final class {@code <Component>Suppliers} is generated. It has
+ * a static {@code create()} method per constructor that returns a small serializable
+ * supplier holding the constructor arguments. The supplier creates the component by
+ * calling the constructor directly, so no reflection is involved.
+ * <p/>
+ * The processor is registered as a service, so it is picked up by {@code javac}
+ * whenever this library is on the classpath. It only handles the annotations above.
+ * Compile with {@code -proc:none} to turn it off, or list the processors to run with
+ * {@code -processor}.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 03:44
+ */
+@SupportedAnnotationTypes({
+    "org.eknet.wicket.commons.apt.GenerateSupplier",
+    "org.eknet.wicket.commons.apt.GenerateSuppliers"
+})
+public class SupplierProcessor extends AbstractProcessor {
+
+  private final static String componentClass = "org.apache.wicket.Component";
+  private final static String supplierClass = "org.eknet.wicket.commons.ComponentSupplier";
+
+  private final Set<String> generated = new HashSet<String>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    Map<String, Target> targets = new LinkedHashMap<String, Target>();
+    for (ExecutableElement ctor : ElementFilter.constructorsIn(roundEnv.getElementsAnnotatedWith(GenerateSupplier.class))) {
+      TypeElement type = (TypeElement) ctor.getEnclosingElement();
+      if (checkType(type, ctor) && checkConstructor(ctor, true)) {
+        target(targets, getPackage(type), type).add(ctor, ctor);
+      }
+    }
+    for (TypeElement annotated : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(GenerateSuppliers.class))) {
+      PackageElement pkg = getPackage(annotated);
+      for (TypeElement type : getComponentTypes(annotated)) {
+        if (!checkType(type, annotated)) {
+          continue;
+        }
+        Target target = target(targets, pkg, type);
+        boolean samePackage = pkg.equals(getPackage(type));
+        for (ExecutableElement ctor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+          if (isUsable(ctor, samePackage) && checkConstructor(ctor, false)) {
+            target.add(ctor, annotated);
+          }
+        }
+      }
+    }
+    for (Target target : targets.values()) {
+      if (target.constructors.isEmpty()) {
+        error(target.origins.get(0), "No constructor of " + target.type + " takes the component id as first argument");
+      } else if (generated.add(target.getQualifiedName())) {
+        write(target);
+      }
+    }
+    return true;
+  }
+
+  private Target target(Map<String, Target> targets, PackageElement pkg, TypeElement type) {
+    String key = pkg.getQualifiedName() + ":" + type.getQualifiedName();
+    Target target = targets.get(key);
+    if (target == null) {
+      target = new Target(pkg, type);
+      targets.put(key, target);
+    }
+    return target;
+  }
+
+  private List<TypeElement> getComponentTypes(TypeElement annotated) {
+    List<TypeElement> types = new ArrayList<TypeElement>();
+    for (AnnotationMirror mirror : annotated.getAnnotationMirrors()) {
+      TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+      if (!annotationType.getQualifiedName().contentEquals(GenerateSuppliers.class.getName())) {
+        continue;
+      }
+      for (AnnotationValue value : mirror.getElementValues().values()) {
+        for (Object item : (List<?>) value.getValue()) {
+          TypeMirror type = (TypeMirror) ((AnnotationValue) item).getValue();
+          if (type.getKind() == TypeKind.DECLARED) {
+            types.add((TypeElement) ((DeclaredType) type).asElement());
+          }
+        }
+      }
+    }
+    return types;
+  }
+
+  private boolean checkType(TypeElement type, Element origin) {
+    if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+      error(origin, type + " is not a concrete class");
+      return false;
+    }
+    if (type.getNestingKind() != NestingKind.TOP_LEVEL && !type.getModifiers().contains(Modifier.STATIC)) {
+      error(origin, type + " is an inner class and cannot be created by a supplier");
+      return false;
+    }
+    TypeElement component = processingEnv.getElementUtils().getTypeElement(componentClass);
+    if (component != null && !processingEnv.getTypeUtils().isSubtype(
+        processingEnv.getTypeUtils().erasure(type.asType()),
+        processingEnv.getTypeUtils().erasure(component.asType()))) {
+      error(origin, type + " is not a component");
+      return false;
+    }
+    return true;
+  }
+
+  private boolean isUsable(ExecutableElement ctor, boolean samePackage) {
+    Set<Modifier> modifiers = ctor.getModifiers();
+    if (modifiers.contains(Modifier.PUBLIC)) {
+      return true;
+    }
+    return samePackage && !modifiers.contains(Modifier.PRIVATE);
+  }
+
+  /**
+   * Checks whether a supplier can be generated for the given constructor. Errors are
+   * only reported for constructors that have been annotated explicitly, all others
+   * are silently skipped.
+   *
+   * @param ctor
+   * @param report
+   * @return
+   */
+  private boolean checkConstructor(ExecutableElement ctor, boolean report) {
+    String problem = null;
+    List<? extends VariableElement> params = ctor.getParameters();
+    if (params.isEmpty() || !isString(params.get(0).asType())) {
+      problem = "The first argument must be the component id";
+    } else if (ctor.getModifiers().contains(Modifier.PRIVATE)) {
+      problem = "The constructor must not be private";
+    } else if (!ctor.getTypeParameters().isEmpty()) {
+      problem = "Generic constructors are not supported";
+    } else if (ctor.isVarArgs() && params.size() == 1) {
+      problem = "The component id must not be a varargs argument";
+    } else {
+      for (TypeMirror thrown : ctor.getThrownTypes()) {
+        if (isChecked(thrown)) {
+          problem = "The constructor must not throw checked exceptions";
+        }
+      }
+    }
+    if (problem != null && report) {
+      error(ctor, problem);
+    }
+    return problem == null;
+  }
+
+  private boolean isString(TypeMirror type) {
+    return type.getKind() == TypeKind.DECLARED
+        && ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals("java.lang.String");
+  }
+
+  private boolean isChecked(TypeMirror type) {
+    TypeMirror runtime = processingEnv.getElementUtils().getTypeElement("java.lang.RuntimeException").asType();
+    TypeMirror error = processingEnv.getElementUtils().getTypeElement("java.lang.Error").asType();
+    return !processingEnv.getTypeUtils().isSubtype(type, runtime) && !processingEnv.getTypeUtils().isSubtype(type, error);
+  }
+
+  private PackageElement getPackage(Element element) {
+    return processingEnv.getElementUtils().getPackageOf(element);
+  }
+
+  private void error(Element element, String message) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+
+  private void write(Target target) {
+    try {
+      PrintWriter out = new PrintWriter(processingEnv.getFiler()
+          .createSourceFile(target.getQualifiedName(), target.origins.toArray(new Element[target.origins.size()]))
+          .openWriter());
+      try {
+        target.write(out);
+      } finally {
+        out.close();
+      }
+    } catch (IOException e) {
+      error(target.origins.get(0), "Unable to write " + target.getQualifiedName() + ": " + e);
+    }
+  }
+
+  private static final class Target {
+    private final PackageElement pkg;
+    private final TypeElement type;
+    private final List<ExecutableElement> constructors = new ArrayList<ExecutableElement>();
+    private final List<Element> origins = new ArrayList<Element>();
+
+    private Target(PackageElement pkg, TypeElement type) {
+      this.pkg = pkg;
+      this.type = type;
+    }
+
+    private void add(ExecutableElement ctor, Element origin) {
+      if (!constructors.contains(ctor)) {
+        constructors.add(ctor);
+      }
+      if (!origins.contains(origin)) {
+        origins.add(origin);
+      }
+    }
+
+    private String getSimpleName() {
+      StringBuilder name = new StringBuilder("Suppliers");
+      Element element = type;
+      while (element instanceof TypeElement) {
+        name.insert(0, element.getSimpleName());
+        element = element.getEnclosingElement();
+      }
+      return name.toString();
+    }
+
+    private String getQualifiedName() {
+      return pkg.isUnnamed() ? getSimpleName() : pkg.getQualifiedName() + "." + getSimpleName();
+    }
+
+    private void write(PrintWriter out) {
+      String typeParams = getTypeParameters(true);
+      String typeArgs = getTypeParameters(false);
+      String componentType = type.getQualifiedName() + typeArgs;
+      String supplierType = supplierClass + "<" + componentType + ">";
+
+      if (!pkg.isUnnamed()) {
+        out.println("package " + pkg.getQualifiedName() + ";");
+        out.println();
+      }
+      out.println("/**");
+      out.println(" * Typed suppliers for {@link " + type.getQualifiedName() + "}.");
+      out.println(" * <p/>");
+      out.println(" * Generated by {@link " + SupplierProcessor.class.getName() + "}, do not edit.");
+      out.println(" */");
+      out.println("public final class " + getSimpleName() + " {");
+      out.println();
+      out.println("  private " + getSimpleName() + "() {}");
+      for (int i = 0; i < constructors.size(); i++) {
+        ExecutableElement ctor = constructors.get(i);
+        List<? extends VariableElement> params = ctor.getParameters().subList(1, ctor.getParameters().size());
+        String impl = "Supplier" + i;
+        StringBuilder decl = new StringBuilder();
+        StringBuilder args = new StringBuilder();
+        for (int j = 0; j < params.size(); j++) {
+          String paramType = params.get(j).asType().toString();
+          if (ctor.isVarArgs() && j == params.size() - 1) {
+            paramType = paramType.substring(0, paramType.length() - 2) + "...";
+          }
+          decl.append(j > 0 ? ", " : "").append("final ").append(paramType).append(" ").append(params.get(j).getSimpleName());
+          args.append(j > 0 ? ", " : "").append(params.get(j).getSimpleName());
+        }
+        out.println();
+        out.println("  public static " + (typeParams.length() > 0 ? typeParams + " " : "") + supplierType
+            + " create(" + decl + ") {");
+        out.println("    return new " + impl + typeArgs + "(" + args + ");");
+        out.println("  }");
+        out.println();
+        out.println("  private static final class " + impl + typeParams + " implements " + supplierType + " {");
+        for (VariableElement param : params) {
+          out.println("    private final " + param.asType() + " " + param.getSimpleName() + ";");
+        }
+        out.println();
+        out.println("    private " + impl + "(" + decl.toString().replace("...", "[]") + ") {");
+        for (VariableElement param : params) {
+          out.println("      this." + param.getSimpleName() + " = " + param.getSimpleName() + ";");
+        }
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public " + componentType + " get(String id) {");
+        StringBuilder callArgs = new StringBuilder("id");
+        for (VariableElement param : params) {
+          callArgs.append(", this.").append(param.getSimpleName());
+        }
+        out.println("      return new " + componentType + "(" + callArgs + ");");
+        out.println("    }");
+        out.println("  }");
+      }
+      out.println("}");
+    }
+
+    private String getTypeParameters(boolean withBounds) {
+      List<? extends TypeParameterElement> params = type.getTypeParameters();
+      if (params.isEmpty()) {
+        return "";
+      }
+      StringBuilder buf = new StringBuilder("<");
+      for (int i = 0; i < params.size(); i++) {
+        TypeParameterElement param = params.get(i);
+        buf.append(i > 0 ? ", " : "").append(param.getSimpleName());
+        if (withBounds) {
+          String sep = " extends ";
+          for (TypeMirror bound : param.getBounds()) {
+            if (!bound.toString().equals("java.lang.Object")) {
+              buf.append(sep).append(bound);
+              sep = " & ";
+            }
+          }
+        }
+      }
+      return buf.append(">").toString();
+    }
+  }
+}
@@ -23,8 +23,12 @@ import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.repeater.RepeatingView;
 import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.eknet.wicket.commons.ComponentSupplier;
+import org.eknet.wicket.commons.ComponentSuppliers;
+import org.eknet.wicket.commons.FreezableSupplier;
+import org.eknet.wicket.commons.SharedSupplier;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -190,10 +194,18 @@ public class DivContainer extends AbstractContainer {
     return new Builder();
   }
 
-  public static class Builder implements ComponentSupplier<DivContainer> {
+  public static class Builder implements FreezableSupplier<DivContainer> {
+
+    private final List<ComponentSupplier<?>> contents;
+
+    public Builder() {
+      this(new LinkedList<ComponentSupplier<?>>());
+    }
+
+    private Builder(List<ComponentSupplier<?>> contents) {
+      this.contents = contents;
+    }
 
-    private final List<ComponentSupplier<?>> contents = new LinkedList<ComponentSupplier<?>>();
-    
     @NotNull
     @Override
     public DivContainer get(@NotNull String id) {
@@ -210,6 +222,16 @@ public class DivContainer extends AbstractContainer {
       }
       return this;
     }
+
+    @NotNull
+    @Override
+    public SharedSupplier<DivContainer> freeze() {
+      List<ComponentSupplier<?>> frozen = new ArrayList<ComponentSupplier<?>>(contents.size());
+      for (ComponentSupplier<?> content : contents) {
+        frozen.add(ComponentSuppliers.freeze(content));
+      }
+      return SharedSupplier.of(new Builder(Collections.unmodifiableList(frozen)));
+    }
   }
 
 }
@@ -6,8 +6,10 @@ import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
 import org.apache.wicket.util.string.Strings;
-import org.eknet.wicket.commons.ComponentSuppliers;
 import org.eknet.wicket.commons.DelegatingSupplier;
+import org.eknet.wicket.commons.FreezableSupplier;
+import org.eknet.wicket.commons.SharedSupplier;
+import org.eknet.wicket.commons.apt.GenerateSupplier;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.Serializable;
@@ -24,14 +26,17 @@ public class FormattedLabel extends Label {
   private IModel<String> format;
   private boolean multiLine = false;
   
+  @GenerateSupplier
   public FormattedLabel(String id) {
     super(id);
   }
 
+  @GenerateSupplier
   public FormattedLabel(String id, String label) {
     super(id, label);
   }
 
+  @GenerateSupplier
   public FormattedLabel(String id, IModel<?> model) {
     super(id, model);
   }
@@ -91,29 +96,64 @@ public class FormattedLabel extends Label {
     return new Builder();
   }
 
-  public static class Builder extends DelegatingSupplier<FormattedLabel> {
+  /**
+   * Builds {@link FormattedLabel}s. The models are passed to all labels as they are.
+   * <p/>
+   * A {@link #freeze() frozen} builder copies text and format given as strings, or
+   * as plain {@link Model}s, for each label, so that labels of different pages do not
+   * share a mutable model. Any other model is passed as is and must not hold page state.
+   */
+  public static class Builder extends DelegatingSupplier<FormattedLabel> implements FreezableSupplier<FormattedLabel> {
     
     private IModel<String> format;
     private IModel<?> text;
     private boolean escapeModelString = true;
     private boolean multiLine = false;
+    private boolean frozen = false;
     
     public Builder() {
-      super(ComponentSuppliers.provide(FormattedLabel.class));
+      super(FormattedLabelSuppliers.create());
     }
 
     @Override
     protected void onCreation(@NotNull FormattedLabel component) {
       if (format != null) {
-        component.setFormat(format);
+        component.setFormat(frozen ? copy(format) : format);
       }
       if (text != null) {
-        component.setDefaultModel(text);
+        component.setDefaultModel(frozen ? copy(text) : text);
       }
       component.setEscapeModelStrings(escapeModelString);
       component.setMultiLine(multiLine);
     }
 
+    @NotNull
+    @Override
+    public SharedSupplier<FormattedLabel> freeze() {
+      Builder copy = new Builder();
+      copy.format = format;
+      copy.text = text;
+      copy.escapeModelString = escapeModelString;
+      copy.multiLine = multiLine;
+      copy.frozen = true;
+      return SharedSupplier.of(copy);
+    }
+
+    /**
+     * Returns a new {@link Model} with the same object, if the given model is
+     * a plain {@link Model}, or the given model otherwise.
+     *
+     * @param model
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> IModel<T> copy(IModel<T> model) {
+      if (model.getClass() == Model.class) {
+        return (IModel<T>) new Model<Serializable>((Serializable) model.getObject());
+      }
+      return model;
+    }
+
     public Builder withText(IModel<?> text) {
       this.text = text;
       return this;
@@ -18,19 +18,17 @@ package org.eknet.wicket.commons.components;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.markup.html.WebMarkupContainer;
-import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.link.Link;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
 import org.eknet.wicket.commons.ComponentSupplier;
 import org.eknet.wicket.commons.ComponentSuppliers;
+import org.eknet.wicket.commons.LabelSuppliers;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.Serializable;
 
-import static org.eknet.wicket.commons.ComponentSuppliers.provide;
-
 /**
  * A link containing a span and img element. The markup is this:
  * <pre>
@@ -121,12 +119,12 @@ public class SimpleLink extends Panel {
     }
 
     public Builder withText(IModel<String> text) {
-      this.textComponent = provide(Label.class, text);
+      this.textComponent = LabelSuppliers.create(text);
       return this;
     }
 
     public Builder withText(String text) {
-      this.textComponent = provide(Label.class, new Model<String>(text));
+      this.textComponent = LabelSuppliers.create(new Model<String>(text));
       return this;
     }
     
@@ -18,12 +18,12 @@ package org.eknet.wicket.commons.components.buttons;
 
 import org.apache.wicket.AttributeModifier;
 import org.apache.wicket.Component;
-import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.form.Button;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.model.IModel;
 import org.eknet.wicket.commons.ComponentSupplier;
 import org.eknet.wicket.commons.ComponentSuppliers;
+import org.eknet.wicket.commons.LabelSuppliers;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -89,7 +89,7 @@ public class ExtendedButton extends Panel {
   public ExtendedButton setPositive(String text) {
     setPositive();
     setImage(IconSupplier.tick());
-    setText(ComponentSuppliers.provide(Label.class).withArgument(text));
+    setText(LabelSuppliers.create(text));
     return this;
   }
   public ExtendedButton setPositive() {
@@ -105,7 +105,7 @@ public class ExtendedButton extends Panel {
   public ExtendedButton setNeutral(@NotNull IModel<String> text) {
     setCssClass(null);
     setImage(IconSupplier.bulletBlue());
-    setText(ComponentSuppliers.provide(Label.class, text));
+    setText(LabelSuppliers.create(text));
     return this;
   }
   
@@ -171,12 +171,12 @@ public class ExtendedButton extends Panel {
     }
 
     public Builder withText(@NotNull IModel<String> text) {
-      this.textComponent = ComponentSuppliers.provide(Label.class, text);
+      this.textComponent = LabelSuppliers.create(text);
       return this;
     }
 
     public Builder withText(@NotNull String text) {
-      this.textComponent = ComponentSuppliers.provide(Label.class).withArgument(String.class, text);
+      this.textComponent = LabelSuppliers.create(text);
       return this;
     }
     
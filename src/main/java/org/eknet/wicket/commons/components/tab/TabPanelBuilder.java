@@ -30,8 +30,13 @@ import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.request.resource.PackageResourceReference;
 import org.eknet.wicket.commons.ComponentSupplier;
+import org.eknet.wicket.commons.ComponentSuppliers;
+import org.eknet.wicket.commons.FreezableSupplier;
+import org.eknet.wicket.commons.SharedSupplier;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -52,29 +57,31 @@ import java.util.List;
  *   .addTab(ComponentSuppliers.provide(WebSettingsForm.class), new ResourceModel("webSettings")));
  * add(content.get("panel"));
  * </pre>
+ * A builder can be {@link #freeze() frozen} to define the tabbed panel once and share it
+ * with all pages.
  *
  * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
  * @since 19.12.11 12:26
  */
-public class TabPanelBuilder implements ComponentSupplier<TabbedPanel> {
+public class TabPanelBuilder implements FreezableSupplier<TabbedPanel> {
 
-  private final List<ITab> tabs = new LinkedList<ITab>();
+  private final List<SupplierTab> tabs;
   private boolean ajax;
   private Style style;
 
   private String addtionalCssClasses;
   private String styleCss;
-  
-  public TabPanelBuilder addTab(final ComponentSupplier<? extends WebMarkupContainer> panel, IModel<String> title) {
-    tabs.add(new AbstractTab(title) {
-      @Override
-      public WebMarkupContainer getPanel(String panelId) {
-        WebMarkupContainer component = panel.get(panelId);
-        component.add(new AttributeAppender("class", " float_left"));
-        component.add(new AttributeAppender("style", " width: 100%;"));
-        return component;
-      }
-    });
+
+  public TabPanelBuilder() {
+    this(new LinkedList<SupplierTab>());
+  }
+
+  private TabPanelBuilder(List<SupplierTab> tabs) {
+    this.tabs = tabs;
+  }
+
+  public TabPanelBuilder addTab(ComponentSupplier<? extends WebMarkupContainer> panel, IModel<String> title) {
+    tabs.add(new SupplierTab(title, panel));
     return this;
   }
 
@@ -127,14 +134,30 @@ public class TabPanelBuilder implements ComponentSupplier<TabbedPanel> {
     return this;
   }
 
+  @NotNull
+  @Override
+  public SharedSupplier<TabbedPanel> freeze() {
+    List<SupplierTab> frozen = new ArrayList<SupplierTab>(tabs.size());
+    for (SupplierTab tab : tabs) {
+      frozen.add(new SupplierTab(tab.getTitle(), ComponentSuppliers.freeze(tab.panel)));
+    }
+    TabPanelBuilder copy = new TabPanelBuilder(Collections.unmodifiableList(frozen));
+    copy.ajax = ajax;
+    copy.style = style;
+    copy.addtionalCssClasses = addtionalCssClasses;
+    copy.styleCss = styleCss;
+    return SharedSupplier.of(copy);
+  }
+
   @NotNull
   @Override
   public TabbedPanel get(@NotNull String id) {
+    List<ITab> panelTabs = new ArrayList<ITab>(tabs);
     TabbedPanel panel;
     if (ajax) {
-      panel = new StyledAjaxTabbedPanel(id, tabs, style);
+      panel = new StyledAjaxTabbedPanel(id, panelTabs, style);
     } else {
-      panel = new StyledTabbedPanel(id, tabs, style);
+      panel = new StyledTabbedPanel(id, panelTabs, style);
     }
     if (addtionalCssClasses != null) {
       panel.add(new AttributeAppender("class", addtionalCssClasses));
@@ -145,6 +168,24 @@ public class TabPanelBuilder implements ComponentSupplier<TabbedPanel> {
     return panel;
   }
   
+  private static class SupplierTab extends AbstractTab {
+
+    private final ComponentSupplier<? extends WebMarkupContainer> panel;
+
+    private SupplierTab(IModel<String> title, ComponentSupplier<? extends WebMarkupContainer> panel) {
+      super(title);
+      this.panel = panel;
+    }
+
+    @Override
+    public WebMarkupContainer getPanel(String panelId) {
+      WebMarkupContainer component = panel.get(panelId);
+      component.add(new AttributeAppender("class", " float_left"));
+      component.add(new AttributeAppender("style", " width: 100%;"));
+      return component;
+    }
+  }
+
   static class StyledAjaxTabbedPanel extends AjaxTabbedPanel {
     
     private final Style style;
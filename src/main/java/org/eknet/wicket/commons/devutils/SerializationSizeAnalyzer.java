@@ -0,0 +1,361 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.devutils;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.Page;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
+import org.eknet.wicket.commons.ComponentSupplier;
+import org.eknet.wicket.commons.textstore.TextNode;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serializes a page, or any other component, and breaks down the number of bytes it
+ * takes in the page store. It is meant to be used in tests to find out what makes
+ * a page large and to enforce size budgets:
+ * <pre>
+ *   tester.startPage(MyPage.class);
+ *   SerializationSizeAnalyzer.analyze(tester.getLastRenderedPage())
+ *       .requireNoFindings()
+ *       .requireTotalSizeBelow(20 * 1024);
+ * </pre>
+ * The {@link Report} contains
+ * <ul>
+ *   <li>the total size of the serialized page,</li>
+ *   <li>the size of each component by its path, that is all the component references
+ *   except other components of the page, like its models, behaviors and suppliers,</li>
+ *   <li>the size of all {@link ComponentSupplier}s and {@link IModel}s by their class,
+ *   again without the components of the page they reference,</li>
+ *   <li>findings about objects that should not end up in the page store: {@link TextNode}s,
+ *   pages referenced from suppliers or models, which is what anonymous suppliers do, and
+ *   components that are not part of the analyzed page.</li>
+ * </ul>
+ * Every component and supplier is serialized on its own, so the class descriptors are
+ * counted for each of them. Their sizes are therefore larger than their share in the
+ * total size, but they can be compared with each other.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 04:31
+ */
+public final class SerializationSizeAnalyzer {
+
+  private final Component root;
+  private final Set<Component> components = Collections.newSetFromMap(new IdentityHashMap<Component, Boolean>());
+  private final List<Component> order = new ArrayList<Component>();
+  private final Map<Object, Boolean> queued = new IdentityHashMap<Object, Boolean>();
+  private final LinkedList<Object[]> pending = new LinkedList<Object[]>();
+  private final Report report = new Report();
+
+  private SerializationSizeAnalyzer(Component root) {
+    this.root = root;
+    add(root);
+    if (root instanceof MarkupContainer) {
+      ((MarkupContainer) root).visitChildren(new IVisitor<Component, Void>() {
+        @Override
+        public void component(Component component, IVisit<Void> visit) {
+          add(component);
+        }
+      });
+    }
+  }
+
+  /**
+   * Serializes the given page or component and returns the report.
+   *
+   * @param root
+   * @return
+   */
+  @NotNull
+  public static Report analyze(@NotNull Component root) {
+    return new SerializationSizeAnalyzer(root).run();
+  }
+
+  private void add(Component component) {
+    components.add(component);
+    order.add(component);
+  }
+
+  private Report run() {
+    report.totalSize = measure(root, getPath(root), false, false);
+    for (Component component : order) {
+      String path = getPath(component);
+      report.componentSizes.put(path, measure(component, path, true, false));
+    }
+    while (!pending.isEmpty()) {
+      Object[] next = pending.removeFirst();
+      Object value = next[0];
+      long size = measure(value, (String) next[1], true, true);
+      String name = value.getClass().getName();
+      Long sum = report.classSizes.get(name);
+      Integer count = report.classCounts.get(name);
+      report.classSizes.put(name, sum == null ? size : sum + size);
+      report.classCounts.put(name, count == null ? 1 : count + 1);
+    }
+    return report;
+  }
+
+  private String getPath(Component component) {
+    String path = component.getPageRelativePath();
+    return path.length() == 0 ? "<" + component.getClass().getSimpleName() + ">" : path;
+  }
+
+  /**
+   * Serializes the object and returns the number of bytes written.
+   *
+   * @param object the object to serialize
+   * @param path the path of the component the object belongs to
+   * @param scan whether to replace components of the page and look for findings
+   * @param value whether the object is a supplier or model
+   * @return
+   */
+  private long measure(Object object, String path, boolean scan, boolean value) {
+    CountingStream counter = new CountingStream();
+    try {
+      ObjectOutputStream out = scan ? new ScanningStream(counter, object, path, value) : new ObjectOutputStream(counter);
+      out.writeObject(object);
+      out.close();
+    } catch (IOException e) {
+      report.findings.add(describe(object, path, value) + " cannot be serialized: " + e);
+    }
+    return counter.count;
+  }
+
+  private static String describe(Object object, String path, boolean value) {
+    return value ? object.getClass().getName() + " at " + path : path;
+  }
+
+  private final class ScanningStream extends ObjectOutputStream {
+
+    private final Object object;
+    private final String path;
+    private final boolean value;
+
+    private ScanningStream(OutputStream out, Object object, String path, boolean value) throws IOException {
+      super(out);
+      this.object = object;
+      this.path = path;
+      this.value = value;
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) throws IOException {
+      if (obj == object) {
+        return obj;
+      }
+      if (obj instanceof Page && (value || !components.contains(obj))) {
+        report.findings.add(describe(object, path, value) + " references the page " + obj.getClass().getName());
+      }
+      if (obj instanceof Component) {
+        if (components.contains(obj)) {
+          return null;
+        }
+        if (!(obj instanceof Page)) {
+          report.findings.add(describe(object, path, value) + " references the component "
+              + ((Component) obj).getPageRelativePath() + " (" + obj.getClass().getName() + ") that is not part of the page");
+        }
+      }
+      if (obj instanceof TextNode) {
+        report.findings.add(describe(object, path, value) + " references the text node "
+            + ((TextNode) obj).getId() + " (" + obj.getClass().getName() + ")");
+      }
+      if ((obj instanceof ComponentSupplier || obj instanceof IModel) && !queued.containsKey(obj)) {
+        queued.put(obj, Boolean.TRUE);
+        pending.add(new Object[] { obj, path });
+      }
+      return obj;
+    }
+  }
+
+  private static final class CountingStream extends OutputStream {
+
+    private long count;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+  }
+
+  /**
+   * The result of an analysis. All sizes are in bytes.
+   */
+  public static final class Report {
+
+    private long totalSize;
+    private final Map<String, Long> componentSizes = new LinkedHashMap<String, Long>();
+    private final Map<String, Long> classSizes = new LinkedHashMap<String, Long>();
+    private final Map<String, Integer> classCounts = new LinkedHashMap<String, Integer>();
+    private final Set<String> findings = new LinkedHashSet<String>();
+
+    private Report() {
+    }
+
+    public long getTotalSize() {
+      return totalSize;
+    }
+
+    /**
+     * Returns the size of each component by its page relative path,
+     * the largest first.
+     *
+     * @return
+     */
+    @NotNull
+    public Map<String, Long> getComponentSizes() {
+      return sortBySize(componentSizes);
+    }
+
+    /**
+     * Returns the size of all suppliers and models by their class name,
+     * the largest first.
+     *
+     * @return
+     */
+    @NotNull
+    public Map<String, Long> getClassSizes() {
+      return sortBySize(classSizes);
+    }
+
+    /**
+     * Returns the number of suppliers and models of the given class.
+     *
+     * @param className
+     * @return
+     */
+    public int getClassCount(@NotNull String className) {
+      Integer count = classCounts.get(className);
+      return count != null ? count : 0;
+    }
+
+    @NotNull
+    public List<String> getFindings() {
+      return Collections.unmodifiableList(new ArrayList<String>(findings));
+    }
+
+    /**
+     * Fails if the serialized page is larger than the given number of bytes.
+     *
+     * @param maxBytes
+     * @return
+     * @throws IllegalStateException if the budget is exceeded
+     */
+    @NotNull
+    public Report requireTotalSizeBelow(long maxBytes) {
+      if (totalSize > maxBytes) {
+        throw new IllegalStateException("The serialized size of " + totalSize
+            + " bytes exceeds the budget of " + maxBytes + " bytes.\n" + this);
+      }
+      return this;
+    }
+
+    /**
+     * Fails if the component with the given path is larger than the given
+     * number of bytes.
+     *
+     * @param path
+     * @param maxBytes
+     * @return
+     * @throws IllegalStateException if the budget is exceeded or there is no such component
+     */
+    @NotNull
+    public Report requireComponentSizeBelow(@NotNull String path, long maxBytes) {
+      Long size = componentSizes.get(path);
+      if (size == null) {
+        throw new IllegalStateException("There is no component at " + path);
+      }
+      if (size > maxBytes) {
+        throw new IllegalStateException("The serialized size of " + path + " is " + size
+            + " bytes and exceeds the budget of " + maxBytes + " bytes.\n" + this);
+      }
+      return this;
+    }
+
+    /**
+     * Fails if there are any findings.
+     *
+     * @return
+     * @throws IllegalStateException if there are findings
+     */
+    @NotNull
+    public Report requireNoFindings() {
+      if (!findings.isEmpty()) {
+        throw new IllegalStateException("The serialized page references objects that do "
+            + "not belong into the page store.\n" + this);
+      }
+      return this;
+    }
+
+    private static Map<String, Long> sortBySize(Map<String, Long> sizes) {
+      List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(sizes.entrySet());
+      Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+        @Override
+        public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+          return o2.getValue().compareTo(o1.getValue());
+        }
+      });
+      Map<String, Long> sorted = new LinkedHashMap<String, Long>();
+      for (Map.Entry<String, Long> entry : entries) {
+        sorted.put(entry.getKey(), entry.getValue());
+      }
+      return Collections.unmodifiableMap(sorted);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder buf = new StringBuilder();
+      buf.append("Total size: ").append(totalSize).append(" bytes\n");
+      buf.append("Components:\n");
+      for (Map.Entry<String, Long> entry : getComponentSizes().entrySet()) {
+        buf.append(String.format("%10d  %s%n", entry.getValue(), entry.getKey()));
+      }
+      buf.append("Suppliers and models:\n");
+      for (Map.Entry<String, Long> entry : getClassSizes().entrySet()) {
+        buf.append(String.format("%10d  %s (%d)%n", entry.getValue(), entry.getKey(), getClassCount(entry.getKey())));
+      }
+      if (!findings.isEmpty()) {
+        buf.append("Findings:\n");
+        for (String finding : findings) {
+          buf.append("  ").append(finding).append("\n");
+        }
+      }
+      return buf.toString();
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.devutils;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.Component;
+import org.apache.wicket.Page;
+import org.apache.wicket.application.IComponentOnBeforeRenderListener;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
+import org.eknet.wicket.commons.textstore.ViewOrEdit;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fails if a page that shows {@link ViewOrEdit} components only in
+ * {@link ViewOrEdit.Mode#VIEW} mode is stateful. Such pages should not be
+ * stored in the session and page store.
+ * <p/>
+ * Either call {@link #check(Page)} in a test after rendering the page, or
+ * {@link #install(Application) install} the checker in development mode to check
+ * every page before it is rendered. An {@link IllegalStateException} naming the
+ * stateful components is thrown if the check fails.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 02:47
+ */
+public class StatelessViewChecker implements IComponentOnBeforeRenderListener {
+
+  /**
+   * Adds a checker to the application that checks every page before it is rendered.
+   *
+   * @param application
+   */
+  public static void install(@NotNull Application application) {
+    application.getComponentPostOnBeforeRenderListeners().add(new StatelessViewChecker());
+  }
+
+  @Override
+  public void onBeforeRender(Component component) {
+    if (component instanceof Page) {
+      check((Page) component);
+    }
+  }
+
+  /**
+   * Checks the given page if it contains {@link ViewOrEdit} components and
+   * all of them are in {@link ViewOrEdit.Mode#VIEW} mode.
+   *
+   * @param page
+   * @throws IllegalStateException if the page is stateful
+   */
+  public static void check(@NotNull Page page) {
+    if (!isViewPage(page) || page.isPageStateless()) {
+      return;
+    }
+    final List<String> stateful = new ArrayList<String>();
+    if (!page.isStateless()) {
+      stateful.add(page.getClass().getName());
+    }
+    page.visitChildren(new IVisitor<Component, Void>() {
+      @Override
+      public void component(Component component, IVisit<Void> visit) {
+        if (!component.isStateless()) {
+          stateful.add(component.getPageRelativePath() + " (" + component.getClass().getName() + ")");
+        }
+      }
+    });
+    throw new IllegalStateException("The view mode page " + page.getClass().getName()
+        + " is stateful. Stateful components: " + stateful);
+  }
+
+  /**
+   * Returns whether the page contains {@link ViewOrEdit} components, none of
+   * them in edit mode.
+   *
+   * @param page
+   * @return
+   */
+  public static boolean isViewPage(@NotNull Page page) {
+    final int[] counts = new int[2];
+    page.visitChildren(ViewOrEdit.class, new IVisitor<ViewOrEdit, Void>() {
+      @Override
+      public void component(ViewOrEdit component, IVisit<Void> visit) {
+        counts[component.getMode() == ViewOrEdit.Mode.VIEW ? 0 : 1]++;
+      }
+    });
+    return counts[0] > 0 && counts[1] == 0;
+  }
+}
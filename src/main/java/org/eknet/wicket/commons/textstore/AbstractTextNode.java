@@ -28,6 +28,7 @@ import org.jetbrains.annotations.Nullable;
 public abstract class AbstractTextNode implements TextNode {
 
   public final static String UUID_KEY = "___uuid";
+  public final static String VERSION_KEY = "___version";
   
   @NotNull
   @Override
@@ -35,6 +36,26 @@ public abstract class AbstractTextNode implements TextNode {
     return requireText(UUID_KEY);
   }
 
+  /**
+   * Reads the version from the value of {@link #VERSION_KEY}. Nodes without
+   * this value are at version {@code 0}. Subclasses that keep the version
+   * elsewhere must override this method.
+   *
+   * @return
+   */
+  @Override
+  public long getVersion() {
+    String value = getText(VERSION_KEY);
+    if (value == null) {
+      return 0;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalStateException("Invalid version of node '" + getText(UUID_KEY) + "': " + value, e);
+    }
+  }
+
   @Override
   public String getText(@NotNull String key, @Nullable String defaultValue) {
     String value = getText(key);
@@ -44,6 +65,12 @@ public abstract class AbstractTextNode implements TextNode {
     return value;
   }
 
+  @Override
+  public int getTextSize(@NotNull String key) {
+    String value = getText(key);
+    return value != null ? value.length() : -1;
+  }
+
   @Override
   @NotNull
   public String requireText(@NotNull String key) {
@@ -17,8 +17,18 @@
 package org.eknet.wicket.commons.textstore;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Abstract implementation of {@link TextNodeStore} to simplify the task of implementing this interface.
@@ -28,6 +38,15 @@ import java.util.UUID;
  */
 public abstract class AbstractTextNodeStore implements TextNodeStore {
 
+  private final Object[] locks = new Object[32];
+  private final List<TextNodeListener> listeners = new CopyOnWriteArrayList<TextNodeListener>();
+
+  protected AbstractTextNodeStore() {
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new Object();
+    }
+  }
+
   @NotNull
   @Override
   public TextNode createTextNode() {
@@ -53,4 +72,204 @@ public abstract class AbstractTextNodeStore implements TextNodeStore {
     }
     return textNode;
   }
+
+  /**
+   * Creates a new snapshot of the node returned from {@link #getTextNode(String)}.
+   * Subclasses should override this if they can share snapshots.
+   *
+   * @param id
+   * @return
+   */
+  @Nullable
+  @Override
+  public TextNodeSnapshot getSnapshot(@NotNull String id) {
+    TextNode node = getTextNode(id);
+    return node != null ? TextNodeSnapshot.of(node) : null;
+  }
+
+  /**
+   * Looks up each snapshot using {@link #getSnapshot(String)}. Subclasses should
+   * override this if the nodes can be read more efficiently at once.
+   *
+   * @param ids
+   * @return
+   */
+  @NotNull
+  @Override
+  public Map<String, TextNodeSnapshot> getSnapshots(@NotNull Collection<String> ids) {
+    Map<String, TextNodeSnapshot> snapshots = new LinkedHashMap<String, TextNodeSnapshot>();
+    for (String id : ids) {
+      TextNodeSnapshot snapshot = getSnapshot(id);
+      if (snapshot != null) {
+        snapshots.put(id, snapshot);
+      }
+    }
+    return snapshots;
+  }
+
+  /**
+   * Looks up each node using {@link #getTextNode(String)}. Subclasses should override
+   * this if the nodes can be read more efficiently at once.
+   *
+   * @param ids
+   * @return
+   */
+  @NotNull
+  @Override
+  public Map<String, TextNode> getTextNodes(@NotNull Collection<String> ids) {
+    Map<String, TextNode> nodes = new LinkedHashMap<String, TextNode>();
+    for (String id : ids) {
+      TextNode node = getTextNode(id);
+      if (node != null) {
+        nodes.put(id, node);
+      }
+    }
+    return nodes;
+  }
+
+  @Override
+  public void updateNode(@NotNull String id, @NotNull Map<String, String> changes) {
+    updateNode(id, TextNode.ANY_VERSION, changes);
+  }
+
+  /**
+   * Applies the changes one by one to the node returned from {@link #getTextNode(String)},
+   * or {@link #createTextNode(String)} if there is none, and increments the version by
+   * writing it to {@link AbstractTextNode#VERSION_KEY}, where {@link AbstractTextNode}
+   * reads it from. Listeners are notified after the node has been unlocked.
+   * <p/>
+   * The version check is only atomic with regard to other calls of this method on the
+   * same store instance, which is ensured by a lock per node id. Values set directly on
+   * a node do not change its version. Subclasses should override this method if the
+   * backend allows a real compare-and-set or keeps the version elsewhere.
+   *
+   * @param id
+   * @param expectedVersion
+   * @param changes
+   * @return
+   */
+  @Override
+  public long updateNode(@NotNull String id, long expectedVersion, @NotNull Map<String, String> changes) {
+    for (String key : changes.keySet()) {
+      if (AbstractTextNode.UUID_KEY.equals(key) || AbstractTextNode.VERSION_KEY.equals(key)) {
+        throw new IllegalArgumentException("The key '" + key + "' is reserved");
+      }
+    }
+    boolean created;
+    long oldVersion;
+    long newVersion;
+    synchronized (locks[(id.hashCode() & 0x7fffffff) % locks.length]) {
+      TextNode node = getTextNode(id);
+      created = node == null;
+      if (created) {
+        node = createTextNode(id);
+      }
+      oldVersion = node.getVersion();
+      if (expectedVersion != TextNode.ANY_VERSION && oldVersion != expectedVersion) {
+        throw new StaleTextNodeException(id, expectedVersion, oldVersion);
+      }
+      for (Map.Entry<String, String> change : changes.entrySet()) {
+        if (change.getValue() == null) {
+          node.removeKey(change.getKey());
+        } else {
+          node.setText(change.getKey(), change.getValue());
+        }
+      }
+      node.setText(AbstractTextNode.VERSION_KEY, String.valueOf(oldVersion + 1));
+      newVersion = node.getVersion();
+    }
+    if (created) {
+      fireCreated(id);
+    }
+    fireChanged(id, oldVersion, newVersion, changes);
+    return newVersion;
+  }
+
+  @Override
+  public void addListener(@NotNull TextNodeListener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void removeListener(@NotNull TextNodeListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Returns {@code true}. Subclasses that write changes without calling
+   * {@link #fireChanged(String, long, long, Map)} must return {@code false}.
+   *
+   * @return
+   */
+  @Override
+  public boolean isFiringEvents() {
+    return true;
+  }
+
+  /**
+   * Notifies all listeners that the node has been created. Must be called by
+   * subclasses after the node is visible in the store.
+   *
+   * @param id
+   */
+  protected void fireCreated(@NotNull String id) {
+    if (!listeners.isEmpty()) {
+      fireEvents(Collections.singletonList(new TextNodeEvent(TextNodeEvent.Type.CREATED, id,
+          TextNode.ANY_VERSION, 0, Collections.<String>emptySet())));
+    }
+  }
+
+  /**
+   * Notifies all listeners that the node has been removed. Must be called by
+   * subclasses after the node is no longer visible in the store.
+   *
+   * @param id
+   * @param oldVersion the last version of the removed node
+   */
+  protected void fireRemoved(@NotNull String id, long oldVersion) {
+    if (!listeners.isEmpty()) {
+      fireEvents(Collections.singletonList(new TextNodeEvent(TextNodeEvent.Type.REMOVED, id,
+          oldVersion, TextNode.ANY_VERSION, Collections.<String>emptySet())));
+    }
+  }
+
+  /**
+   * Notifies all listeners about a committed change of a node. Must be called
+   * by subclasses after the change is visible in the store.
+   *
+   * @param id
+   * @param oldVersion
+   * @param newVersion
+   * @param changes the committed changes, where a {@code null} value marks a removed key
+   */
+  protected void fireChanged(@NotNull String id, long oldVersion, long newVersion, @NotNull Map<String, String> changes) {
+    if (listeners.isEmpty()) {
+      return;
+    }
+    Set<String> changed = new HashSet<String>();
+    Set<String> removed = new HashSet<String>();
+    for (Map.Entry<String, String> change : changes.entrySet()) {
+      if (change.getValue() != null) {
+        changed.add(change.getKey());
+      } else {
+        removed.add(change.getKey());
+      }
+    }
+    List<TextNodeEvent> events = new ArrayList<TextNodeEvent>(2);
+    if (!changed.isEmpty() || removed.isEmpty()) {
+      events.add(new TextNodeEvent(TextNodeEvent.Type.CHANGED, id, oldVersion, newVersion,
+          Collections.unmodifiableSet(changed)));
+    }
+    if (!removed.isEmpty()) {
+      events.add(new TextNodeEvent(TextNodeEvent.Type.KEY_REMOVED, id, oldVersion, newVersion,
+          Collections.unmodifiableSet(removed)));
+    }
+    fireEvents(Collections.unmodifiableList(events));
+  }
+
+  private void fireEvents(List<TextNodeEvent> events) {
+    for (TextNodeListener listener : listeners) {
+      listener.onEvents(events);
+    }
+  }
 }
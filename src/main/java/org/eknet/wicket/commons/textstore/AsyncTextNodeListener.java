@@ -0,0 +1,142 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Delivers events to another {@link TextNodeListener} using a background thread, so
+ * that the committing thread never waits for it. Events that arrive while the listener
+ * is busy are queued and delivered together with the next call.
+ * <p/>
+ * If the queue is full, new events are dropped and a warning is logged. Call
+ * {@link #shutdown()} to deliver the remaining events and stop the thread.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 01:20
+ */
+public class AsyncTextNodeListener implements TextNodeListener {
+
+  private static final Logger log = LoggerFactory.getLogger(AsyncTextNodeListener.class);
+
+  private final TextNodeListener delegate;
+  private final BlockingQueue<TextNodeEvent> queue;
+  private final int maxBatchSize;
+  private final Thread worker;
+
+  //held while queueing events, so that none are queued after shutdown
+  private final ReadWriteLock shutdownLock = new ReentrantReadWriteLock();
+  private volatile boolean shutdown;
+
+  public AsyncTextNodeListener(@NotNull TextNodeListener delegate) {
+    this(delegate, 10000, 500);
+  }
+
+  /**
+   * @param delegate the listener to notify
+   * @param capacity the maximum number of queued events
+   * @param maxBatchSize the maximum number of events to deliver at once
+   */
+  public AsyncTextNodeListener(@NotNull TextNodeListener delegate, int capacity, int maxBatchSize) {
+    this.delegate = delegate;
+    this.queue = new LinkedBlockingQueue<TextNodeEvent>(capacity);
+    this.maxBatchSize = maxBatchSize;
+    this.worker = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        deliver();
+      }
+    }, "textnode-listener");
+    this.worker.setDaemon(true);
+    this.worker.start();
+  }
+
+  @Override
+  public void onEvents(@NotNull List<TextNodeEvent> events) {
+    shutdownLock.readLock().lock();
+    try {
+      if (shutdown) {
+        throw new IllegalStateException("The listener has been shut down");
+      }
+      for (TextNodeEvent event : events) {
+        if (!queue.offer(event)) {
+          log.warn("Event queue full, dropping {}", event);
+        }
+      }
+    } finally {
+      shutdownLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the number of events that have not been delivered yet.
+   *
+   * @return
+   */
+  public int getPendingCount() {
+    return queue.size();
+  }
+
+  /**
+   * Stops accepting events and waits until all queued events are delivered.
+   */
+  public void shutdown() {
+    shutdownLock.writeLock().lock();
+    try {
+      shutdown = true;
+    } finally {
+      shutdownLock.writeLock().unlock();
+    }
+    try {
+      worker.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void deliver() {
+    List<TextNodeEvent> batch = new ArrayList<TextNodeEvent>(maxBatchSize);
+    while (!shutdown || !queue.isEmpty()) {
+      try {
+        TextNodeEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+      } catch (InterruptedException e) {
+        return;
+      }
+      queue.drainTo(batch, maxBatchSize - 1);
+      try {
+        delegate.onEvents(new ArrayList<TextNodeEvent>(batch));
+      } catch (RuntimeException e) {
+        log.error("Text node listener failed", e);
+      }
+      batch.clear();
+    }
+  }
+}
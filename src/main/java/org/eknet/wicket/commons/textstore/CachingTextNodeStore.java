@@ -0,0 +1,390 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A read-through cache for another {@link TextNodeStore}. Nodes are kept in a size-bounded
+ * cache that evicts the least recently used node first. Optionally, nodes expire after a
+ * fixed time so that changes made directly in the underlying store are picked up eventually.
+ * <p/>
+ * The nodes returned by this store remove themselves from the cache whenever they are
+ * written to via {@link TextNode#setText(String, String)} or {@link TextNode#removeKey(String)},
+ * so the next lookup reads the node from the underlying store again.
+ * <p/>
+ * The snapshot of a node is requested from the underlying store the first time
+ * {@link #getSnapshot(String)} is called and then kept with the cached node.
+ * <p/>
+ * Nodes are also removed when the underlying store notifies its {@link TextNodeListener}s
+ * about a change. A node that is read from the underlying store while it is changed is
+ * not cached, so a slow read cannot put an outdated node into the cache.
+ * <p/>
+ * If the underlying store is shared by several application instances, each with its own
+ * cache, pass an {@link InvalidationChannel} to notify the other caches about changes.
+ * Changes are published once the underlying store reports them to its listeners, that
+ * is after they have been written, and nodes changed by others are removed from this
+ * cache. If the underlying store does not {@link TextNodeStore#isFiringEvents() fire events},
+ * changes made through this store are published as soon as the write returns instead.
+ * <p/>
+ * Cached nodes are shared by all threads, so the underlying store must return thread-safe
+ * {@link TextNode}s.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 17.10.26 19:55
+ */
+public class CachingTextNodeStore extends DelegatingTextNodeStore {
+
+  private final LruCache<String, TextNode> cache;
+  private final InvalidationChannel channel;
+  private final boolean publishOnWrite;
+
+  //incremented on every invalidation of a node id of the stripe
+  private final long[] generations = new long[32];
+  private final Object[] generationLocks = new Object[generations.length];
+
+  public CachingTextNodeStore(@NotNull TextNodeStore delegate, int maxSize) {
+    this(delegate, maxSize, 0, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates a new caching store.
+   *
+   * @param delegate the store to read nodes from
+   * @param maxSize the maximum number of nodes to cache
+   * @param ttl the time after that a cached node expires, {@code 0} means never
+   * @param unit the unit of {@code ttl}
+   */
+  public CachingTextNodeStore(@NotNull TextNodeStore delegate, int maxSize, long ttl, @NotNull TimeUnit unit) {
+    this(delegate, maxSize, ttl, unit, null);
+  }
+
+  /**
+   * Creates a new caching store that is kept consistent with other caches
+   * using the given channel.
+   *
+   * @param delegate the store to read nodes from
+   * @param maxSize the maximum number of nodes to cache
+   * @param ttl the time after that a cached node expires, {@code 0} means never
+   * @param unit the unit of {@code ttl}
+   * @param channel the channel to publish and receive changed node ids, may be {@code null}
+   */
+  public CachingTextNodeStore(@NotNull TextNodeStore delegate, int maxSize, long ttl, @NotNull TimeUnit unit,
+                              @Nullable InvalidationChannel channel) {
+    super(delegate);
+    this.cache = new LruCache<String, TextNode>(maxSize, unit.toMillis(ttl));
+    this.channel = channel;
+    this.publishOnWrite = channel != null && !delegate.isFiringEvents();
+    for (int i = 0; i < generationLocks.length; i++) {
+      generationLocks[i] = new Object();
+    }
+    delegate.addListener(new TextNodeListener() {
+      @Override
+      public void onEvents(@NotNull List<TextNodeEvent> events) {
+        String last = null;
+        for (TextNodeEvent event : events) {
+          if (!event.getNodeId().equals(last)) {
+            last = event.getNodeId();
+            written(last);
+          }
+        }
+      }
+    });
+    if (channel != null) {
+      channel.subscribe(new InvalidationChannel.Listener() {
+        @Override
+        public void invalidated(@NotNull String nodeId) {
+          invalidate(nodeId);
+        }
+      });
+    }
+  }
+
+  @NotNull
+  @Override
+  public TextNode createTextNode(@NotNull String id) {
+    long generation = generation(id);
+    return cache(delegate.createTextNode(id), generation);
+  }
+
+  @NotNull
+  @Override
+  public TextNode getOrCreateNode(@NotNull String id) {
+    TextNode node = cache.get(id);
+    if (node == null) {
+      long generation = generation(id);
+      node = cache(delegate.getOrCreateNode(id), generation);
+    }
+    return node;
+  }
+
+  @Nullable
+  @Override
+  public TextNode getTextNode(@NotNull String id) {
+    TextNode node = cache.get(id);
+    if (node == null) {
+      long generation = generation(id);
+      node = delegate.getTextNode(id);
+      if (node != null) {
+        node = cache(node, generation);
+      }
+    }
+    return node;
+  }
+
+  /**
+   * Returns cached nodes directly and reads all others from the underlying
+   * store at once.
+   *
+   * @param ids
+   * @return
+   */
+  @NotNull
+  @Override
+  public Map<String, TextNode> getTextNodes(@NotNull Collection<String> ids) {
+    Map<String, TextNode> nodes = new LinkedHashMap<String, TextNode>();
+    Map<String, Long> missing = new LinkedHashMap<String, Long>();
+    for (String id : ids) {
+      TextNode node = cache.get(id);
+      if (node != null) {
+        nodes.put(id, node);
+      } else {
+        missing.put(id, generation(id));
+      }
+    }
+    if (!missing.isEmpty()) {
+      for (TextNode node : delegate.getTextNodes(missing.keySet()).values()) {
+        nodes.put(node.getId(), cache(node, missing.get(node.getId())));
+      }
+    }
+    return nodes;
+  }
+
+  @Nullable
+  @Override
+  public TextNodeSnapshot getSnapshot(@NotNull String id) {
+    TextNode node = getTextNode(id);
+    return node != null ? ((CachedTextNode) node).getSnapshot() : null;
+  }
+
+  /**
+   * Returns the snapshots of cached nodes directly. All other nodes are read
+   * using {@link #getTextNodes(Collection)} and their snapshots are requested
+   * from the underlying store at once.
+   *
+   * @param ids
+   * @return
+   */
+  @NotNull
+  @Override
+  public Map<String, TextNodeSnapshot> getSnapshots(@NotNull Collection<String> ids) {
+    Map<String, TextNode> nodes = getTextNodes(ids);
+    List<String> missing = new ArrayList<String>();
+    for (TextNode node : nodes.values()) {
+      if (((CachedTextNode) node).snapshot == null) {
+        missing.add(node.getId());
+      }
+    }
+    if (!missing.isEmpty()) {
+      for (TextNodeSnapshot snapshot : delegate.getSnapshots(missing).values()) {
+        CachedTextNode node = (CachedTextNode) nodes.get(snapshot.getId());
+        if (node != null && node.snapshot == null) {
+          node.snapshot = snapshot;
+        }
+      }
+    }
+    Map<String, TextNodeSnapshot> snapshots = new LinkedHashMap<String, TextNodeSnapshot>();
+    for (TextNode node : nodes.values()) {
+      snapshots.put(node.getId(), ((CachedTextNode) node).getSnapshot());
+    }
+    return snapshots;
+  }
+
+  @Override
+  public void updateNode(@NotNull String id, @NotNull Map<String, String> changes) {
+    try {
+      delegate.updateNode(id, changes);
+    } finally {
+      changed(id);
+    }
+  }
+
+  @Override
+  public long updateNode(@NotNull String id, long expectedVersion, @NotNull Map<String, String> changes) {
+    try {
+      return delegate.updateNode(id, expectedVersion, changes);
+    } finally {
+      changed(id);
+    }
+  }
+
+  /**
+   * Caches the node, unless it has been invalidated since the given
+   * generation has been read. The node is returned in both cases.
+   *
+   * @param node
+   * @param generation
+   * @return
+   */
+  private TextNode cache(TextNode node, long generation) {
+    CachedTextNode cached = new CachedTextNode(node);
+    int stripe = stripe(cached.getId());
+    synchronized (generationLocks[stripe]) {
+      if (generations[stripe] == generation) {
+        cache.put(cached.getId(), cached);
+      }
+    }
+    return cached;
+  }
+
+  private long generation(String id) {
+    int stripe = stripe(id);
+    synchronized (generationLocks[stripe]) {
+      return generations[stripe];
+    }
+  }
+
+  private int stripe(String id) {
+    return (id.hashCode() & 0x7fffffff) % generations.length;
+  }
+
+  /**
+   * Called when a node has been changed through this store. Other caches are
+   * notified once the underlying store has written the change, or right away
+   * if the underlying store does not report its changes.
+   *
+   * @param id
+   */
+  private void changed(String id) {
+    invalidate(id);
+    if (publishOnWrite) {
+      channel.publish(id);
+    }
+  }
+
+  /**
+   * Called by the underlying store after a change has been written.
+   *
+   * @param id
+   */
+  private void written(String id) {
+    invalidate(id);
+    if (channel != null) {
+      channel.publish(id);
+    }
+  }
+
+  /**
+   * Removes the node with the given id from the cache. Other caches
+   * are not notified.
+   *
+   * @param id
+   */
+  public void invalidate(@NotNull String id) {
+    int stripe = stripe(id);
+    synchronized (generationLocks[stripe]) {
+      generations[stripe]++;
+      cache.remove(id);
+    }
+  }
+
+  /**
+   * Removes all nodes from the cache.
+   */
+  public void invalidateAll() {
+    for (int i = 0; i < generations.length; i++) {
+      synchronized (generationLocks[i]) {
+        generations[i]++;
+      }
+    }
+    cache.clear();
+  }
+
+  /**
+   * Returns the number of nodes currently cached.
+   *
+   * @return
+   */
+  public int getCacheSize() {
+    return cache.size();
+  }
+
+  public long getHitCount() {
+    return cache.getHitCount();
+  }
+
+  public long getMissCount() {
+    return cache.getMissCount();
+  }
+
+  /**
+   * Returns the ratio of lookups that could be answered from the cache. It
+   * is {@code 0} if there were no lookups yet.
+   *
+   * @return
+   */
+  public double getHitRatio() {
+    return cache.getHitRatio();
+  }
+
+  private final class CachedTextNode extends DelegatingTextNode {
+
+    private volatile TextNodeSnapshot snapshot;
+
+    private CachedTextNode(TextNode delegate) {
+      super(delegate);
+    }
+
+    private TextNodeSnapshot getSnapshot() {
+      TextNodeSnapshot current = snapshot;
+      if (current == null) {
+        current = CachingTextNodeStore.this.delegate.getSnapshot(getId());
+        if (current == null) {
+          current = TextNodeSnapshot.of(delegate);
+        }
+        snapshot = current;
+      }
+      return current;
+    }
+
+    @Override
+    public void setText(@NotNull String key, @NotNull String value) {
+      try {
+        super.setText(key, value);
+      } finally {
+        changed(getId());
+      }
+    }
+
+    @Override
+    public void removeKey(@NotNull String key) {
+      try {
+        super.removeKey(key);
+      } finally {
+        changed(getId());
+      }
+    }
+  }
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.apache.wicket.util.crypt.Base64;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses large values before they are written to another {@link TextNodeStore}.
+ * Values with at least {@code threshold} characters are deflated and stored Base64
+ * encoded, prefixed with a marker, their number of characters and their number of
+ * UTF-8 bytes. They are inflated again when read through this store. Values that do
+ * not get smaller are stored as they are.
+ * <p/>
+ * The {@link Inflater}s and {@link Deflater}s are pooled along with their buffers,
+ * so reading a value allocates little more than the resulting string.
+ * {@link TextNode#getTextSize(String)} returns the number of characters of a
+ * compressed value without inflating it.
+ * <p/>
+ * Values the underlying store has left out of a node or snapshot, like the large values
+ * of a {@link JdbcTextNodeStore}, are inflated when they are read first. Until then,
+ * {@link TextNode#getTextSize(String)} returns their size as stored, which is smaller
+ * than their number of characters if they are compressed.
+ * <p/>
+ * Inflated snapshots are cached by node id and version, so a node is inflated once per
+ * version even if the underlying store creates a new snapshot on every call. This requires
+ * an underlying store that increments the version with every change. A
+ * {@link WriteBehindTextNodeStore} does not do that for its pending changes, so it must
+ * wrap this store and not the other way round.
+ * <p/>
+ * Compressed values are only readable through this store, so it should always wrap
+ * the same underlying store. Values that have been written before are read as they
+ * are and compressed with their next change.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 01:32
+ */
+public class CompressingTextNodeStore extends DelegatingTextNodeStore {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  //the marker is a control character, values starting with it are escaped
+  private static final char MARKER = '\u0001';
+  private static final char COMPRESSED = 'D';
+  private static final char ESCAPED = 'R';
+
+  private static final int DEFAULT_THRESHOLD = 1024;
+  private static final int POOL_SIZE = 8;
+  private static final int MAX_SNAPSHOTS = 10000;
+  private static final int MAX_POOLED_BUFFER = 64 * 1024;
+
+  private final int threshold;
+  private final BlockingQueue<Codec> codecs = new ArrayBlockingQueue<Codec>(POOL_SIZE);
+
+  private final LruCache<String, TextNodeSnapshot> snapshots = new LruCache<String, TextNodeSnapshot>(MAX_SNAPSHOTS, 0);
+
+  private final AtomicLong compressedCount = new AtomicLong();
+  private final AtomicLong uncompressedChars = new AtomicLong();
+  private final AtomicLong compressedChars = new AtomicLong();
+  private final AtomicLong inflateCount = new AtomicLong();
+
+  public CompressingTextNodeStore(@NotNull TextNodeStore delegate) {
+    this(delegate, DEFAULT_THRESHOLD);
+  }
+
+  /**
+   * Creates a new store that compresses values written to {@code delegate}.
+   *
+   * @param delegate the store to write to
+   * @param threshold the minimum number of characters of a value to be compressed
+   */
+  public CompressingTextNodeStore(@NotNull TextNodeStore delegate, int threshold) {
+    super(delegate);
+    if (threshold < 1) {
+      throw new IllegalArgumentException("The threshold must be positive: " + threshold);
+    }
+    this.threshold = threshold;
+    //a removed node may be created again with the same versions
+    delegate.addListener(new TextNodeListener() {
+      @Override
+      public void onEvents(@NotNull List<TextNodeEvent> events) {
+        for (TextNodeEvent event : events) {
+          if (event.getType() == TextNodeEvent.Type.REMOVED) {
+            snapshots.remove(event.getNodeId());
+          }
+        }
+      }
+    });
+  }
+
+  @NotNull
+  @Override
+  public TextNode createTextNode(@NotNull String id) {
+    return new CompressingNode(delegate.createTextNode(id));
+  }
+
+  @NotNull
+  @Override
+  public TextNode getOrCreateNode(@NotNull String id) {
+    return new CompressingNode(delegate.getOrCreateNode(id));
+  }
+
+  @Nullable
+  @Override
+  public TextNode getTextNode(@NotNull String id) {
+    TextNode node = delegate.getTextNode(id);
+    return node != null ? new CompressingNode(node) : null;
+  }
+
+  @NotNull
+  @Override
+  public Map<String, TextNode> getTextNodes(@NotNull Collection<String> ids) {
+    Map<String, TextNode> nodes = new LinkedHashMap<String, TextNode>();
+    for (TextNode node : delegate.getTextNodes(ids).values()) {
+      nodes.put(node.getId(), new CompressingNode(node));
+    }
+    return nodes;
+  }
+
+  /**
+   * Returns a snapshot with all values inflated. As long as the node is at the
+   * same version, the same inflated snapshot is returned.
+   *
+   * @param id
+   * @return
+   */
+  @Nullable
+  @Override
+  public TextNodeSnapshot getSnapshot(@NotNull String id) {
+    TextNodeSnapshot stored = delegate.getSnapshot(id);
+    return stored != null ? inflate(stored) : null;
+  }
+
+  @NotNull
+  @Override
+  public Map<String, TextNodeSnapshot> getSnapshots(@NotNull Collection<String> ids) {
+    Map<String, TextNodeSnapshot> snapshots = new LinkedHashMap<String, TextNodeSnapshot>();
+    for (TextNodeSnapshot stored : delegate.getSnapshots(ids).values()) {
+      snapshots.put(stored.getId(), inflate(stored));
+    }
+    return snapshots;
+  }
+
+  private TextNodeSnapshot inflate(TextNodeSnapshot stored) {
+    TextNodeSnapshot snapshot = snapshots.get(stored.getId());
+    if (snapshot == null || snapshot.getVersion() != stored.getVersion()) {
+      Map<String, String> values = new HashMap<String, String>();
+      Map<String, Integer> lazySizes = new HashMap<String, Integer>();
+      for (String key : stored.getKeys()) {
+        if (stored.isLoaded(key)) {
+          String value = decode(stored.getText(key));
+          if (value != null) {
+            values.put(key, value);
+          }
+        } else {
+          lazySizes.put(key, stored.getTextSize(key));
+        }
+      }
+      snapshot = lazySizes.isEmpty()
+          ? TextNodeSnapshot.of(stored.getId(), stored.getVersion(), values)
+          : TextNodeSnapshot.of(stored.getId(), stored.getVersion(), values, lazySizes, new InflatingLoader(stored.getLoader()));
+      snapshots.put(stored.getId(), snapshot);
+    }
+    return snapshot;
+  }
+
+  @Override
+  public void updateNode(@NotNull String id, @NotNull Map<String, String> changes) {
+    delegate.updateNode(id, encode(changes));
+  }
+
+  @Override
+  public long updateNode(@NotNull String id, long expectedVersion, @NotNull Map<String, String> changes) {
+    return delegate.updateNode(id, expectedVersion, encode(changes));
+  }
+
+  /**
+   * Returns the number of values that have been compressed.
+   *
+   * @return
+   */
+  public long getCompressedCount() {
+    return compressedCount.get();
+  }
+
+  /**
+   * Returns the number of times a value has been inflated.
+   *
+   * @return
+   */
+  public long getInflateCount() {
+    return inflateCount.get();
+  }
+
+  /**
+   * Returns the number of characters of all compressed values as stored, divided
+   * by their number of characters before compression. Smaller is better.
+   *
+   * @return the ratio or {@code 1} if nothing has been compressed yet
+   */
+  public double getCompressionRatio() {
+    long original = uncompressedChars.get();
+    return original == 0 ? 1.0 : (double) compressedChars.get() / original;
+  }
+
+  private Map<String, String> encode(Map<String, String> changes) {
+    Map<String, String> encoded = new LinkedHashMap<String, String>();
+    for (Map.Entry<String, String> change : changes.entrySet()) {
+      encoded.put(change.getKey(), encode(change.getValue()));
+    }
+    return encoded;
+  }
+
+  @Nullable
+  private String encode(@Nullable String value) {
+    if (value == null) {
+      return null;
+    }
+    if (value.length() >= threshold) {
+      byte[] bytes = value.getBytes(UTF8);
+      byte[] deflated = deflate(bytes);
+      String encoded = new StringBuilder(deflated.length * 4 / 3 + 16)
+          .append(MARKER).append(COMPRESSED).append(value.length()).append(',').append(bytes.length).append(':')
+          .append(new String(Base64.encodeBase64(deflated), UTF8))
+          .toString();
+      if (encoded.length() < value.length()) {
+        compressedCount.incrementAndGet();
+        uncompressedChars.addAndGet(value.length());
+        compressedChars.addAndGet(encoded.length());
+        return encoded;
+      }
+    }
+    if (value.length() > 0 && value.charAt(0) == MARKER) {
+      return new StringBuilder(value.length() + 2).append(MARKER).append(ESCAPED).append(value).toString();
+    }
+    return value;
+  }
+
+  @Nullable
+  private String decode(@Nullable String stored) {
+    if (stored == null || stored.length() < 2 || stored.charAt(0) != MARKER) {
+      return stored;
+    }
+    if (stored.charAt(1) == ESCAPED) {
+      return stored.substring(2);
+    }
+    int separator = stored.indexOf(':');
+    int length = Integer.parseInt(stored.substring(stored.indexOf(',') + 1, separator));
+    byte[] deflated = Base64.decodeBase64(stored.substring(separator + 1).getBytes(UTF8));
+    inflateCount.incrementAndGet();
+    return inflate(deflated, length);
+  }
+
+  private int decodedSize(@Nullable String stored) {
+    if (stored == null) {
+      return -1;
+    }
+    if (stored.length() < 2 || stored.charAt(0) != MARKER) {
+      return stored.length();
+    }
+    if (stored.charAt(1) == ESCAPED) {
+      return stored.length() - 2;
+    }
+    return Integer.parseInt(stored.substring(2, stored.indexOf(',')));
+  }
+
+  private byte[] deflate(byte[] bytes) {
+    Codec codec = borrow();
+    try {
+      codec.deflater.setInput(bytes);
+      codec.deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+      while (!codec.deflater.finished()) {
+        int n = codec.deflater.deflate(codec.buffer);
+        out.write(codec.buffer, 0, n);
+      }
+      return out.toByteArray();
+    } finally {
+      codec.deflater.reset();
+      release(codec);
+    }
+  }
+
+  private String inflate(byte[] deflated, int length) {
+    Codec codec = borrow();
+    try {
+      byte[] buffer = codec.buffer(length);
+      codec.inflater.setInput(deflated);
+      int read = 0;
+      while (read < length && !codec.inflater.finished()) {
+        int n = codec.inflater.inflate(buffer, read, length - read);
+        if (n == 0 && (codec.inflater.needsInput() || codec.inflater.needsDictionary())) {
+          break;
+        }
+        read += n;
+      }
+      if (read != length) {
+        throw new IllegalStateException("Corrupt compressed text value: expected " + length + " bytes, got " + read);
+      }
+      return new String(buffer, 0, length, UTF8);
+    } catch (DataFormatException e) {
+      throw new IllegalStateException("Corrupt compressed text value", e);
+    } finally {
+      codec.inflater.reset();
+      release(codec);
+    }
+  }
+
+  private Codec borrow() {
+    Codec codec = codecs.poll();
+    return codec != null ? codec : new Codec();
+  }
+
+  private void release(Codec codec) {
+    if (codec.buffer.length > MAX_POOLED_BUFFER) {
+      codec.buffer = new byte[Codec.INITIAL_BUFFER];
+    }
+    if (!codecs.offer(codec)) {
+      codec.end();
+    }
+  }
+
+  /**
+   * An {@link Inflater}, a {@link Deflater} and a buffer, used by one thread at a time.
+   */
+  private static final class Codec {
+    private static final int INITIAL_BUFFER = 8192;
+
+    private final Inflater inflater = new Inflater();
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] buffer = new byte[INITIAL_BUFFER];
+
+    private byte[] buffer(int size) {
+      if (buffer.length < size) {
+        buffer = new byte[Math.max(size, buffer.length * 2)];
+      }
+      return buffer;
+    }
+
+    private void end() {
+      inflater.end();
+      deflater.end();
+    }
+  }
+
+  /**
+   * Inflates the values loaded by the loader of the underlying store.
+   */
+  private final class InflatingLoader implements TextNodeSnapshot.ValueLoader {
+
+    private final TextNodeSnapshot.ValueLoader loader;
+
+    private InflatingLoader(TextNodeSnapshot.ValueLoader loader) {
+      this.loader = loader;
+    }
+
+    @Nullable
+    @Override
+    public String load(@NotNull String id, @NotNull String key) {
+      return decode(loader.load(id, key));
+    }
+  }
+
+  private final class CompressingNode extends DelegatingTextNode {
+
+    private CompressingNode(TextNode delegate) {
+      super(delegate);
+    }
+
+    @Nullable
+    @Override
+    public String getText(@NotNull String key) {
+      return decode(delegate.getText(key));
+    }
+
+    @Override
+    public String getText(@NotNull String key, @Nullable String defaultValue) {
+      String value = getText(key);
+      return value != null ? value : defaultValue;
+    }
+
+    @NotNull
+    @Override
+    public String requireText(@NotNull String key) {
+      String value = getText(key);
+      if (value == null) {
+        throw new IllegalArgumentException("No text found for key: " + key);
+      }
+      return value;
+    }
+
+    /**
+     * Returns the number of characters without inflating the value. A value
+     * the underlying node has not loaded yet is not loaded either, its size
+     * as stored is returned.
+     *
+     * @param key
+     * @return
+     */
+    @Override
+    public int getTextSize(@NotNull String key) {
+      if (delegate instanceof LazyTextNode && !((LazyTextNode) delegate).isLoaded(key)) {
+        return delegate.getTextSize(key);
+      }
+      return decodedSize(delegate.getText(key));
+    }
+
+    @Override
+    public void setText(@NotNull String key, @NotNull String value) {
+      delegate.setText(key, encode(value));
+    }
+  }
+}
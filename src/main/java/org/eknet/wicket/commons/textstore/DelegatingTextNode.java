@@ -0,0 +1,101 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+
+/**
+ * A {@link TextNode} that forwards all calls to another node.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 17.10.26 19:43
+ */
+public abstract class DelegatingTextNode implements TextNode {
+
+  protected final TextNode delegate;
+
+  protected DelegatingTextNode(@NotNull TextNode delegate) {
+    this.delegate = delegate;
+  }
+
+  @NotNull
+  public TextNode getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public boolean isCreated() {
+    return delegate.isCreated();
+  }
+
+  @Override
+  public boolean isModified() {
+    return delegate.isModified();
+  }
+
+  @Override
+  public long getVersion() {
+    return delegate.getVersion();
+  }
+
+  @NotNull
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @NotNull
+  @Override
+  public Set<String> getKeys() {
+    return delegate.getKeys();
+  }
+
+  @Nullable
+  @Override
+  public String getText(@NotNull String key) {
+    return delegate.getText(key);
+  }
+
+  @Override
+  public String getText(@NotNull String key, @Nullable String defaultValue) {
+    return delegate.getText(key, defaultValue);
+  }
+
+  @Override
+  public int getTextSize(@NotNull String key) {
+    return delegate.getTextSize(key);
+  }
+
+  @NotNull
+  @Override
+  public String requireText(@NotNull String key) {
+    return delegate.requireText(key);
+  }
+
+  @Override
+  public void setText(@NotNull String key, @NotNull String value) {
+    delegate.setText(key, value);
+  }
+
+  @Override
+  public void removeKey(@NotNull String key) {
+    delegate.removeKey(key);
+  }
+}
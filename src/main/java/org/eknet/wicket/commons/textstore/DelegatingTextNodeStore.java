@@ -0,0 +1,111 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A {@link TextNodeStore} that forwards all calls to another store. Subclasses
+ * override the methods they want to decorate.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 17.10.26 19:41
+ */
+public abstract class DelegatingTextNodeStore extends AbstractTextNodeStore {
+
+  protected final TextNodeStore delegate;
+
+  protected DelegatingTextNodeStore(@NotNull TextNodeStore delegate) {
+    this.delegate = delegate;
+  }
+
+  @NotNull
+  public TextNodeStore getDelegate() {
+    return delegate;
+  }
+
+  @NotNull
+  @Override
+  public TextNode createTextNode(@NotNull String id) {
+    return delegate.createTextNode(id);
+  }
+
+  @NotNull
+  @Override
+  public TextNode getOrCreateNode(@NotNull String id) {
+    return delegate.getOrCreateNode(id);
+  }
+
+  @Nullable
+  @Override
+  public TextNode getTextNode(@NotNull String id) {
+    return delegate.getTextNode(id);
+  }
+
+  @NotNull
+  @Override
+  public Map<String, TextNode> getTextNodes(@NotNull Collection<String> ids) {
+    return delegate.getTextNodes(ids);
+  }
+
+  @Override
+  public void updateNode(@NotNull String id, @NotNull Map<String, String> changes) {
+    delegate.updateNode(id, changes);
+  }
+
+  @Nullable
+  @Override
+  public TextNodeSnapshot getSnapshot(@NotNull String id) {
+    return delegate.getSnapshot(id);
+  }
+
+  @NotNull
+  @Override
+  public Map<String, TextNodeSnapshot> getSnapshots(@NotNull Collection<String> ids) {
+    return delegate.getSnapshots(ids);
+  }
+
+  /**
+   * Registers the listener with the underlying store, which notifies
+   * about all changes.
+   *
+   * @param listener
+   */
+  @Override
+  public void addListener(@NotNull TextNodeListener listener) {
+    delegate.addListener(listener);
+  }
+
+  @Override
+  public void removeListener(@NotNull TextNodeListener listener) {
+    delegate.removeListener(listener);
+  }
+
+  @Override
+  public boolean isFiringEvents() {
+    return delegate.isFiringEvents();
+  }
+
+  @Override
+  public long updateNode(@NotNull String id, long expectedVersion, @NotNull Map<String, String> changes) {
+    return delegate.updateNode(id, expectedVersion, changes);
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Broadcasts the ids of changed {@link TextNode}s to other application nodes, so that
+ * they can drop their cached copies. Used by {@link CachingTextNodeStore}.
+ * <p/>
+ * Delivery is best effort. Caches should still use a time to live as a safety
+ * net for lost messages.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 00:45
+ */
+public interface InvalidationChannel {
+
+  /**
+   * Notifies all other subscribers that the node with the given id has changed.
+   *
+   * @param nodeId
+   */
+  void publish(@NotNull String nodeId);
+
+  /**
+   * Registers a listener that is notified about nodes changed by others.
+   *
+   * @param listener
+   */
+  void subscribe(@NotNull Listener listener);
+
+  void unsubscribe(@NotNull Listener listener);
+
+  interface Listener {
+
+    /**
+     * Called when another subscriber has published a change of the node.
+     *
+     * @param nodeId
+     */
+    void invalidated(@NotNull String nodeId);
+  }
+}
@@ -0,0 +1,729 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link TextNodeStore} that keeps its nodes in a database table with one row per
+ * node id and key:
+ * <pre>
+ *   CREATE TABLE textnode (
+ *     node_id VARCHAR(255) NOT NULL,
+ *     text_key VARCHAR(255) NOT NULL,
+ *     text_value CLOB,
+ *     node_version BIGINT DEFAULT 0 NOT NULL,
+ *     PRIMARY KEY (node_id, text_key)
+ *   )
+ * </pre>
+ * The table can be created using {@link #createTable()}, which works at least with
+ * H2 and Derby.
+ * <p/>
+ * A node is read with a single query. All changes to a node that are applied with
+ * {@link #updateNode(String, long, Map)} are written in one transaction using one batched
+ * delete and one batched insert statement. The SQL of each statement is created once,
+ * so a {@link DataSource} with a statement cache can reuse the prepared statements.
+ * <p/>
+ * The {@link TextNode#getVersion() version} of a node is kept in the {@code node_version}
+ * column of the row holding its id. It is incremented with a conditional update at the
+ * start of each transaction, which fails if another transaction has changed the node
+ * concurrently. No row locks are held while the node is read or edited.
+ * <p/>
+ * Values longer than a threshold are not read together with their node. They are
+ * loaded with a separate query on the first {@link TextNode#getText(String)} call for
+ * their key, while {@link TextNode#getTextSize(String)} returns their length without
+ * loading them. The same applies to the snapshots returned by {@link #getSnapshot(String)}
+ * and {@link #getSnapshots(Collection)}, which are read with the same queries as the nodes.
+ * <p/>
+ * A node is {@link TextNode#isModified() modified} once it has been written to.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 17.10.26 22:10
+ */
+public class JdbcTextNodeStore extends AbstractTextNodeStore {
+
+  private static final int MAX_IDS_PER_QUERY = 100;
+  private static final int DEFAULT_LAZY_THRESHOLD = 4096;
+
+  private final DataSource dataSource;
+  private final String tableName;
+  private final int lazyThreshold;
+  private final String valueColumns;
+
+  private final String selectNodeSql;
+  private final String selectValueSql;
+  private final String existsSql;
+  private final String versionSql;
+  private final String casVersionSql;
+  private final String deleteSql;
+  private final String insertSql;
+
+  private final TextNodeSnapshot.ValueLoader valueLoader = new TextNodeSnapshot.ValueLoader() {
+    @Nullable
+    @Override
+    public String load(@NotNull String id, @NotNull String key) {
+      return loadValue(id, key);
+    }
+  };
+
+  public JdbcTextNodeStore(@NotNull DataSource dataSource) {
+    this(dataSource, "textnode");
+  }
+
+  public JdbcTextNodeStore(@NotNull DataSource dataSource, @NotNull String tableName) {
+    this(dataSource, tableName, DEFAULT_LAZY_THRESHOLD);
+  }
+
+  /**
+   * Creates a new store.
+   *
+   * @param dataSource the database to use
+   * @param tableName the table holding the nodes
+   * @param lazyThreshold values with more characters are loaded on first access,
+   * {@code 0} loads all values with their node
+   */
+  public JdbcTextNodeStore(@NotNull DataSource dataSource, @NotNull String tableName, int lazyThreshold) {
+    if (!tableName.matches("[A-Za-z_][A-Za-z0-9_.]*")) {
+      throw new IllegalArgumentException("Invalid table name: " + tableName);
+    }
+    this.dataSource = dataSource;
+    this.tableName = tableName;
+    this.lazyThreshold = lazyThreshold > 0 ? lazyThreshold : Integer.MAX_VALUE;
+    //large values are replaced by null and only their length is read
+    this.valueColumns = "text_key, CASE WHEN LENGTH(text_value) > ? THEN NULL ELSE text_value END, "
+        + "LENGTH(text_value), node_version";
+    this.selectNodeSql = "SELECT " + valueColumns + " FROM " + tableName + " WHERE node_id = ?";
+    this.selectValueSql = "SELECT text_value FROM " + tableName + " WHERE node_id = ? AND text_key = ?";
+    this.existsSql = "SELECT COUNT(*) FROM " + tableName + " WHERE node_id = ?";
+    this.versionSql = "SELECT node_version FROM " + tableName + " WHERE node_id = ? AND text_key = ?";
+    this.casVersionSql = "UPDATE " + tableName + " SET node_version = ? WHERE node_id = ? AND text_key = ? AND node_version = ?";
+    this.deleteSql = "DELETE FROM " + tableName + " WHERE node_id = ? AND text_key = ?";
+    this.insertSql = "INSERT INTO " + tableName + " (node_id, text_key, text_value) VALUES (?, ?, ?)";
+  }
+
+  public String getTableName() {
+    return tableName;
+  }
+
+  /**
+   * Creates the table used by this store.
+   */
+  public void createTable() {
+    Connection conn = getConnection();
+    try {
+      Statement stmt = conn.createStatement();
+      try {
+        stmt.executeUpdate("CREATE TABLE " + tableName + " ("
+            + "node_id VARCHAR(255) NOT NULL, "
+            + "text_key VARCHAR(255) NOT NULL, "
+            + "text_value CLOB, "
+            + "node_version BIGINT DEFAULT 0 NOT NULL, "
+            + "PRIMARY KEY (node_id, text_key))");
+      } finally {
+        stmt.close();
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Unable to create table " + tableName, e);
+    } finally {
+      close(conn);
+    }
+  }
+
+  @NotNull
+  @Override
+  public TextNode createTextNode(@NotNull String id) {
+    Connection conn = getConnection();
+    try {
+      conn.setAutoCommit(false);
+      try {
+        if (exists(conn, id)) {
+          throw new IllegalArgumentException("A node with id '" + id + "' already exists");
+        }
+        insertIdRow(conn, id);
+        conn.commit();
+      } catch (SQLException e) {
+        conn.rollback();
+        throw e;
+      } catch (RuntimeException e) {
+        conn.rollback();
+        throw e;
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Unable to create text node: " + id, e);
+    } finally {
+      close(conn);
+    }
+    fireCreated(id);
+    NodeData data = new NodeData();
+    data.values.put(AbstractTextNode.UUID_KEY, id);
+    return new JdbcTextNode(id, data, true);
+  }
+
+  @NotNull
+  @Override
+  public TextNode getOrCreateNode(@NotNull String id) {
+    TextNode node = getTextNode(id);
+    if (node == null) {
+      try {
+        node = createTextNode(id);
+      } catch (RuntimeException e) {
+        //another thread might have created it in the meantime
+        node = getTextNode(id);
+        if (node == null) {
+          throw e;
+        }
+      }
+    }
+    return node;
+  }
+
+  @Nullable
+  @Override
+  public TextNode getTextNode(@NotNull String id) {
+    NodeData data = loadNode(id);
+    return data != null ? new JdbcTextNode(id, data, false) : null;
+  }
+
+  /**
+   * Loads the nodes using as few queries as possible.
+   *
+   * @param ids
+   * @return
+   */
+  @NotNull
+  @Override
+  public Map<String, TextNode> getTextNodes(@NotNull Collection<String> ids) {
+    Map<String, TextNode> nodes = new LinkedHashMap<String, TextNode>();
+    for (Map.Entry<String, NodeData> entry : loadNodes(ids).entrySet()) {
+      nodes.put(entry.getKey(), new JdbcTextNode(entry.getKey(), entry.getValue(), false));
+    }
+    return nodes;
+  }
+
+  /**
+   * Reads the snapshot with a single query. Large values are loaded when
+   * they are read first.
+   *
+   * @param id
+   * @return
+   */
+  @Nullable
+  @Override
+  public TextNodeSnapshot getSnapshot(@NotNull String id) {
+    NodeData data = loadNode(id);
+    return data != null ? data.toSnapshot(id, valueLoader) : null;
+  }
+
+  /**
+   * Loads the snapshots using as few queries as possible. Large values are
+   * loaded when they are read first.
+   *
+   * @param ids
+   * @return
+   */
+  @NotNull
+  @Override
+  public Map<String, TextNodeSnapshot> getSnapshots(@NotNull Collection<String> ids) {
+    Map<String, TextNodeSnapshot> snapshots = new LinkedHashMap<String, TextNodeSnapshot>();
+    for (Map.Entry<String, NodeData> entry : loadNodes(ids).entrySet()) {
+      snapshots.put(entry.getKey(), entry.getValue().toSnapshot(entry.getKey(), valueLoader));
+    }
+    return snapshots;
+  }
+
+  /**
+   * Reads the rows of a node.
+   *
+   * @param id
+   * @return the rows or {@code null} if the node does not exist
+   */
+  @Nullable
+  private NodeData loadNode(String id) {
+    Connection conn = getConnection();
+    try {
+      NodeData data = new NodeData();
+      PreparedStatement select = conn.prepareStatement(selectNodeSql);
+      try {
+        select.setInt(1, lazyThreshold);
+        select.setString(2, id);
+        ResultSet rs = select.executeQuery();
+        try {
+          while (rs.next()) {
+            data.read(rs, 1);
+          }
+        } finally {
+          rs.close();
+        }
+      } finally {
+        select.close();
+      }
+      return data.isEmpty() ? null : data;
+    } catch (SQLException e) {
+      throw new IllegalStateException("Unable to load text node: " + id, e);
+    } finally {
+      close(conn);
+    }
+  }
+
+  /**
+   * Reads the rows of the nodes with at most {@link #MAX_IDS_PER_QUERY} ids per query.
+   *
+   * @param ids
+   * @return the rows of all existing nodes by their id
+   */
+  @NotNull
+  private Map<String, NodeData> loadNodes(Collection<String> ids) {
+    Map<String, NodeData> data = new LinkedHashMap<String, NodeData>();
+    List<String> idList = new ArrayList<String>(ids);
+    Connection conn = getConnection();
+    try {
+      for (int start = 0; start < idList.size(); start += MAX_IDS_PER_QUERY) {
+        List<String> chunk = idList.subList(start, Math.min(idList.size(), start + MAX_IDS_PER_QUERY));
+        StringBuilder sql = new StringBuilder("SELECT node_id, ").append(valueColumns).append(" FROM ")
+            .append(tableName).append(" WHERE node_id IN (");
+        for (int i = 0; i < chunk.size(); i++) {
+          sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
+        PreparedStatement select = conn.prepareStatement(sql.toString());
+        try {
+          select.setInt(1, lazyThreshold);
+          for (int i = 0; i < chunk.size(); i++) {
+            select.setString(i + 2, chunk.get(i));
+          }
+          ResultSet rs = select.executeQuery();
+          try {
+            while (rs.next()) {
+              String id = rs.getString(1);
+              NodeData nodeData = data.get(id);
+              if (nodeData == null) {
+                nodeData = new NodeData();
+                data.put(id, nodeData);
+              }
+              nodeData.read(rs, 2);
+            }
+          } finally {
+            rs.close();
+          }
+        } finally {
+          select.close();
+        }
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Unable to load text nodes: " + ids, e);
+    } finally {
+      close(conn);
+    }
+    return data;
+  }
+
+  /**
+   * Reads a single value of a node.
+   *
+   * @param id
+   * @param key
+   * @return
+   */
+  @Nullable
+  private String loadValue(String id, String key) {
+    Connection conn = getConnection();
+    try {
+      PreparedStatement select = conn.prepareStatement(selectValueSql);
+      try {
+        select.setString(1, id);
+        select.setString(2, key);
+        ResultSet rs = select.executeQuery();
+        try {
+          return rs.next() ? rs.getString(1) : null;
+        } finally {
+          rs.close();
+        }
+      } finally {
+        select.close();
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Unable to load text '" + key + "' of node: " + id, e);
+    } finally {
+      close(conn);
+    }
+  }
+
+  /**
+   * Writes all changes in one transaction. The version of the node is incremented
+   * first using a conditional update, then the rows of all changed keys are deleted
+   * and the new values are inserted, each using one batch. The node is created if
+   * it does not exist.
+   * <p/>
+   * If {@code expectedVersion} is {@link TextNode#ANY_VERSION}, the transaction is
+   * repeated if another one changed the node concurrently.
+   *
+   * @param id
+   * @param expectedVersion
+   * @param changes
+   * @return
+   */
+  @Override
+  public long updateNode(@NotNull String id, long expectedVersion, @NotNull Map<String, String> changes) {
+    if (changes.containsKey(AbstractTextNode.UUID_KEY)) {
+      throw new IllegalArgumentException("The key '" + AbstractTextNode.UUID_KEY + "' is reserved for the node id");
+    }
+    Connection conn = getConnection();
+    long current;
+    boolean created;
+    try {
+      conn.setAutoCommit(false);
+      while (true) {
+        try {
+          current = readVersion(conn, id);
+          created = current == TextNode.ANY_VERSION;
+          if (created) {
+            checkVersion(id, expectedVersion, 0, TextNode.ANY_VERSION);
+            current = 0;
+          } else {
+            checkVersion(id, expectedVersion, current, current);
+          }
+          if ((created && !insertNode(conn, id)) || !compareAndSetVersion(conn, id, current)) {
+            //changed concurrently, only retry if any version is accepted
+            checkVersion(id, expectedVersion, TextNode.ANY_VERSION, TextNode.ANY_VERSION);
+            conn.rollback();
+            continue;
+          }
+          writeValues(conn, id, changes);
+          conn.commit();
+          break;
+        } catch (SQLException e) {
+          conn.rollback();
+          throw e;
+        } catch (RuntimeException e) {
+          conn.rollback();
+          throw e;
+        }
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Unable to update text node: " + id, e);
+    } finally {
+      close(conn);
+    }
+    if (created) {
+      fireCreated(id);
+    }
+    fireChanged(id, current, current + 1, changes);
+    return current + 1;
+  }
+
+  /**
+   * Throws a {@link StaleTextNodeException} unless {@code expectedVersion} is
+   * {@link TextNode#ANY_VERSION} or equal to {@code version}.
+   */
+  private static void checkVersion(String id, long expectedVersion, long version, long actualVersion) {
+    if (expectedVersion != TextNode.ANY_VERSION && expectedVersion != version) {
+      throw new StaleTextNodeException(id, expectedVersion, actualVersion);
+    }
+  }
+
+  /**
+   * Inserts the id row of a new node. The insert is guarded by a savepoint, because some
+   * databases (like PostgreSQL) reject all further statements of a transaction after a
+   * failed one until it is rolled back.
+   *
+   * @return {@code false} if another transaction has created the node in the meantime
+   */
+  private boolean insertNode(Connection conn, String id) throws SQLException {
+    Savepoint savepoint = conn.setSavepoint();
+    try {
+      insertIdRow(conn, id);
+      return true;
+    } catch (SQLException e) {
+      conn.rollback(savepoint);
+      if (readVersion(conn, id) == TextNode.ANY_VERSION) {
+        throw e;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Increments the version of the node, if it is still the given one.
+   *
+   * @return {@code false} if another transaction has changed the version
+   */
+  private boolean compareAndSetVersion(Connection conn, String id, long current) throws SQLException {
+    PreparedStatement update = conn.prepareStatement(casVersionSql);
+    try {
+      update.setLong(1, current + 1);
+      update.setString(2, id);
+      update.setString(3, AbstractTextNode.UUID_KEY);
+      update.setLong(4, current);
+      return update.executeUpdate() > 0;
+    } finally {
+      update.close();
+    }
+  }
+
+  private void writeValues(Connection conn, String id, Map<String, String> changes) throws SQLException {
+    PreparedStatement delete = conn.prepareStatement(deleteSql);
+    try {
+      for (String key : changes.keySet()) {
+        delete.setString(1, id);
+        delete.setString(2, key);
+        delete.addBatch();
+      }
+      delete.executeBatch();
+    } finally {
+      delete.close();
+    }
+    PreparedStatement insert = conn.prepareStatement(insertSql);
+    try {
+      for (Map.Entry<String, String> row : changes.entrySet()) {
+        if (row.getValue() != null) {
+          insert.setString(1, id);
+          insert.setString(2, row.getKey());
+          insert.setString(3, row.getValue());
+          insert.addBatch();
+        }
+      }
+      insert.executeBatch();
+    } finally {
+      insert.close();
+    }
+  }
+
+  private void insertIdRow(Connection conn, String id) throws SQLException {
+    PreparedStatement insert = conn.prepareStatement(insertSql);
+    try {
+      insert.setString(1, id);
+      insert.setString(2, AbstractTextNode.UUID_KEY);
+      insert.setString(3, id);
+      insert.executeUpdate();
+    } finally {
+      insert.close();
+    }
+  }
+
+  /**
+   * Returns the version of the node or {@link TextNode#ANY_VERSION} if it does not exist.
+   */
+  private long readVersion(Connection conn, String id) throws SQLException {
+    PreparedStatement stmt = conn.prepareStatement(versionSql);
+    try {
+      stmt.setString(1, id);
+      stmt.setString(2, AbstractTextNode.UUID_KEY);
+      ResultSet rs = stmt.executeQuery();
+      try {
+        return rs.next() ? rs.getLong(1) : TextNode.ANY_VERSION;
+      } finally {
+        rs.close();
+      }
+    } finally {
+      stmt.close();
+    }
+  }
+
+  private boolean exists(Connection conn, String id) throws SQLException {
+    PreparedStatement stmt = conn.prepareStatement(existsSql);
+    try {
+      stmt.setString(1, id);
+      ResultSet rs = stmt.executeQuery();
+      try {
+        return rs.next() && rs.getInt(1) > 0;
+      } finally {
+        rs.close();
+      }
+    } finally {
+      stmt.close();
+    }
+  }
+
+  private Connection getConnection() {
+    try {
+      return dataSource.getConnection();
+    } catch (SQLException e) {
+      throw new IllegalStateException("Unable to get a database connection", e);
+    }
+  }
+
+  private static void close(Connection conn) {
+    try {
+      if (!conn.getAutoCommit()) {
+        conn.setAutoCommit(true);
+      }
+      conn.close();
+    } catch (SQLException e) {
+      //ignore
+    }
+  }
+
+  /**
+   * The rows of a node as read from the database.
+   */
+  private static final class NodeData {
+    private final Map<String, String> values = new HashMap<String, String>();
+    private final Map<String, Integer> lazySizes = new HashMap<String, Integer>();
+    private long version;
+
+    /**
+     * Reads the columns selected by {@code valueColumns}, starting at the given index.
+     */
+    private void read(ResultSet rs, int column) throws SQLException {
+      String key = rs.getString(column);
+      String value = rs.getString(column + 1);
+      if (value != null) {
+        values.put(key, value);
+      } else {
+        lazySizes.put(key, rs.getInt(column + 2));
+      }
+      if (AbstractTextNode.UUID_KEY.equals(key)) {
+        version = rs.getLong(column + 3);
+      }
+    }
+
+    private boolean isEmpty() {
+      return values.isEmpty() && lazySizes.isEmpty();
+    }
+
+    private TextNodeSnapshot toSnapshot(String id, TextNodeSnapshot.ValueLoader loader) {
+      return TextNodeSnapshot.of(id, version, values, lazySizes, loader);
+    }
+  }
+
+  private final class JdbcTextNode extends AbstractTextNode implements LazyTextNode {
+
+    private final String id;
+    private final boolean created;
+    private volatile TextValues values;
+    private volatile Map<String, Integer> lazySizes;
+    private volatile long version;
+
+    private JdbcTextNode(String id, NodeData data, boolean created) {
+      this.id = id;
+      this.created = created;
+      this.values = TextValues.of(data.values);
+      this.lazySizes = data.lazySizes.isEmpty()
+          ? Collections.<String, Integer>emptyMap()
+          : Collections.unmodifiableMap(data.lazySizes);
+      this.version = data.version;
+    }
+
+    @Override
+    public boolean isCreated() {
+      return created;
+    }
+
+    @Override
+    public boolean isModified() {
+      return version > 0;
+    }
+
+    @Override
+    public long getVersion() {
+      return version;
+    }
+
+    @NotNull
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @NotNull
+    @Override
+    public Set<String> getKeys() {
+      if (lazySizes.isEmpty()) {
+        return values.keys();
+      }
+      Set<String> keys = new HashSet<String>(values.keys());
+      keys.addAll(lazySizes.keySet());
+      return keys;
+    }
+
+    @Nullable
+    @Override
+    public String getText(@NotNull String key) {
+      String value = values.get(key);
+      if (value == null && lazySizes.containsKey(key)) {
+        value = loadLazy(key);
+      }
+      return value;
+    }
+
+    @Override
+    public int getTextSize(@NotNull String key) {
+      Integer size = lazySizes.get(key);
+      return size != null ? size : super.getTextSize(key);
+    }
+
+    @Override
+    public boolean isLoaded(@NotNull String key) {
+      return !lazySizes.containsKey(key);
+    }
+
+    @Override
+    protected void setProperty(@NotNull String key, @NotNull String value) {
+      write(key, value);
+    }
+
+    @Override
+    public void removeKey(@NotNull String key) {
+      write(key, null);
+    }
+
+    private synchronized String loadLazy(String key) {
+      if (!lazySizes.containsKey(key)) {
+        return values.get(key);
+      }
+      String value = loadValue(id, key);
+      values = values.apply(Collections.singletonMap(key, value));
+      lazySizes = without(lazySizes, key);
+      return value;
+    }
+
+    private synchronized void write(String key, String value) {
+      Map<String, String> change = Collections.singletonMap(key, value);
+      long newVersion = updateNode(id, ANY_VERSION, change);
+      values = values.apply(change);
+      lazySizes = without(lazySizes, key);
+      version = newVersion;
+    }
+
+    private Map<String, Integer> without(Map<String, Integer> sizes, String key) {
+      if (!sizes.containsKey(key)) {
+        return sizes;
+      }
+      Map<String, Integer> next = new HashMap<String, Integer>(sizes);
+      next.remove(key);
+      return Collections.unmodifiableMap(next);
+    }
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link TextNode} that leaves some of its values in the store until they
+ * are read.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 14:05
+ */
+interface LazyTextNode extends TextNode {
+
+  /**
+   * Returns whether the value of the key is held by the node, so that reading
+   * it does not access the store. Returns {@code true} for keys without a value.
+   *
+   * @param key
+   * @return
+   */
+  boolean isLoaded(@NotNull String key);
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An {@link InvalidationChannel} within a single JVM. All stores sharing one instance
+ * notify each other synchronously. This is useful for tests and for applications that
+ * use several caches of the same underlying store.
+ * <p/>
+ * A store that publishes a change is notified itself as well, which is harmless since
+ * it has already dropped the node from its cache.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 00:48
+ */
+public class LocalInvalidationChannel implements InvalidationChannel {
+
+  private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+  @Override
+  public void publish(@NotNull String nodeId) {
+    for (Listener listener : listeners) {
+      listener.invalidated(nodeId);
+    }
+  }
+
+  @Override
+  public void subscribe(@NotNull Listener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void unsubscribe(@NotNull Listener listener) {
+    listeners.remove(listener);
+  }
+}
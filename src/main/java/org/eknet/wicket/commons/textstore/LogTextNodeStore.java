@@ -0,0 +1,878 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link TextNodeStore} that persists all nodes in a single file without the need
+ * of a database.
+ * <p/>
+ * Every change is appended as a record to the end of the file and an in-memory index
+ * maps each node id and key to the position of its current value. Values are read from a
+ * memory mapped view of the file. Since old values remain in the file, it is compacted in
+ * the background once more than half of its size is occupied by overwritten records.
+ * <p/>
+ * At startup, the file is scanned to rebuild the index. Each record carries a checksum,
+ * and an incomplete or corrupt record at the end of the file, as left by a crash, is
+ * discarded together with everything after it.
+ * <p/>
+ * All changes passed to {@link #updateNode(String, long, Map)} are appended as a single
+ * record, together with the new {@link TextNode#getVersion() version} of the node. Since
+ * the record is checked as a whole, a crash never leaves a partially applied commit. The
+ * version is checked and written while appending is blocked for other threads, so nodes
+ * can be read and edited without holding a lock.
+ * <p/>
+ * Values are read from a mapping of the file that is grown in chunks of at least 1MB, so
+ * appending does not require a new mapping for every read. The file is extended accordingly
+ * and truncated to its used size when the store is closed.
+ * <p/>
+ * Snapshots returned from {@link #getSnapshot(String)} are kept in a bounded cache of the
+ * most recently used nodes, and every commit replaces the cached snapshot of the node with
+ * an updated copy.
+ * <p/>
+ * A node is {@link TextNode#isModified() modified} once it has been written to. The log
+ * file is limited to 2GB. Call {@link #close()} when the store is no
+ * longer used.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 17.10.26 21:34
+ */
+public class LogTextNodeStore extends AbstractTextNodeStore implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(LogTextNodeStore.class);
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final int MAGIC = 0x544e4c47;
+  private static final int FORMAT_VERSION = 2;
+  private static final int HEADER_SIZE = 8;
+
+  private static final byte PUT = 1;
+  private static final byte REMOVE = 2;
+  private static final byte COMMIT = 3;
+
+  private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+  private static final int MIN_MAPPING_GROWTH = 1024 * 1024;
+  private static final int DEFAULT_MAX_SNAPSHOTS = 10000;
+
+  private final File file;
+  private final boolean syncWrites;
+  private final Object writeLock = new Object();
+  private final ScheduledExecutorService compactor;
+
+  private volatile Segment segment;
+  private final LruCache<String, TextNodeSnapshot> snapshots;
+
+  public LogTextNodeStore(@NotNull File file) throws IOException {
+    this(file, false);
+  }
+
+  public LogTextNodeStore(@NotNull File file, boolean syncWrites) throws IOException {
+    this(file, syncWrites, DEFAULT_MAX_SNAPSHOTS);
+  }
+
+  /**
+   * Opens or creates the store in the given file.
+   *
+   * @param file the file to use
+   * @param syncWrites whether to force every write to the disk before returning
+   * @param maxSnapshots the maximum number of snapshots kept in memory
+   * @throws IOException
+   */
+  public LogTextNodeStore(@NotNull File file, boolean syncWrites, int maxSnapshots) throws IOException {
+    this.file = file;
+    this.syncWrites = syncWrites;
+    this.snapshots = new LruCache<String, TextNodeSnapshot>(maxSnapshots, 0);
+    //a compaction that did not finish may have left the log in its backup
+    File backup = getBackupFile();
+    if (!file.exists() && backup.exists() && !backup.renameTo(file)) {
+      throw new IOException("Unable to restore " + file + " from " + backup);
+    }
+    this.segment = Segment.open(file);
+    this.compactor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "textnode-log-compactor");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    this.compactor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if (isCompactionNeeded()) {
+            compact();
+          }
+        } catch (Exception e) {
+          log.error("Unable to compact text node log: " + LogTextNodeStore.this.file, e);
+        }
+      }
+    }, 1, 1, TimeUnit.MINUTES);
+  }
+
+  @NotNull
+  @Override
+  public TextNode createTextNode(@NotNull String id) {
+    synchronized (writeLock) {
+      if (segment.index.containsKey(id)) {
+        throw new IllegalArgumentException("A node with id '" + id + "' already exists");
+      }
+      append(PUT, id, AbstractTextNode.UUID_KEY, id);
+    }
+    fireCreated(id);
+    return new LogTextNode(id, true);
+  }
+
+  @NotNull
+  @Override
+  public TextNode getOrCreateNode(@NotNull String id) {
+    if (segment.index.containsKey(id)) {
+      return new LogTextNode(id, false);
+    }
+    synchronized (writeLock) {
+      if (segment.index.containsKey(id)) {
+        return new LogTextNode(id, false);
+      }
+      append(PUT, id, AbstractTextNode.UUID_KEY, id);
+    }
+    fireCreated(id);
+    return new LogTextNode(id, true);
+  }
+
+  @Nullable
+  @Override
+  public TextNode getTextNode(@NotNull String id) {
+    if (segment.index.containsKey(id)) {
+      return new LogTextNode(id, false);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the shared snapshot of the node. If the snapshot is not cached, all
+   * values of the node are read while appending is blocked.
+   *
+   * @param id
+   * @return
+   */
+  @Nullable
+  @Override
+  public TextNodeSnapshot getSnapshot(@NotNull String id) {
+    TextNodeSnapshot snapshot = snapshots.get(id);
+    if (snapshot != null || !segment.index.containsKey(id)) {
+      return snapshot;
+    }
+    synchronized (writeLock) {
+      snapshot = snapshots.get(id);
+      if (snapshot == null) {
+        LogTextNode node = new LogTextNode(id, false);
+        Map<String, String> values = new HashMap<String, String>();
+        for (String key : node.getKeys()) {
+          values.put(key, read(id, key));
+        }
+        snapshot = TextNodeSnapshot.of(id, node.getVersion(), values);
+        snapshots.put(id, snapshot);
+      }
+      return snapshot;
+    }
+  }
+
+  /**
+   * Appends all changes and the new version of the node without interruption by other
+   * writers. The node is created if it does not exist.
+   *
+   * @param id
+   * @param expectedVersion
+   * @param changes
+   * @return
+   */
+  @Override
+  public long updateNode(@NotNull String id, long expectedVersion, @NotNull Map<String, String> changes) {
+    for (String key : changes.keySet()) {
+      checkKey(key);
+    }
+    long version;
+    boolean created = false;
+    synchronized (writeLock) {
+      version = segment.getVersion(id);
+      if (expectedVersion != TextNode.ANY_VERSION && version != expectedVersion) {
+        throw new StaleTextNodeException(id, expectedVersion, version);
+      }
+      Map<String, String> commit = new LinkedHashMap<String, String>();
+      if (!segment.index.containsKey(id)) {
+        commit.put(AbstractTextNode.UUID_KEY, id);
+        created = true;
+      }
+      commit.putAll(changes);
+      commit.put(AbstractTextNode.VERSION_KEY, String.valueOf(version + 1));
+      appendCommit(id, commit);
+      TextNodeSnapshot snapshot = snapshots.get(id);
+      if (snapshot != null) {
+        snapshots.put(id, snapshot.apply(changes));
+      }
+    }
+    if (created) {
+      fireCreated(id);
+    }
+    fireChanged(id, version, version + 1, changes);
+    return version + 1;
+  }
+
+  /**
+   * Returns the number of nodes in this store.
+   *
+   * @return
+   */
+  public int size() {
+    return segment.index.size();
+  }
+
+  /**
+   * Returns the number of bytes used by the log file, which does not
+   * include the space reserved for the next appends.
+   *
+   * @return
+   */
+  public long getFileSize() {
+    return segment.size;
+  }
+
+  /**
+   * Returns the number of bytes in the log that are occupied by
+   * overwritten or removed values.
+   *
+   * @return
+   */
+  public long getGarbageSize() {
+    return segment.garbage;
+  }
+
+  /**
+   * Forces all written records to the disk.
+   */
+  public void sync() {
+    synchronized (writeLock) {
+      try {
+        segment.channel.force(false);
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to sync text node log: " + file, e);
+      }
+    }
+  }
+
+  protected boolean isCompactionNeeded() {
+    Segment current = segment;
+    return current.size > MIN_COMPACTION_SIZE && current.garbage > current.size / 2;
+  }
+
+  /**
+   * Rewrites the log file so that it only contains the current values. Writes are
+   * blocked while the store is compacted, reads are not. If the log cannot be replaced,
+   * the store continues with the old log.
+   */
+  public void compact() {
+    synchronized (writeLock) {
+      Segment old = segment;
+      File tmp = new File(file.getPath() + ".compact");
+      try {
+        if (tmp.exists() && !tmp.delete()) {
+          throw new IOException("Unable to delete " + tmp);
+        }
+        Segment compacted = Segment.open(tmp);
+        for (Map.Entry<String, ConcurrentMap<String, ValueRef>> node : old.index.entrySet()) {
+          for (Map.Entry<String, ValueRef> value : node.getValue().entrySet()) {
+            compacted.append(PUT, node.getKey(), value.getKey(), old.read(value.getValue()));
+          }
+        }
+        compacted.channel.force(true);
+        compacted.close();
+        if (!tmp.renameTo(file)) {
+          //some platforms don't allow to replace an open file
+          old.close();
+          try {
+            replaceClosed(tmp);
+          } catch (IOException e) {
+            if (!file.exists()) {
+              throw new IllegalStateException("Unable to restore text node log " + file
+                  + ", it has been kept as " + getBackupFile(), e);
+            }
+            //continue with the old file, which is back in place
+            segment = Segment.open(file);
+            throw e;
+          }
+        }
+        segment = Segment.open(file);
+        old.close();
+        log.info("Compacted text node log {} from {} to {} bytes", new Object[] { file, old.size, segment.size });
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to compact text node log: " + file, e);
+      }
+    }
+  }
+
+  /**
+   * Replaces the closed log file with the compacted one. The log file is renamed to
+   * a backup first, which is put back if the compacted file cannot be renamed.
+   *
+   * @param compacted
+   * @throws IOException
+   */
+  private void replaceClosed(File compacted) throws IOException {
+    File backup = getBackupFile();
+    if (backup.exists() && !backup.delete()) {
+      throw new IOException("Unable to delete " + backup);
+    }
+    if (!file.renameTo(backup)) {
+      throw new IOException("Unable to rename " + file + " to " + backup);
+    }
+    if (!compacted.renameTo(file)) {
+      if (!file.exists()) {
+        backup.renameTo(file);
+      }
+      throw new IOException("Unable to rename " + compacted + " to " + file);
+    }
+    if (!backup.delete()) {
+      log.warn("Unable to delete " + backup);
+    }
+  }
+
+  private File getBackupFile() {
+    return new File(file.getPath() + ".bak");
+  }
+
+  @Override
+  public void close() throws IOException {
+    compactor.shutdown();
+    synchronized (writeLock) {
+      segment.channel.force(true);
+      segment.close();
+    }
+  }
+
+  private void append(byte type, String id, String key, String value) {
+    synchronized (writeLock) {
+      try {
+        segment.append(type, id, key, value);
+        if (syncWrites) {
+          segment.channel.force(false);
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to write to text node log: " + file, e);
+      }
+    }
+  }
+
+  private void appendCommit(String id, Map<String, String> changes) {
+    synchronized (writeLock) {
+      try {
+        segment.appendCommit(id, changes);
+        if (syncWrites) {
+          segment.channel.force(false);
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to write to text node log: " + file, e);
+      }
+    }
+  }
+
+  private static void checkKey(String key) {
+    if (AbstractTextNode.UUID_KEY.equals(key) || AbstractTextNode.VERSION_KEY.equals(key)) {
+      throw new IllegalArgumentException("The key '" + key + "' is reserved");
+    }
+  }
+
+  @Nullable
+  private String read(String id, String key) {
+    while (true) {
+      Segment current = segment;
+      Map<String, ValueRef> values = current.index.get(id);
+      ValueRef ref = values != null ? values.get(key) : null;
+      if (ref == null) {
+        return null;
+      }
+      try {
+        return current.read(ref);
+      } catch (ClosedChannelException e) {
+        //the log has been compacted meanwhile, retry with the new one
+        if (current == segment) {
+          throw new IllegalStateException("Text node log is closed: " + file, e);
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to read from text node log: " + file, e);
+      }
+    }
+  }
+
+  private final class LogTextNode extends AbstractTextNode {
+
+    private final String id;
+    private final boolean created;
+
+    private LogTextNode(String id, boolean created) {
+      this.id = id;
+      this.created = created;
+    }
+
+    @Override
+    public boolean isCreated() {
+      return created;
+    }
+
+    @Override
+    public boolean isModified() {
+      return getVersion() > 0;
+    }
+
+    @Override
+    public long getVersion() {
+      return segment.getVersion(id);
+    }
+
+    @NotNull
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @NotNull
+    @Override
+    public Set<String> getKeys() {
+      Map<String, ValueRef> values = segment.index.get(id);
+      if (values == null) {
+        return Collections.emptySet();
+      }
+      Set<String> keys = new HashSet<String>(values.keySet());
+      keys.remove(VERSION_KEY);
+      return keys;
+    }
+
+    @Nullable
+    @Override
+    public String getText(@NotNull String key) {
+      return read(id, key);
+    }
+
+    /**
+     * Returns the number of UTF-8 bytes of the value, which is
+     * known without reading it from the log.
+     *
+     * @param key
+     * @return
+     */
+    @Override
+    public int getTextSize(@NotNull String key) {
+      Map<String, ValueRef> values = segment.index.get(id);
+      ValueRef ref = values != null ? values.get(key) : null;
+      return ref != null ? ref.length : -1;
+    }
+
+    @Override
+    protected void setProperty(@NotNull String key, @NotNull String value) {
+      updateNode(id, ANY_VERSION, Collections.singletonMap(key, value));
+    }
+
+    @Override
+    public void removeKey(@NotNull String key) {
+      updateNode(id, ANY_VERSION, Collections.singletonMap(key, (String) null));
+    }
+  }
+
+  /**
+   * Position of a value in the log, along with the size of the record
+   * containing it, or the size of its entry in a commit record.
+   */
+  private static final class ValueRef {
+    private final long offset;
+    private final int length;
+    private final int recordSize;
+
+    private ValueRef(long offset, int length, int recordSize) {
+      this.offset = offset;
+      this.length = length;
+      this.recordSize = recordSize;
+    }
+  }
+
+  /**
+   * An open log file together with its index.
+   * <p/>
+   * A record is written as
+   * <pre>
+   *   int payloadLength, int crc32(payload), payload
+   * </pre>
+   * where the payload is the record type followed by the id, the key and (for puts) the value,
+   * each written as an int length and the UTF-8 bytes. A commit record holds all changes of
+   * one update:
+   * <pre>
+   *   byte COMMIT, id, int count, count * (byte PUT|REMOVE, key, [value])
+   * </pre>
+   * The versions of the nodes are additionally kept in memory to avoid reading them from
+   * the file. Logs of format version 1, which has no commit records, are upgraded when
+   * they are opened.
+   */
+  private static final class Segment {
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final ConcurrentMap<String, ConcurrentMap<String, ValueRef>> index =
+        new ConcurrentHashMap<String, ConcurrentMap<String, ValueRef>>();
+    private final ConcurrentMap<String, Long> versions = new ConcurrentHashMap<String, Long>();
+
+    private volatile long size;
+    private volatile long garbage;
+    private volatile MappedByteBuffer mapped;
+
+    private Segment(RandomAccessFile raf) {
+      this.raf = raf;
+      this.channel = raf.getChannel();
+    }
+
+    static Segment open(File file) throws IOException {
+      Segment segment = new Segment(new RandomAccessFile(file, "rw"));
+      try {
+        segment.recover(file);
+      } catch (IOException e) {
+        segment.close();
+        throw e;
+      }
+      return segment;
+    }
+
+    private void recover(File file) throws IOException {
+      long length = channel.size();
+      if (length == 0) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+        channel.write(header, 0);
+        size = HEADER_SIZE;
+        return;
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      if (length < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+        throw new IOException("Not a text node log: " + file);
+      }
+      int version = buffer.getInt(4);
+      if (version != FORMAT_VERSION && version != 1) {
+        throw new IOException("Unsupported text node log version " + version + ": " + file);
+      }
+      long position = HEADER_SIZE;
+      boolean padding = false;
+      CRC32 crc = new CRC32();
+      while (position + 8 <= length) {
+        int payloadLength = buffer.getInt((int) position);
+        int checksum = buffer.getInt((int) position + 4);
+        if (payloadLength == 0 && checksum == 0) {
+          //space reserved for appends by a store that has not been closed
+          padding = true;
+          break;
+        }
+        if (payloadLength < 0 || position + 8 + payloadLength > length) {
+          break;
+        }
+        byte[] payload = new byte[payloadLength];
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) position + 8);
+        view.get(payload);
+        crc.reset();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+          break;
+        }
+        apply(ByteBuffer.wrap(payload), position);
+        position += 8 + payloadLength;
+      }
+      if (position < length) {
+        if (!padding) {
+          log.warn("Discarding {} bytes of incomplete records at the end of text node log {}", length - position, file);
+        }
+        channel.truncate(position);
+      }
+      size = position;
+      if (version != FORMAT_VERSION) {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        header.putInt(FORMAT_VERSION).flip();
+        channel.write(header, 4);
+      }
+    }
+
+    private void apply(ByteBuffer payload, long recordOffset) {
+      byte type = payload.get();
+      String id = readString(payload);
+      if (type != COMMIT) {
+        applyEntry(type, id, payload, recordOffset, 8 + payload.limit());
+        return;
+      }
+      int count = payload.getInt();
+      //the header of the record is accounted to its first entry
+      int overhead = 8 + payload.position();
+      for (int i = 0; i < count; i++) {
+        int start = payload.position();
+        byte entryType = payload.get();
+        int keyLength = payload.getInt(start + 1);
+        int entrySize = 1 + 4 + keyLength;
+        if (entryType == PUT) {
+          entrySize += 4 + payload.getInt(start + 1 + 4 + keyLength);
+        }
+        applyEntry(entryType, id, payload, recordOffset, i == 0 ? entrySize + overhead : entrySize);
+      }
+    }
+
+    /**
+     * Applies a put or remove read from the payload, which is positioned after the id
+     * of a single record or after the type of an entry of a commit record.
+     */
+    private void applyEntry(byte type, String id, ByteBuffer payload, long recordOffset, int size) {
+      String key = readString(payload);
+      if (type == PUT) {
+        int valueLength = payload.getInt();
+        long valueOffset = recordOffset + 8 + payload.position();
+        if (AbstractTextNode.VERSION_KEY.equals(key)) {
+          byte[] value = new byte[valueLength];
+          payload.get(value);
+          versions.put(id, Long.valueOf(new String(value, UTF8)));
+        } else {
+          payload.position(payload.position() + valueLength);
+        }
+        put(id, key, new ValueRef(valueOffset, valueLength, size));
+      } else {
+        remove(id, key, size);
+      }
+    }
+
+    /**
+     * Appends a record. Synchronized with {@link #remap(long)}, which may extend the file.
+     */
+    synchronized void append(byte type, String id, String key, String value) throws IOException {
+      byte[] idBytes = id.getBytes(UTF8);
+      byte[] keyBytes = key.getBytes(UTF8);
+      byte[] valueBytes = value != null ? value.getBytes(UTF8) : null;
+      int payloadLength = 1 + 4 + idBytes.length + 4 + keyBytes.length;
+      if (valueBytes != null) {
+        payloadLength += 4 + valueBytes.length;
+      }
+      if (size + 8 + payloadLength > Integer.MAX_VALUE) {
+        throw new IOException("The text node log cannot grow beyond 2GB");
+      }
+      ByteBuffer record = ByteBuffer.allocate(8 + payloadLength);
+      record.putInt(payloadLength).putInt(0);
+      record.put(type);
+      record.putInt(idBytes.length).put(idBytes);
+      record.putInt(keyBytes.length).put(keyBytes);
+      if (valueBytes != null) {
+        record.putInt(valueBytes.length).put(valueBytes);
+      }
+      long offset = write(record);
+      if (AbstractTextNode.VERSION_KEY.equals(key) && value != null) {
+        versions.put(id, Long.valueOf(value));
+      }
+      if (valueBytes != null) {
+        put(id, key, new ValueRef(offset + 8 + payloadLength - valueBytes.length, valueBytes.length, 8 + payloadLength));
+      } else {
+        remove(id, key, 8 + payloadLength);
+      }
+    }
+
+    /**
+     * Appends all changes of a node as one commit record. A {@code null} value
+     * marks a removed key.
+     */
+    synchronized void appendCommit(String id, Map<String, String> changes) throws IOException {
+      byte[] idBytes = id.getBytes(UTF8);
+      byte[][] keys = new byte[changes.size()][];
+      byte[][] values = new byte[changes.size()][];
+      int header = 1 + 4 + idBytes.length + 4;
+      int payloadLength = header;
+      int i = 0;
+      for (Map.Entry<String, String> change : changes.entrySet()) {
+        keys[i] = change.getKey().getBytes(UTF8);
+        values[i] = change.getValue() != null ? change.getValue().getBytes(UTF8) : null;
+        payloadLength += entrySize(keys[i], values[i]);
+        i++;
+      }
+      if (size + 8 + payloadLength > Integer.MAX_VALUE) {
+        throw new IOException("The text node log cannot grow beyond 2GB");
+      }
+      ByteBuffer record = ByteBuffer.allocate(8 + payloadLength);
+      record.putInt(payloadLength).putInt(0);
+      record.put(COMMIT);
+      record.putInt(idBytes.length).put(idBytes);
+      record.putInt(keys.length);
+      int[] valuePositions = new int[keys.length];
+      for (i = 0; i < keys.length; i++) {
+        record.put(values[i] != null ? PUT : REMOVE);
+        record.putInt(keys[i].length).put(keys[i]);
+        if (values[i] != null) {
+          record.putInt(values[i].length);
+          valuePositions[i] = record.position();
+          record.put(values[i]);
+        }
+      }
+      long offset = write(record);
+      i = 0;
+      for (Map.Entry<String, String> change : changes.entrySet()) {
+        //the header of the record is accounted to its first entry
+        int entrySize = entrySize(keys[i], values[i]) + (i == 0 ? 8 + header : 0);
+        if (values[i] != null) {
+          if (AbstractTextNode.VERSION_KEY.equals(change.getKey())) {
+            versions.put(id, Long.valueOf(change.getValue()));
+          }
+          put(id, change.getKey(), new ValueRef(offset + valuePositions[i], values[i].length, entrySize));
+        } else {
+          remove(id, change.getKey(), entrySize);
+        }
+        i++;
+      }
+    }
+
+    private static int entrySize(byte[] key, byte[] value) {
+      return 1 + 4 + key.length + (value != null ? 4 + value.length : 0);
+    }
+
+    /**
+     * Sets the checksum of the record and writes it to the end of the log.
+     *
+     * @return the offset of the record
+     */
+    private long write(ByteBuffer record) throws IOException {
+      CRC32 crc = new CRC32();
+      crc.update(record.array(), 8, record.capacity() - 8);
+      record.putInt(4, (int) crc.getValue());
+      record.flip();
+      long offset = size;
+      long position = offset;
+      while (record.hasRemaining()) {
+        position += channel.write(record, position);
+      }
+      size = position;
+      return offset;
+    }
+
+    private void put(String id, String key, ValueRef ref) {
+      ConcurrentMap<String, ValueRef> values = index.get(id);
+      if (values == null) {
+        values = new ConcurrentHashMap<String, ValueRef>();
+        index.put(id, values);
+      }
+      ValueRef old = values.put(key, ref);
+      if (old != null) {
+        garbage += old.recordSize;
+      }
+    }
+
+    private void remove(String id, String key, int recordSize) {
+      ConcurrentMap<String, ValueRef> values = index.get(id);
+      ValueRef old = values != null ? values.remove(key) : null;
+      if (old != null) {
+        garbage += old.recordSize;
+      }
+      garbage += recordSize;
+    }
+
+    long getVersion(String id) {
+      Long version = versions.get(id);
+      return version != null ? version : 0;
+    }
+
+    String read(ValueRef ref) throws IOException {
+      MappedByteBuffer buffer = mapped;
+      if (buffer == null || ref.offset + ref.length > buffer.capacity()) {
+        buffer = remap(ref.offset + ref.length);
+      }
+      byte[] bytes = new byte[ref.length];
+      ByteBuffer view = buffer.duplicate();
+      view.position((int) ref.offset);
+      view.get(bytes);
+      return new String(bytes, UTF8);
+    }
+
+    /**
+     * Maps the file up to at least the given position. The mapping is grown by a quarter
+     * of its size, but at least by 1MB, and the file is
+     * extended to the mapped size, so that following appends are covered as well. Since
+     * old mappings are only released by the garbage collector, this keeps their number low.
+     *
+     * @param required
+     * @return
+     * @throws IOException
+     */
+    private synchronized MappedByteBuffer remap(long required) throws IOException {
+      MappedByteBuffer buffer = mapped;
+      if (buffer == null || buffer.capacity() < required) {
+        long capacity = buffer != null ? buffer.capacity() : 0;
+        capacity = Math.max(required, capacity + Math.max(capacity / 4, MIN_MAPPING_GROWTH));
+        capacity = Math.min(capacity, Integer.MAX_VALUE);
+        if (raf.length() < capacity) {
+          raf.setLength(capacity);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, capacity);
+        mapped = buffer;
+      }
+      return buffer;
+    }
+
+    /**
+     * Removes the space reserved for appends and closes the file. Values can still be
+     * read from an existing mapping.
+     *
+     * @throws IOException
+     */
+    void close() throws IOException {
+      try {
+        if (channel.isOpen() && channel.size() > size) {
+          channel.truncate(size);
+        }
+      } catch (IOException e) {
+        //some platforms don't allow to truncate a mapped file, it is truncated on the next start
+        log.debug("Unable to truncate text node log", e);
+      } finally {
+        raf.close();
+      }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+      byte[] bytes = new byte[buffer.getInt()];
+      buffer.get(bytes);
+      return new String(bytes, UTF8);
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size-bounded map that evicts the least recently used entry and optionally
+ * expires entries after a fixed time. It counts hits and misses of {@link #get(Object)}.
+ * <p/>
+ * The entries are spread over up to 16 segments by the hash of their keys. Each segment
+ * is locked on its own and evicts its least recently used entry once it holds its share
+ * of {@code maxSize} entries, so threads reading different keys rarely contend. The
+ * eviction order is therefore only approximately LRU across the whole cache.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 17.10.26 19:48
+ */
+final class LruCache<K, V> {
+
+  private static final int MAX_SEGMENTS = 16;
+  private static final int MIN_SEGMENT_SIZE = 8;
+
+  private final long ttlMillis;
+  private final Segment<K, V>[] segments;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @param maxSize the maximum number of entries
+   * @param ttlMillis time in milliseconds after which an entry expires, or {@code 0}
+   * if entries should never expire
+   */
+  @SuppressWarnings("unchecked")
+  LruCache(int maxSize, long ttlMillis) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+    }
+    this.ttlMillis = ttlMillis;
+    int count = 1;
+    while (count < MAX_SEGMENTS && maxSize / (count * 2) >= MIN_SEGMENT_SIZE) {
+      count *= 2;
+    }
+    this.segments = new Segment[count];
+    for (int i = 0; i < count; i++) {
+      //the first segments take the remainder, so the sizes add up to maxSize
+      segments[i] = new Segment<K, V>(maxSize / count + (i < maxSize % count ? 1 : 0));
+    }
+  }
+
+  V get(K key) {
+    Segment<K, V> segment = segmentFor(key);
+    CacheEntry<V> entry;
+    synchronized (segment) {
+      entry = segment.get(key);
+      if (entry != null && entry.isExpired()) {
+        segment.remove(key);
+        entry = null;
+      }
+    }
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return entry.value;
+  }
+
+  void put(K key, V value) {
+    long expires = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0;
+    CacheEntry<V> entry = new CacheEntry<V>(value, expires);
+    Segment<K, V> segment = segmentFor(key);
+    synchronized (segment) {
+      segment.put(key, entry);
+    }
+  }
+
+  V remove(K key) {
+    Segment<K, V> segment = segmentFor(key);
+    CacheEntry<V> entry;
+    synchronized (segment) {
+      entry = segment.remove(key);
+    }
+    return entry != null ? entry.value : null;
+  }
+
+  void clear() {
+    for (Segment<K, V> segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+  }
+
+  int size() {
+    int size = 0;
+    for (Segment<K, V> segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  long getHitCount() {
+    return hits.get();
+  }
+
+  long getMissCount() {
+    return misses.get();
+  }
+
+  double getHitRatio() {
+    long hitCount = hits.get();
+    long total = hitCount + misses.get();
+    return total == 0 ? 0d : (double) hitCount / total;
+  }
+
+  private Segment<K, V> segmentFor(K key) {
+    int h = key.hashCode();
+    h ^= (h >>> 16);
+    return segments[h & (segments.length - 1)];
+  }
+
+  private static final class Segment<K, V> extends LinkedHashMap<K, CacheEntry<V>> {
+    private final int maxSize;
+
+    private Segment(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+      return size() > maxSize;
+    }
+  }
+
+  private static final class CacheEntry<V> {
+    private final V value;
+    private final long expires;
+
+    private CacheEntry(V value, long expires) {
+      this.value = value;
+      this.expires = expires;
+    }
+
+    private boolean isExpired() {
+      return expires > 0 && System.currentTimeMillis() >= expires;
+    }
+  }
+}
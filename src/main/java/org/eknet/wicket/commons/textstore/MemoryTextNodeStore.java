@@ -0,0 +1,215 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link TextNodeStore} that holds all nodes in memory. It can be used concurrently
+ * by any number of threads.
+ * <p/>
+ * Reads never block: the nodes are kept in a {@link ConcurrentHashMap} and each node
+ * publishes its values as an immutable {@link TextNodeSnapshot} that is replaced on every
+ * write. {@link #getSnapshot(String)} returns this instance, so all readers share it until
+ * the node changes. Writes are serialized per node, so concurrent edits of different nodes
+ * do not contend.
+ * <p/>
+ * A node returned from this store is {@link TextNode#isCreated() created} until the
+ * first value is written to it. From then on it is {@link TextNode#isModified() modified}.
+ * Every write increments the {@link TextNode#getVersion() version} of the node.
+ * Removing a node fires a {@link TextNodeEvent.Type#REMOVED} event.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 17.10.26 19:20
+ */
+public class MemoryTextNodeStore extends AbstractTextNodeStore {
+
+  private final ConcurrentMap<String, MemoryTextNode> nodes = new ConcurrentHashMap<String, MemoryTextNode>();
+
+  @NotNull
+  @Override
+  public TextNode createTextNode(@NotNull String id) {
+    MemoryTextNode node = new MemoryTextNode(id);
+    if (nodes.putIfAbsent(id, node) != null) {
+      throw new IllegalArgumentException("A node with id '" + id + "' already exists");
+    }
+    fireCreated(id);
+    return node;
+  }
+
+  @NotNull
+  @Override
+  public TextNode getOrCreateNode(@NotNull String id) {
+    MemoryTextNode node = nodes.get(id);
+    if (node != null) {
+      return node;
+    }
+    node = new MemoryTextNode(id);
+    MemoryTextNode existing = nodes.putIfAbsent(id, node);
+    if (existing != null) {
+      return existing;
+    }
+    fireCreated(id);
+    return node;
+  }
+
+  @Nullable
+  @Override
+  public TextNode getTextNode(@NotNull String id) {
+    return nodes.get(id);
+  }
+
+  @Nullable
+  @Override
+  public TextNodeSnapshot getSnapshot(@NotNull String id) {
+    MemoryTextNode node = nodes.get(id);
+    return node != null ? node.state : null;
+  }
+
+  /**
+   * Applies the changes atomically to the node, which is locked only
+   * for the time it takes to copy its values.
+   *
+   * @param id
+   * @param expectedVersion
+   * @param changes
+   * @return
+   */
+  @Override
+  public long updateNode(@NotNull String id, long expectedVersion, @NotNull Map<String, String> changes) {
+    return ((MemoryTextNode) getOrCreateNode(id)).commit(expectedVersion, changes);
+  }
+
+  /**
+   * Removes the node with the given id from this store.
+   *
+   * @param id
+   * @return {@code true} if a node was removed
+   */
+  public boolean removeTextNode(@NotNull String id) {
+    MemoryTextNode node = nodes.remove(id);
+    if (node == null) {
+      return false;
+    }
+    fireRemoved(id, node.getVersion());
+    return true;
+  }
+
+  /**
+   * Returns the number of nodes in this store.
+   *
+   * @return
+   */
+  public int size() {
+    return nodes.size();
+  }
+
+  /**
+   * Removes all nodes from this store. Listeners are notified about
+   * each removed node.
+   */
+  public void clear() {
+    for (String id : nodes.keySet()) {
+      removeTextNode(id);
+    }
+  }
+
+  final class MemoryTextNode extends AbstractTextNode {
+
+    private final String id;
+    private volatile TextNodeSnapshot state;
+
+    MemoryTextNode(String id) {
+      this.id = id;
+      this.state = TextNodeSnapshot.of(id, 0, Collections.singletonMap(UUID_KEY, id));
+    }
+
+    @Override
+    public boolean isCreated() {
+      return state.getVersion() == 0;
+    }
+
+    @Override
+    public boolean isModified() {
+      return state.getVersion() > 0;
+    }
+
+    @Override
+    public long getVersion() {
+      return state.getVersion();
+    }
+
+    @NotNull
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @NotNull
+    @Override
+    public Set<String> getKeys() {
+      return state.getKeys();
+    }
+
+    @Nullable
+    @Override
+    public String getText(@NotNull String key) {
+      return state.getText(key);
+    }
+
+    @Override
+    protected void setProperty(@NotNull String key, @NotNull String value) {
+      commit(ANY_VERSION, Collections.singletonMap(key, value));
+    }
+
+    @Override
+    public void removeKey(@NotNull String key) {
+      commit(ANY_VERSION, Collections.singletonMap(key, (String) null));
+    }
+
+    long commit(long expectedVersion, Map<String, String> changes) {
+      for (String key : changes.keySet()) {
+        checkKey(key);
+      }
+      TextNodeSnapshot previous;
+      TextNodeSnapshot next;
+      synchronized (this) {
+        previous = state;
+        if (expectedVersion != ANY_VERSION && previous.getVersion() != expectedVersion) {
+          throw new StaleTextNodeException(id, expectedVersion, previous.getVersion());
+        }
+        next = previous.apply(changes);
+        state = next;
+      }
+      fireChanged(id, previous.getVersion(), next.getVersion(), changes);
+      return next.getVersion();
+    }
+
+    private void checkKey(String key) {
+      if (UUID_KEY.equals(key) || VERSION_KEY.equals(key)) {
+        throw new IllegalArgumentException("The key '" + key + "' is reserved");
+      }
+    }
+  }
+}
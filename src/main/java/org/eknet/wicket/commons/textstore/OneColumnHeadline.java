@@ -16,19 +16,12 @@
 
 package org.eknet.wicket.commons.textstore;
 
-import org.apache.wicket.AttributeModifier;
-import org.apache.wicket.Component;
-import org.apache.wicket.markup.html.form.FormComponent;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
-import org.apache.wicket.model.ResourceModel;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 
 import org.jetbrains.annotations.NotNull;
 
-import org.eknet.wicket.commons.ComponentSupplier;
-import org.eknet.wicket.commons.components.FormattedLabel;
-
 /**
  * Creates a editable component with the following layout:
  * <pre>
@@ -42,11 +35,16 @@ import org.eknet.wicket.commons.components.FormattedLabel;
  * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
  * @since 18.12.11 13:34
  */
-public class OneColumnHeadline extends ViewOrEdit {
+public class OneColumnHeadline extends TextLayoutPanel {
 
   private final static String headline = "headline";
   private final static String columnContent = "columnContent";
 
+  private final static TextLayout layout = TextLayout.create("oneColumnHeadline")
+      .add(TextLayout.headline(headline))
+      .add(TextLayout.content(columnContent).label("content").rows(20).multiLine())
+      .build();
+
   public OneColumnHeadline(IModel<TextNodeStore> storeModel, String id, Mode mode) {
     super(storeModel, id, mode);
   }
@@ -55,26 +53,22 @@ public class OneColumnHeadline extends ViewOrEdit {
     super(storeModel, id, pp);
   }
 
-  protected void setEditMode() {
-    add(new ComponentSupplier<Component>() {
-      @NotNull
-      @Override
-      public Component get(@NotNull String id) {
-        return new EditForm(id);
-      }
-    });
+  @NotNull
+  @Override
+  protected TextLayout getTextLayout() {
+    return layout;
   }
-  
-  protected void setViewMode() {
-    add(FormattedLabel.create()
-        .asHeadline(2)
-        .withText(new TextNodePropertyModel(getModel(), headline,
-            getDefaultValueModel(getHeadlineDefault()))));
-    add(FormattedLabel.create()
-        .mulitLine(true)
-        .escapeModelString(false)
-        .withText(new TextNodePropertyModel(getModel(), columnContent,
-            getDefaultValueModel(getColumnContentDefault()))));
+
+  @NotNull
+  @Override
+  protected IModel<String> getDefault(@NotNull String key) {
+    if (headline.equals(key)) {
+      return getHeadlineDefault();
+    }
+    if (columnContent.equals(key)) {
+      return getColumnContentDefault();
+    }
+    return super.getDefault(key);
   }
 
   /**
@@ -92,27 +86,4 @@ public class OneColumnHeadline extends ViewOrEdit {
   protected IModel<String> getColumnContentDefault() {
     return Model.of("");
   }
-
-  final class EditForm extends TextNodeFormPanel {
-
-    public EditForm(String id) {
-      super(getStoreModel(), id);
-      addTextField(headline, new ResourceModel("headline"), getHeadlineDefault());
-      addTextArea(columnContent, new ResourceModel("content"), getColumnContentDefault());
-    }
-
-    @Override
-    protected void onInitialize() {
-      super.onInitialize();
-      FormComponent fc = getFormComponent(columnContent);
-      if (fc != null) {
-        fc.add(new AttributeModifier("rows", "20"));
-      }
-    }
-
-    @Override
-    protected IModel<TextNode> newFormModel() {
-      return newTextNodeModel();
-    }
-  }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.MetaDataKey;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the markup that {@link ViewOrEdit} components render in {@link ViewOrEdit.Mode#VIEW}
+ * mode. The markup is kept per node id and is only valid for the node version it has been
+ * rendered from, so a changed node is never displayed from an outdated entry. Within one
+ * version, there is an entry per variant as returned by {@link ViewOrEdit#getFragmentVariant()}:
+ * by default the page class, the path of the component in the page, the component class,
+ * locale, style and variation.
+ * <p/>
+ * The cache is disabled by default. Install it in your application's {@code init()}:
+ * <pre>
+ *   RenderedFragmentCache.install(this, new RenderedFragmentCache(1000));
+ * </pre>
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 00:20
+ */
+public final class RenderedFragmentCache {
+
+  private static final MetaDataKey<RenderedFragmentCache> KEY = new MetaDataKey<RenderedFragmentCache>() {
+  };
+
+  private final LruCache<String, Fragments> cache;
+
+  /**
+   * Creates a new cache.
+   *
+   * @param maxNodes the maximum number of nodes to keep markup for
+   */
+  public RenderedFragmentCache(int maxNodes) {
+    this.cache = new LruCache<String, Fragments>(maxNodes, 0);
+  }
+
+  /**
+   * Makes the cache available to all {@link ViewOrEdit} components of the application.
+   *
+   * @param application
+   * @param cache
+   */
+  public static void install(@NotNull Application application, @Nullable RenderedFragmentCache cache) {
+    application.setMetaData(KEY, cache);
+  }
+
+  /**
+   * Returns the cache of the current application or {@code null} if none is installed.
+   *
+   * @return
+   */
+  @Nullable
+  public static RenderedFragmentCache get() {
+    return Application.exists() ? Application.get().getMetaData(KEY) : null;
+  }
+
+  /**
+   * Returns the markup rendered for the given node version and variant or {@code null}.
+   *
+   * @param nodeId
+   * @param version
+   * @param variant
+   * @return
+   */
+  @Nullable
+  public String get(@NotNull String nodeId, long version, @NotNull String variant) {
+    Fragments fragments = cache.get(nodeId);
+    if (fragments == null || fragments.version != version) {
+      return null;
+    }
+    return fragments.markup.get(variant);
+  }
+
+  /**
+   * Stores markup rendered for the given node version. Markup of older versions of
+   * the node is discarded.
+   *
+   * @param nodeId
+   * @param version
+   * @param variant
+   * @param markup
+   */
+  public void put(@NotNull String nodeId, long version, @NotNull String variant, @NotNull String markup) {
+    Fragments fragments = cache.get(nodeId);
+    if (fragments == null || fragments.version < version) {
+      fragments = new Fragments(version);
+      cache.put(nodeId, fragments);
+    }
+    if (fragments.version == version) {
+      fragments.markup.put(variant, markup);
+    }
+  }
+
+  /**
+   * Removes all markup of the given node.
+   *
+   * @param nodeId
+   */
+  public void invalidate(@NotNull String nodeId) {
+    cache.remove(nodeId);
+  }
+
+  public void invalidateAll() {
+    cache.clear();
+  }
+
+  private static final class Fragments {
+    private final long version;
+    private final ConcurrentMap<String, String> markup = new ConcurrentHashMap<String, String>();
+
+    private Fragments(long version) {
+      this.version = version;
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.apache.wicket.model.IModel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Wraps a {@link TextNode} model and keeps all changes to the node in memory
+ * until they are committed with {@link #commit(TextNodeStore, long)}. Uncommitted
+ * changes are discarded when the model is detached.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 17.10.26 23:05
+ */
+final class StagedTextNodeModel implements IModel<TextNode> {
+
+  private final IModel<TextNode> nodeModel;
+  private transient Map<String, String> changes;
+
+  StagedTextNodeModel(@NotNull IModel<TextNode> nodeModel) {
+    this.nodeModel = nodeModel;
+  }
+
+  @NotNull
+  IModel<TextNode> getNodeModel() {
+    return nodeModel;
+  }
+
+  boolean hasChanges() {
+    return changes != null && !changes.isEmpty();
+  }
+
+  /**
+   * Writes the changes to the store, if the node still has the given version.
+   *
+   * @param store
+   * @param expectedVersion
+   * @return the new version of the node
+   * @throws StaleTextNodeException if the node has been changed in the meantime
+   */
+  long commit(@NotNull TextNodeStore store, long expectedVersion) {
+    TextNode node = nodeModel.getObject();
+    if (node == null) {
+      throw new IllegalStateException("No textnode available");
+    }
+    long version = store.updateNode(node.getId(), expectedVersion,
+        changes != null ? changes : Collections.<String, String>emptyMap());
+    changes = null;
+    return version;
+  }
+
+  @Override
+  public TextNode getObject() {
+    TextNode node = nodeModel.getObject();
+    return node != null ? new StagedTextNode(node) : null;
+  }
+
+  @Override
+  public void setObject(TextNode object) {
+    nodeModel.setObject(object);
+    changes = null;
+  }
+
+  @Override
+  public void detach() {
+    changes = null;
+    nodeModel.detach();
+  }
+
+  private void stage(String key, String value) {
+    if (changes == null) {
+      changes = new LinkedHashMap<String, String>();
+    }
+    changes.put(key, value);
+  }
+
+  private final class StagedTextNode extends AbstractTextNode {
+
+    private final TextNode node;
+
+    private StagedTextNode(TextNode node) {
+      this.node = node;
+    }
+
+    @Override
+    public boolean isCreated() {
+      return node.isCreated();
+    }
+
+    @Override
+    public boolean isModified() {
+      return hasChanges() || node.isModified();
+    }
+
+    @Override
+    public long getVersion() {
+      return node.getVersion();
+    }
+
+    @NotNull
+    @Override
+    public String getId() {
+      return node.getId();
+    }
+
+    @NotNull
+    @Override
+    public Set<String> getKeys() {
+      Set<String> keys = new HashSet<String>(node.getKeys());
+      if (changes != null) {
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+          if (change.getValue() == null) {
+            keys.remove(change.getKey());
+          } else {
+            keys.add(change.getKey());
+          }
+        }
+      }
+      return keys;
+    }
+
+    @Nullable
+    @Override
+    public String getText(@NotNull String key) {
+      if (changes != null && changes.containsKey(key)) {
+        return changes.get(key);
+      }
+      return node.getText(key);
+    }
+
+    @Override
+    protected void setProperty(@NotNull String key, @NotNull String value) {
+      stage(key, value);
+    }
+
+    @Override
+    public void removeKey(@NotNull String key) {
+      stage(key, null);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Thrown if changes to a {@link TextNode} are rejected, because they are based on
+ * an older version of the node than the one in the store.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 17.10.26 22:47
+ */
+public class StaleTextNodeException extends IllegalStateException {
+
+  private final String nodeId;
+  private final long expectedVersion;
+  private final long actualVersion;
+
+  public StaleTextNodeException(@NotNull String nodeId, long expectedVersion, long actualVersion) {
+    super("The text node '" + nodeId + "' has been changed in the meantime. Expected version "
+        + expectedVersion + " but found " + actualVersion);
+    this.nodeId = nodeId;
+    this.expectedVersion = expectedVersion;
+    this.actualVersion = actualVersion;
+  }
+
+  @NotNull
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  public long getExpectedVersion() {
+    return expectedVersion;
+  }
+
+  /**
+   * Returns the current version of the node or {@link TextNode#ANY_VERSION}
+   * if it is not known.
+   *
+   * @return
+   */
+  public long getActualVersion() {
+    return actualVersion;
+  }
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.model.IComponentAssignedModel;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.IWrapModel;
+import org.apache.wicket.model.Model;
+import org.eknet.wicket.commons.ComponentSupplier;
+import org.eknet.wicket.commons.components.FormattedLabel;
+import org.eknet.wicket.commons.yaml.SubcolumnDef;
+import org.eknet.wicket.commons.yaml.Subcolumns;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes the texts of a {@link TextLayoutPanel}: their keys, how they are
+ * displayed and edited, and how they are arranged in columns. For example,
+ * <pre>
+ *   TextLayout.create("twoColumnHeadline")
+ *       .add(TextLayout.headline("headline"))
+ *       .addColumns(
+ *           TextLayout.column(ColumnDef.L_50, TextLayout.content("columnContent1").rows(12)),
+ *           TextLayout.column(ColumnDef.R_50, TextLayout.content("columnContent2").rows(12)))
+ *       .build();
+ * </pre>
+ * The view mode components are described by {@link ComponentSupplier}s that are created
+ * once when the layout is built. They are shared by all panels using the layout, so a
+ * layout should be kept in a constant. The labels find the text to display through the
+ * {@link TextLayoutPanel} they are added to.
+ * <p/>
+ * Layouts and their fields are immutable.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 02:21
+ */
+public final class TextLayout implements Serializable {
+
+  private final String name;
+  private final List<Field> fields;
+  private final Map<String, Field> fieldsByKey;
+  private final List<ComponentSupplier<?>> viewSuppliers;
+
+  private TextLayout(String name, List<Object> rows) {
+    this.name = name;
+    List<Field> fields = new ArrayList<Field>();
+    List<ComponentSupplier<?>> suppliers = new ArrayList<ComponentSupplier<?>>();
+    for (Object row : rows) {
+      if (row instanceof Field) {
+        Field field = (Field) row;
+        fields.add(field);
+        suppliers.add(field.newViewSupplier());
+      } else {
+        Column[] columns = (Column[]) row;
+        Subcolumns.Builder builder = Subcolumns.create();
+        for (int i = 0; i < columns.length; i++) {
+          fields.add(columns[i].field);
+          builder.addColumn(SubcolumnDef.create()
+              .setColumnDef(columns[i].def)
+              .setContent(columns[i].field.newViewSupplier(), getAlign(i, columns.length)));
+        }
+        suppliers.add(builder.freeze());
+      }
+    }
+    Map<String, Field> fieldsByKey = new LinkedHashMap<String, Field>();
+    for (Field field : fields) {
+      if (fieldsByKey.put(field.key, field) != null) {
+        throw new IllegalArgumentException("Duplicate key '" + field.key + "' in layout " + name);
+      }
+    }
+    this.fields = Collections.unmodifiableList(fields);
+    this.fieldsByKey = Collections.unmodifiableMap(fieldsByKey);
+    this.viewSuppliers = Collections.unmodifiableList(suppliers);
+  }
+
+  private static SubcolumnDef.ContentAlign getAlign(int index, int count) {
+    if (index == 0) {
+      return SubcolumnDef.ContentAlign.LEFT;
+    }
+    if (index == count - 1) {
+      return SubcolumnDef.ContentAlign.RIGHT;
+    }
+    return SubcolumnDef.ContentAlign.CENTER;
+  }
+
+  @NotNull
+  public static Builder create(@NotNull String name) {
+    return new Builder(name);
+  }
+
+  /**
+   * A field that is displayed as {@code h2} headline and edited in a text field.
+   *
+   * @param key
+   * @return
+   */
+  @NotNull
+  public static Field headline(@NotNull String key) {
+    return new Field(key, true, key, 0, false, null);
+  }
+
+  /**
+   * A field that is displayed as html and edited in a text area.
+   *
+   * @param key
+   * @return
+   */
+  @NotNull
+  public static Field content(@NotNull String key) {
+    return new Field(key, false, key, 0, false, null);
+  }
+
+  @NotNull
+  public static Column column(@NotNull SubcolumnDef.ColumnDef def, @NotNull Field field) {
+    return new Column(def, field);
+  }
+
+  /**
+   * The name of the layout, which identifies it for caching
+   * its rendered markup.
+   *
+   * @return
+   */
+  @NotNull
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns all fields in the order they appear in the layout.
+   *
+   * @return
+   */
+  @NotNull
+  public List<Field> getFields() {
+    return fields;
+  }
+
+  @Nullable
+  public Field getField(@NotNull String key) {
+    return fieldsByKey.get(key);
+  }
+
+  /**
+   * Returns the shared suppliers of the view mode components.
+   *
+   * @return
+   */
+  @NotNull
+  public List<ComponentSupplier<?>> getViewSuppliers() {
+    return viewSuppliers;
+  }
+
+  public static final class Builder {
+
+    private final String name;
+    private final List<Object> rows = new ArrayList<Object>();
+
+    private Builder(String name) {
+      this.name = name;
+    }
+
+    public Builder add(@NotNull Field field) {
+      rows.add(field);
+      return this;
+    }
+
+    public Builder addColumns(@NotNull Column... columns) {
+      if (columns.length == 0) {
+        throw new IllegalArgumentException("No columns given");
+      }
+      rows.add(columns.clone());
+      return this;
+    }
+
+    @NotNull
+    public TextLayout build() {
+      return new TextLayout(name, rows);
+    }
+  }
+
+  /**
+   * A text of a layout. The {@code with} methods return a modified copy.
+   */
+  public static final class Field implements Serializable {
+
+    private final String key;
+    private final boolean headline;
+    private final String labelKey;
+    private final int rows;
+    private final boolean multiLine;
+    private final IModel<String> defaultValue;
+
+    private Field(String key, boolean headline, String labelKey, int rows, boolean multiLine, IModel<String> defaultValue) {
+      this.key = key;
+      this.headline = headline;
+      this.labelKey = labelKey;
+      this.rows = rows;
+      this.multiLine = multiLine;
+      this.defaultValue = defaultValue;
+    }
+
+    /**
+     * Sets the resource key of the label in edit mode, which is the key of the field by default.
+     *
+     * @param labelKey
+     * @return
+     */
+    @NotNull
+    public Field label(@NotNull String labelKey) {
+      return new Field(key, headline, labelKey, rows, multiLine, defaultValue);
+    }
+
+    /**
+     * Sets the number of rows of the text area in edit mode.
+     *
+     * @param rows
+     * @return
+     */
+    @NotNull
+    public Field rows(int rows) {
+      return new Field(key, headline, labelKey, rows, multiLine, defaultValue);
+    }
+
+    /**
+     * Converts line breaks of the text to markup when it is displayed.
+     *
+     * @return
+     */
+    @NotNull
+    public Field multiLine() {
+      return new Field(key, headline, labelKey, rows, true, defaultValue);
+    }
+
+    /**
+     * Sets the value that is displayed as long as the node has not been modified.
+     * The model is shared by all panels using the layout.
+     *
+     * @param defaultValue
+     * @return
+     */
+    @NotNull
+    public Field defaultValue(@NotNull IModel<String> defaultValue) {
+      return new Field(key, headline, labelKey, rows, multiLine, defaultValue);
+    }
+
+    @NotNull
+    public String getKey() {
+      return key;
+    }
+
+    public boolean isHeadline() {
+      return headline;
+    }
+
+    @NotNull
+    public String getLabelKey() {
+      return labelKey;
+    }
+
+    public int getRows() {
+      return rows;
+    }
+
+    public boolean isMultiLine() {
+      return multiLine;
+    }
+
+    @NotNull
+    public IModel<String> getDefaultValue() {
+      return defaultValue != null ? defaultValue : Model.of("");
+    }
+
+    private ComponentSupplier<FormattedLabel> newViewSupplier() {
+      FormattedLabel.Builder label = FormattedLabel.create().withText(new LayoutTextModel(key));
+      if (headline) {
+        label.asHeadline(2);
+      } else {
+        label.escapeModelString(false).mulitLine(multiLine);
+      }
+      return label.freeze();
+    }
+  }
+
+  public static final class Column implements Serializable {
+
+    private final SubcolumnDef.ColumnDef def;
+    private final Field field;
+
+    private Column(SubcolumnDef.ColumnDef def, Field field) {
+      this.def = def;
+      this.field = field;
+    }
+  }
+
+  /**
+   * The model of the view mode labels. It is shared by all labels of a field and reads
+   * the text from the {@link TextLayoutPanel} of the label it is assigned to.
+   */
+  private static final class LayoutTextModel implements IComponentAssignedModel<String> {
+
+    private final String key;
+
+    private LayoutTextModel(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public IWrapModel<String> wrapOnAssignment(final Component component) {
+      return new IWrapModel<String>() {
+        @Override
+        public IModel<?> getWrappedModel() {
+          return LayoutTextModel.this;
+        }
+
+        @Override
+        public String getObject() {
+          TextLayoutPanel panel = component.findParent(TextLayoutPanel.class);
+          if (panel == null) {
+            throw new IllegalStateException("Component " + component + " is not part of a TextLayoutPanel");
+          }
+          return panel.getViewText(key);
+        }
+
+        @Override
+        public void setObject(String object) {
+          throw new UnsupportedOperationException("The text can only be changed in edit mode");
+        }
+
+        @Override
+        public void detach() {
+        }
+      };
+    }
+
+    @Override
+    public String getObject() {
+      throw new IllegalStateException("The model must be assigned to a component");
+    }
+
+    @Override
+    public void setObject(String object) {
+      throw new UnsupportedOperationException("The text can only be changed in edit mode");
+    }
+
+    @Override
+    public void detach() {
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.apache.wicket.AttributeModifier;
+import org.apache.wicket.Component;
+import org.apache.wicket.markup.html.form.FormComponent;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.model.ResourceModel;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.eknet.wicket.commons.ComponentSupplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link ViewOrEdit} component that displays the texts described by a {@link TextLayout}.
+ * In view mode, it adds the shared suppliers of the layout. In edit mode, it renders a
+ * form with a text field or area for each field of the layout.
+ * <p/>
+ * Subclasses may override {@link #getTextLayout()} instead of passing a layout to the
+ * constructor, and {@link #getDefault(String)} to provide defaults per instance.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 02:24
+ */
+public class TextLayoutPanel extends ViewOrEdit {
+
+  @Nullable
+  private final TextLayout layout;
+
+  public TextLayoutPanel(@NotNull IModel<TextNodeStore> storeModel, String id, Mode mode, @NotNull TextLayout layout) {
+    super(storeModel, id, mode);
+    this.layout = layout;
+  }
+
+  public TextLayoutPanel(@NotNull IModel<TextNodeStore> storeModel, String id, PageParameters pp, @NotNull TextLayout layout) {
+    super(storeModel, id, pp);
+    this.layout = layout;
+  }
+
+  /**
+   * For subclasses that override {@link #getTextLayout()}.
+   */
+  protected TextLayoutPanel(@NotNull IModel<TextNodeStore> storeModel, String id, Mode mode) {
+    super(storeModel, id, mode);
+    this.layout = null;
+  }
+
+  protected TextLayoutPanel(@NotNull IModel<TextNodeStore> storeModel, String id, PageParameters pp) {
+    super(storeModel, id, pp);
+    this.layout = null;
+  }
+
+  /**
+   * Returns the layout passed to the constructor. Subclasses that do not
+   * pass a layout must override this method.
+   *
+   * @return
+   */
+  @NotNull
+  protected TextLayout getTextLayout() {
+    if (layout == null) {
+      throw new IllegalStateException(getClass().getName() + " must pass a layout or override getTextLayout()");
+    }
+    return layout;
+  }
+
+  /**
+   * Returns the default value of the given field, which is displayed as long
+   * as the node has not been modified.
+   *
+   * @param key
+   * @return
+   */
+  @NotNull
+  protected IModel<String> getDefault(@NotNull String key) {
+    TextLayout.Field field = getTextLayout().getField(key);
+    return field != null ? field.getDefaultValue() : Model.of("");
+  }
+
+  @Override
+  protected void setEditMode() {
+    add(new ComponentSupplier<Component>() {
+      @NotNull
+      @Override
+      public Component get(@NotNull String id) {
+        return new EditForm(id);
+      }
+    });
+  }
+
+  @Override
+  protected void setViewMode() {
+    for (ComponentSupplier<?> supplier : getTextLayout().getViewSuppliers()) {
+      add(supplier);
+    }
+  }
+
+  @Override
+  protected String getFragmentVariant() {
+    return super.getFragmentVariant() + ":" + getTextLayout().getName();
+  }
+
+  /**
+   * Returns the text that is displayed in view mode for the given key.
+   *
+   * @param key
+   * @return
+   */
+  String getViewText(String key) {
+    TextNode node = getModel().getObject();
+    String value = node.getText(key);
+    if (value == null && !node.isModified()) {
+      value = getDefault(key).getObject();
+    }
+    return value != null ? value : "";
+  }
+
+  final class EditForm extends TextNodeFormPanel {
+
+    public EditForm(String id) {
+      super(getStoreModel(), id);
+      addDefaultButton();
+      for (TextLayout.Field field : getTextLayout().getFields()) {
+        if (field.isHeadline()) {
+          addTextField(field.getKey(), new ResourceModel(field.getLabelKey()), getDefault(field.getKey()));
+        } else {
+          addTextArea(field.getKey(), new ResourceModel(field.getLabelKey()), getDefault(field.getKey()));
+        }
+      }
+    }
+
+    @Override
+    protected void onInitialize() {
+      super.onInitialize();
+      for (TextLayout.Field field : getTextLayout().getFields()) {
+        FormComponent<String> fc = getFormComponent(field.getKey());
+        if (fc != null && field.getRows() > 0) {
+          fc.add(new AttributeModifier("rows", String.valueOf(field.getRows())));
+        }
+      }
+    }
+
+    @Override
+    protected IModel<TextNode> newFormModel() {
+      return newTextNodeModel();
+    }
+  }
+}
@@ -19,6 +19,8 @@ package org.eknet.wicket.commons.textstore;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Set;
+
 /**
  * This is a simple interface for accessing texts in a map-like structure. The intention
  * is to implement this interface using different storage backends, like SQL database
@@ -35,6 +37,12 @@ import org.jetbrains.annotations.Nullable;
  */
 public interface TextNode {
 
+  /**
+   * A version that matches any version of a node, see
+   * {@link TextNodeStore#updateNode(String, long, java.util.Map)}.
+   */
+  long ANY_VERSION = -1;
+
   /**
    * Returns whether this node was newly created ({@code true}) or read
    * from the database ({@code false}).
@@ -50,6 +58,14 @@ public interface TextNode {
    */
   boolean isModified();
 
+  /**
+   * Returns the version of this node. A new node has version {@code 0}, and
+   * every change that is stored increments the version.
+   *
+   * @return
+   */
+  long getVersion();
+
   /**
    * Returns the unique id of this {@link TextNode}.
    * 
@@ -58,6 +74,15 @@ public interface TextNode {
   @NotNull
   String getId();
 
+  /**
+   * Returns all keys that have a value attached, including the reserved
+   * key holding the node id.
+   *
+   * @return
+   */
+  @NotNull
+  Set<String> getKeys();
+
   /**
    * Returns the value to the specified key, which may
    * be {@code null} if there is no value attached.
@@ -78,6 +103,17 @@ public interface TextNode {
    */
   String getText(@NotNull String key, @Nullable String defaultValue);
 
+  /**
+   * Returns an estimate of the size of the value attached to the key, or
+   * {@code -1} if there is no value. Stores that load large values lazily
+   * answer this without loading the value, so callers can decide whether
+   * to render or truncate it first.
+   *
+   * @param key
+   * @return
+   */
+  int getTextSize(@NotNull String key);
+
   /**
    * Returns the value attached to the key or throws an exception.
    *
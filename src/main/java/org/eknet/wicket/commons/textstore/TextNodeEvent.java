@@ -0,0 +1,93 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+
+/**
+ * Describes a change of a {@link TextNode} that has been committed to a
+ * {@link TextNodeStore}, see {@link TextNodeListener}.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 01:10
+ */
+public final class TextNodeEvent {
+
+  public enum Type {
+    /**
+     * The node has been created. The old version is {@link TextNode#ANY_VERSION}.
+     */
+    CREATED,
+    /**
+     * Values of the node have been set. The keys are the keys that have been set.
+     */
+    CHANGED,
+    /**
+     * Keys of the node have been removed. The keys are the removed keys.
+     */
+    KEY_REMOVED,
+    /**
+     * The node has been removed from the store. The new version is
+     * {@link TextNode#ANY_VERSION} and there are no keys.
+     */
+    REMOVED
+  }
+
+  private final Type type;
+  private final String nodeId;
+  private final long oldVersion;
+  private final long newVersion;
+  private final Set<String> keys;
+
+  public TextNodeEvent(@NotNull Type type, @NotNull String nodeId, long oldVersion, long newVersion, @NotNull Set<String> keys) {
+    this.type = type;
+    this.nodeId = nodeId;
+    this.oldVersion = oldVersion;
+    this.newVersion = newVersion;
+    this.keys = keys;
+  }
+
+  @NotNull
+  public Type getType() {
+    return type;
+  }
+
+  @NotNull
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  public long getOldVersion() {
+    return oldVersion;
+  }
+
+  public long getNewVersion() {
+    return newVersion;
+  }
+
+  @NotNull
+  public Set<String> getKeys() {
+    return keys;
+  }
+
+  @Override
+  public String toString() {
+    return "TextNodeEvent[" + type + " " + nodeId + " " + oldVersion + "->" + newVersion + " " + keys + "]";
+  }
+}
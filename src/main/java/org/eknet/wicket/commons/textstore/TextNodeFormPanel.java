@@ -17,6 +17,8 @@
 package org.eknet.wicket.commons.textstore;
 
 import org.apache.wicket.AttributeModifier;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.form.AjaxFormSubmitBehavior;
 import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.form.Form;
 import org.apache.wicket.markup.html.form.FormComponent;
@@ -46,6 +48,17 @@ import java.util.List;
  * using {@link #addTextArea(String, IModel, IModel)} and
  * {@link #addTextField(String, IModel, IModel)}, respectively.
  * The form is then constructed at {@link #onInitialize()}.
+ * <p/>
+ * Changes made by the form are written to the store at once when the form is
+ * submitted, and only if the node has not been changed since the form was rendered.
+ * Otherwise, an error message is added to the form and {@link #onFormError(Form)}
+ * is called. The form then shows the current node together with the rejected input,
+ * which overwrites the node if it is submitted again.
+ * <p/>
+ * If {@link #isAjaxSubmit()} returns {@code true}, the form is submitted using Ajax.
+ * After the changes have been written {@link #onAjaxSubmit(AjaxRequestTarget)} is
+ * called, otherwise only this panel is rendered again. By default, this is the case
+ * if the panel is part of a {@link ViewOrEdit} component with Ajax enabled.
  *
  * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
  * @since 18.12.11 13:08
@@ -58,6 +71,8 @@ public class TextNodeFormPanel extends GenericPanel<TextNode> {
   private List<Descriptor> components = new LinkedList<Descriptor>();
 
   private final IModel<TextNodeStore> storeModel;
+  private StagedTextNodeModel formModel;
+  private long renderedVersion = TextNode.ANY_VERSION;
   
   private static enum Type {
     TEXT, TEXT_AREA
@@ -114,7 +129,11 @@ public class TextNodeFormPanel extends GenericPanel<TextNode> {
       @Override
       protected void onSubmit() {
         super.onSubmit();
-        onFormSubmit(this);
+        if (commitChanges(this)) {
+          onFormSubmit(this);
+        } else {
+          onFormError(this);
+        }
       }
 
       @Override
@@ -129,15 +148,102 @@ public class TextNodeFormPanel extends GenericPanel<TextNode> {
         onFormError(this);
       }
     };
-    form.setModel(newFormModel());
+    formModel = new StagedTextNodeModel(newFormModel());
+    form.setModel(formModel);
     form.add(new FormComponentList("inputComponent"));
     form.add(buttons);
     for (Descriptor descriptor : components) {
       descriptor.createComponents(form);
     }
+    if (isAjaxSubmit()) {
+      setOutputMarkupId(true);
+      form.add(new AjaxFormSubmitBehavior(form, "onsubmit") {
+        @Override
+        protected void onSubmit(AjaxRequestTarget target) {
+          if (getForm().hasError()) {
+            target.add(TextNodeFormPanel.this);
+          } else {
+            onAjaxSubmit(target);
+          }
+        }
+
+        @Override
+        protected void onError(AjaxRequestTarget target) {
+          target.add(TextNodeFormPanel.this);
+        }
+      });
+    }
     add(form);
   }
 
+  /**
+   * Returns whether the form is submitted using Ajax. This is called once in
+   * {@link #onInitialize()}. By default, it returns {@code true} if the panel
+   * is contained in a {@link ViewOrEdit} component that has Ajax enabled.
+   *
+   * @return
+   */
+  protected boolean isAjaxSubmit() {
+    ViewOrEdit owner = findParent(ViewOrEdit.class);
+    return owner != null && owner.isAjaxEnabled();
+  }
+
+  /**
+   * Called after the changes of an Ajax submit have been written. By default,
+   * the containing {@link ViewOrEdit} component is switched to view mode.
+   *
+   * @param target
+   */
+  protected void onAjaxSubmit(AjaxRequestTarget target) {
+    ViewOrEdit owner = findParent(ViewOrEdit.class);
+    if (owner != null) {
+      owner.switchMode(ViewOrEdit.Mode.VIEW, target);
+    } else {
+      target.add(this);
+    }
+  }
+
+  @Override
+  protected void onBeforeRender() {
+    //remember the version the user is going to edit
+    TextNode node = formModel.getObject();
+    renderedVersion = node != null ? node.getVersion() : TextNode.ANY_VERSION;
+    super.onBeforeRender();
+  }
+
+  /**
+   * Writes the changes of the form to the store, unless the node has
+   * been changed since the form was rendered.
+   *
+   * @param form
+   * @return {@code true} if the changes have been written
+   */
+  private boolean commitChanges(Form<TextNode> form) {
+    if (!formModel.hasChanges()) {
+      return true;
+    }
+    TextNodeStore store = storeModel.getObject();
+    String nodeId = formModel.getObject().getId();
+    try {
+      renderedVersion = formModel.commit(store, renderedVersion);
+      RenderedFragmentCache fragments = RenderedFragmentCache.get();
+      if (fragments != null) {
+        fragments.invalidate(nodeId);
+      }
+      return true;
+    } catch (StaleTextNodeException e) {
+      form.error(getString("conflict"));
+      return false;
+    } finally {
+      //reload the node, the loaded instance may be outdated now
+      TextNodeIdentityMap identityMap = TextNodeIdentityMap.get();
+      if (identityMap != null) {
+        identityMap.remove(store, nodeId);
+      }
+      formModel.getNodeModel().detach();
+    }
+  }
+
   protected void onFormSubmit(Form<TextNode> form) {
 
   }
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.request.cycle.AbstractRequestCycleListener;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Holds all {@link TextNode}s that have been loaded during the current request. It is
+ * used by {@link TextNodeModel} so that all models of the same node id share one instance
+ * and the node is read from the {@link TextNodeStore} at most once per request. Snapshots
+ * are kept apart from the nodes, since a snapshot cannot stand in for a modifiable node.
+ * <p/>
+ * The map is attached to the current {@link RequestCycle} and dropped together with it.
+ * To release the nodes as soon as the request is detached, register the {@link Listener}
+ * with your application:
+ * <pre>
+ *   getRequestCycleListeners().add(new TextNodeIdentityMap.Listener());
+ * </pre>
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 17.10.26 20:12
+ */
+public final class TextNodeIdentityMap {
+
+  private static final MetaDataKey<TextNodeIdentityMap> KEY = new MetaDataKey<TextNodeIdentityMap>() {
+  };
+
+  private final Map<TextNodeStore, Map<String, TextNode>> nodes = new IdentityHashMap<TextNodeStore, Map<String, TextNode>>();
+  private final Map<TextNodeStore, Map<String, TextNodeSnapshot>> snapshots = new IdentityHashMap<TextNodeStore, Map<String, TextNodeSnapshot>>();
+
+  private TextNodeIdentityMap() {
+  }
+
+  /**
+   * Returns the identity map of the current request, or {@code null} if there
+   * is no request cycle attached to the current thread.
+   *
+   * @return
+   */
+  @Nullable
+  public static TextNodeIdentityMap get() {
+    RequestCycle cycle = RequestCycle.get();
+    if (cycle == null) {
+      return null;
+    }
+    TextNodeIdentityMap map = cycle.getMetaData(KEY);
+    if (map == null) {
+      map = new TextNodeIdentityMap();
+      cycle.setMetaData(KEY, map);
+    }
+    return map;
+  }
+
+  /**
+   * Returns the node from this map or looks it up in the store. Nodes
+   * that are not found in the store are not remembered.
+   *
+   * @param store
+   * @param id
+   * @return
+   */
+  @Nullable
+  public TextNode getTextNode(@NotNull TextNodeStore store, @NotNull String id) {
+    Map<String, TextNode> storeNodes = getNodes(store);
+    TextNode node = storeNodes.get(id);
+    if (node == null) {
+      node = store.getTextNode(id);
+      if (node != null) {
+        storeNodes.put(id, node);
+      }
+    }
+    return node;
+  }
+
+  /**
+   * Returns the node from this map or gets or creates it in the store.
+   *
+   * @param store
+   * @param id
+   * @return
+   */
+  @NotNull
+  public TextNode getOrCreateNode(@NotNull TextNodeStore store, @NotNull String id) {
+    Map<String, TextNode> storeNodes = getNodes(store);
+    TextNode node = storeNodes.get(id);
+    if (node == null) {
+      node = store.getOrCreateNode(id);
+      storeNodes.put(id, node);
+    }
+    return node;
+  }
+
+  /**
+   * Adds a node that has been loaded from the given store.
+   *
+   * @param store
+   * @param node
+   */
+  public void put(@NotNull TextNodeStore store, @NotNull TextNode node) {
+    getNodes(store).put(node.getId(), node);
+  }
+
+  /**
+   * Returns the snapshot from this map or looks it up in the store. Nodes
+   * that are not found in the store are not remembered.
+   *
+   * @param store
+   * @param id
+   * @return
+   */
+  @Nullable
+  public TextNodeSnapshot getSnapshot(@NotNull TextNodeStore store, @NotNull String id) {
+    Map<String, TextNodeSnapshot> storeSnapshots = getSnapshots(store);
+    TextNodeSnapshot snapshot = storeSnapshots.get(id);
+    if (snapshot == null) {
+      snapshot = store.getSnapshot(id);
+      if (snapshot != null) {
+        storeSnapshots.put(id, snapshot);
+      }
+    }
+    return snapshot;
+  }
+
+  /**
+   * Adds a snapshot that has been loaded from the given store.
+   *
+   * @param store
+   * @param snapshot
+   */
+  public void putSnapshot(@NotNull TextNodeStore store, @NotNull TextNodeSnapshot snapshot) {
+    getSnapshots(store).put(snapshot.getId(), snapshot);
+  }
+
+  /**
+   * Forgets the node and the snapshot with the given id, so that they are
+   * read from the store again on next access.
+   *
+   * @param store
+   * @param id
+   */
+  public void remove(@NotNull TextNodeStore store, @NotNull String id) {
+    Map<String, TextNode> storeNodes = nodes.get(store);
+    if (storeNodes != null) {
+      storeNodes.remove(id);
+    }
+    Map<String, TextNodeSnapshot> storeSnapshots = snapshots.get(store);
+    if (storeSnapshots != null) {
+      storeSnapshots.remove(id);
+    }
+  }
+
+  public boolean contains(@NotNull TextNodeStore store, @NotNull String id) {
+    Map<String, TextNode> storeNodes = nodes.get(store);
+    return storeNodes != null && storeNodes.containsKey(id);
+  }
+
+  public boolean containsSnapshot(@NotNull TextNodeStore store, @NotNull String id) {
+    Map<String, TextNodeSnapshot> storeSnapshots = snapshots.get(store);
+    return storeSnapshots != null && storeSnapshots.containsKey(id);
+  }
+
+  public void clear() {
+    nodes.clear();
+    snapshots.clear();
+  }
+
+  private Map<String, TextNode> getNodes(TextNodeStore store) {
+    Map<String, TextNode> storeNodes = nodes.get(store);
+    if (storeNodes == null) {
+      storeNodes = new HashMap<String, TextNode>();
+      nodes.put(store, storeNodes);
+    }
+    return storeNodes;
+  }
+
+  private Map<String, TextNodeSnapshot> getSnapshots(TextNodeStore store) {
+    Map<String, TextNodeSnapshot> storeSnapshots = snapshots.get(store);
+    if (storeSnapshots == null) {
+      storeSnapshots = new HashMap<String, TextNodeSnapshot>();
+      snapshots.put(store, storeSnapshots);
+    }
+    return storeSnapshots;
+  }
+
+  /**
+   * Clears the identity map when the request cycle is detached.
+   */
+  public static class Listener extends AbstractRequestCycleListener {
+    @Override
+    public void onDetach(RequestCycle cycle) {
+      TextNodeIdentityMap map = cycle.getMetaData(KEY);
+      if (map != null) {
+        map.clear();
+        cycle.setMetaData(KEY, null);
+      }
+    }
+  }
+}
@@ -0,0 +1,500 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An inverted index over the values of the {@link TextNode}s of a store, that can be
+ * searched for words. The index is a {@link TextNodeListener}: once registered with
+ * the store, each changed node is read again and its entry in the index is replaced.
+ * Since this reads the node within the listener, it should be registered wrapped in an
+ * {@link AsyncTextNodeListener}.
+ * <p/>
+ * Values are split into lower-cased words, ignoring HTML markup. Search results are
+ * ranked by the frequency of the query words in a node, weighted by how rare the words
+ * are among all nodes.
+ * <p/>
+ * An entry is only replaced by a newer version of its node, so events that are delivered
+ * late or out of order cannot replace it with older contents. Removed nodes are dropped
+ * from the index.
+ * <p/>
+ * The index is written to a file when it is closed and, after changes, at most every
+ * {@code saveInterval} milliseconds. It is read from this file on creation. Nodes that
+ * changed while the index was not running can be updated using {@link #reindex(Collection)}.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 01:55
+ */
+public class TextNodeIndex implements TextNodeListener, Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(TextNodeIndex.class);
+
+  private static final int MAGIC = 0x544e4958;
+  private static final int FORMAT_VERSION = 1;
+  private static final int MIN_WORD_LENGTH = 2;
+  private static final int MAX_WORD_LENGTH = 64;
+
+  private final TextNodeStore store;
+  private final File file;
+  private final long saveInterval;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  //guarded by lock
+  private final Map<String, Entry> entries = new HashMap<String, Entry>();
+  private final Map<String, Map<String, Integer>> postings = new HashMap<String, Map<String, Integer>>();
+  private volatile boolean dirty;
+  private volatile long lastSave = System.currentTimeMillis();
+
+  public TextNodeIndex(@NotNull TextNodeStore store, @NotNull File file) {
+    this(store, file, 60 * 1000L);
+  }
+
+  /**
+   * Creates the index and loads it from the given file, if it exists.
+   *
+   * @param store the store to read changed nodes from
+   * @param file the file to persist the index to
+   * @param saveInterval the minimum time between two saves in milliseconds
+   */
+  public TextNodeIndex(@NotNull TextNodeStore store, @NotNull File file, long saveInterval) {
+    this.store = store;
+    this.file = file;
+    this.saveInterval = saveInterval;
+    //the backup only exists if the last save failed while replacing the file
+    File existing = file.exists() ? file : getBackupFile();
+    if (existing.exists()) {
+      try {
+        load(existing);
+      } catch (IOException e) {
+        log.warn("Unable to read text node index " + existing + ". Starting with an empty index.", e);
+        entries.clear();
+        postings.clear();
+      }
+    }
+  }
+
+  /**
+   * Updates the index for the nodes of the events.
+   *
+   * @param events
+   */
+  @Override
+  public void onEvents(@NotNull List<TextNodeEvent> events) {
+    Set<String> ids = new LinkedHashSet<String>();
+    for (TextNodeEvent event : events) {
+      if (event.getType() == TextNodeEvent.Type.REMOVED) {
+        //a node created again with the same id starts with a lower version
+        removeEntry(event.getNodeId());
+      }
+      ids.add(event.getNodeId());
+    }
+    update(ids);
+    if (dirty && System.currentTimeMillis() - lastSave >= saveInterval) {
+      try {
+        save();
+      } catch (IOException e) {
+        log.error("Unable to save text node index " + file, e);
+      }
+    }
+  }
+
+  /**
+   * Reads the given nodes from the store and updates their entries, if they have a
+   * newer version than the one indexed. Nodes that are not found are removed from
+   * the index.
+   *
+   * @param ids
+   */
+  public void reindex(@NotNull Collection<String> ids) {
+    update(ids);
+  }
+
+  /**
+   * Returns the ids of the nodes containing at least one of the words of the query,
+   * best matches first.
+   *
+   * @param query
+   * @param maxResults
+   * @return
+   */
+  @NotNull
+  public List<Hit> search(@NotNull String query, int maxResults) {
+    Set<String> words = new LinkedHashSet<String>();
+    tokenize(query, words);
+    if (words.isEmpty() || maxResults <= 0) {
+      return Collections.emptyList();
+    }
+    Map<String, Double> scores = new HashMap<String, Double>();
+    lock.readLock().lock();
+    try {
+      int count = entries.size();
+      for (String word : words) {
+        Map<String, Integer> nodes = postings.get(word);
+        if (nodes == null) {
+          continue;
+        }
+        double idf = Math.log(1.0 + (double) count / nodes.size());
+        for (Map.Entry<String, Integer> node : nodes.entrySet()) {
+          double score = node.getValue() / Math.sqrt(entries.get(node.getKey()).length) * idf;
+          Double current = scores.get(node.getKey());
+          scores.put(node.getKey(), current != null ? current + score : score);
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    //keep the best results in a min-heap
+    PriorityQueue<Hit> best = new PriorityQueue<Hit>(Math.min(maxResults, scores.size()) + 1, HIT_ORDER);
+    for (Map.Entry<String, Double> score : scores.entrySet()) {
+      best.add(new Hit(score.getKey(), score.getValue()));
+      if (best.size() > maxResults) {
+        best.poll();
+      }
+    }
+    List<Hit> hits = new ArrayList<Hit>(best);
+    Collections.sort(hits, Collections.reverseOrder(HIT_ORDER));
+    return hits;
+  }
+
+  /**
+   * Returns the number of indexed nodes.
+   *
+   * @return
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the version of the node at the time it has been indexed.
+   *
+   * @param id
+   * @return the version or {@link TextNode#ANY_VERSION} if the node is not indexed
+   */
+  public long getIndexedVersion(@NotNull String id) {
+    lock.readLock().lock();
+    try {
+      Entry entry = entries.get(id);
+      return entry != null ? entry.version : TextNode.ANY_VERSION;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Writes the index to its file. The file is replaced only after the
+   * index has been written completely. If the file cannot be replaced
+   * directly, it is moved to a backup first, which is read on creation
+   * if replacing the file fails.
+   *
+   * @throws IOException
+   */
+  public synchronized void save() throws IOException {
+    File tmp = new File(file.getPath() + ".tmp");
+    lock.readLock().lock();
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+      try {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+          out.writeUTF(entry.getKey());
+          out.writeLong(entry.getValue().version);
+          Map<String, Integer> words = entry.getValue().words;
+          out.writeInt(words.size());
+          for (Map.Entry<String, Integer> word : words.entrySet()) {
+            out.writeUTF(word.getKey());
+            out.writeInt(word.getValue());
+          }
+        }
+      } finally {
+        out.close();
+      }
+      dirty = false;
+      lastSave = System.currentTimeMillis();
+    } finally {
+      lock.readLock().unlock();
+    }
+    replace(tmp, file);
+  }
+
+  /**
+   * Renames {@code source} to {@code target}. Where renaming does not replace an
+   * existing file, the target is renamed to a backup first, so that there is
+   * always a complete file.
+   */
+  private void replace(File source, File target) throws IOException {
+    if (source.renameTo(target)) {
+      return;
+    }
+    File backup = getBackupFile();
+    if (backup.exists() && !backup.delete()) {
+      throw new IOException("Unable to delete " + backup);
+    }
+    if (target.exists() && !target.renameTo(backup)) {
+      throw new IOException("Unable to rename " + target + " to " + backup);
+    }
+    if (!source.renameTo(target)) {
+      if (backup.exists() && !target.exists()) {
+        backup.renameTo(target);
+      }
+      throw new IOException("Unable to rename " + source + " to " + target);
+    }
+    if (backup.exists() && !backup.delete()) {
+      log.warn("Unable to delete " + backup);
+    }
+  }
+
+  private File getBackupFile() {
+    return new File(file.getPath() + ".bak");
+  }
+
+  /**
+   * Saves the index if it has been changed since the last save.
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close() throws IOException {
+    if (dirty) {
+      save();
+    }
+  }
+
+  /**
+   * Reads the nodes and replaces their entries. The nodes are read outside of
+   * the lock, so another thread may have indexed a newer version meanwhile.
+   * Entries are therefore only replaced by newer versions.
+   */
+  private void update(Collection<String> ids) {
+    for (String id : ids) {
+      TextNodeSnapshot node = store.getSnapshot(id);
+      lock.writeLock().lock();
+      try {
+        Entry old = entries.get(id);
+        if (node == null) {
+          if (old != null) {
+            remove(id, old);
+            dirty = true;
+          }
+        } else if (old == null || node.getVersion() > old.version) {
+          if (old != null) {
+            remove(id, old);
+          }
+          add(id, analyze(node));
+          dirty = true;
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  private void removeEntry(String id) {
+    lock.writeLock().lock();
+    try {
+      Entry old = entries.get(id);
+      if (old != null) {
+        remove(id, old);
+        dirty = true;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private Entry analyze(TextNodeSnapshot node) {
+    List<String> words = new ArrayList<String>();
+    for (String key : node.getKeys()) {
+      if (!key.startsWith("___")) {
+        tokenize(node.getText(key), words);
+      }
+    }
+    Map<String, Integer> frequencies = new HashMap<String, Integer>();
+    for (String word : words) {
+      Integer count = frequencies.get(word);
+      frequencies.put(word, count != null ? count + 1 : 1);
+    }
+    return new Entry(node.getVersion(), words.size(), frequencies);
+  }
+
+  private void add(String id, Entry entry) {
+    entries.put(id, entry);
+    for (Map.Entry<String, Integer> word : entry.words.entrySet()) {
+      Map<String, Integer> nodes = postings.get(word.getKey());
+      if (nodes == null) {
+        nodes = new HashMap<String, Integer>(4);
+        postings.put(word.getKey(), nodes);
+      }
+      nodes.put(id, word.getValue());
+    }
+  }
+
+  private void remove(String id, Entry entry) {
+    entries.remove(id);
+    for (String word : entry.words.keySet()) {
+      Map<String, Integer> nodes = postings.get(word);
+      if (nodes != null) {
+        nodes.remove(id);
+        if (nodes.isEmpty()) {
+          postings.remove(word);
+        }
+      }
+    }
+  }
+
+  private void load(File source) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(source)));
+    try {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        throw new IOException("Not a text node index: " + source);
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        String id = in.readUTF();
+        long version = in.readLong();
+        int wordCount = in.readInt();
+        Map<String, Integer> words = new HashMap<String, Integer>(wordCount * 4 / 3 + 1);
+        int length = 0;
+        for (int j = 0; j < wordCount; j++) {
+          String word = in.readUTF();
+          int frequency = in.readInt();
+          words.put(word, frequency);
+          length += frequency;
+        }
+        add(id, new Entry(version, length, words));
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Adds the lower-cased words of the text to the collection. Markup
+   * between angle brackets and character entities are skipped.
+   *
+   * @param text
+   * @param words
+   */
+  static void tokenize(String text, Collection<String> words) {
+    StringBuilder word = new StringBuilder();
+    boolean inTag = false;
+    boolean inEntity = false;
+    for (int i = 0; i <= text.length(); i++) {
+      char c = i < text.length() ? text.charAt(i) : ' ';
+      if (inTag) {
+        inTag = c != '>';
+        continue;
+      }
+      if (inEntity) {
+        inEntity = c != ';' && !Character.isWhitespace(c);
+        continue;
+      }
+      if (Character.isLetterOrDigit(c)) {
+        word.append(c);
+        continue;
+      }
+      if (word.length() >= MIN_WORD_LENGTH && word.length() <= MAX_WORD_LENGTH) {
+        words.add(word.toString().toLowerCase(Locale.ENGLISH));
+      }
+      word.setLength(0);
+      inTag = c == '<';
+      inEntity = c == '&';
+    }
+  }
+
+  private static final Comparator<Hit> HIT_ORDER = new Comparator<Hit>() {
+    @Override
+    public int compare(Hit o1, Hit o2) {
+      return Double.compare(o1.score, o2.score);
+    }
+  };
+
+  /**
+   * A node matching a search, along with its score. Higher scores are better matches.
+   */
+  public static final class Hit {
+    private final String nodeId;
+    private final double score;
+
+    private Hit(String nodeId, double score) {
+      this.nodeId = nodeId;
+      this.score = score;
+    }
+
+    @NotNull
+    public String getNodeId() {
+      return nodeId;
+    }
+
+    public double getScore() {
+      return score;
+    }
+
+    @Override
+    public String toString() {
+      return nodeId + ":" + score;
+    }
+  }
+
+  /**
+   * The words of an indexed node with their frequencies.
+   */
+  private static final class Entry {
+    private final long version;
+    private final int length;
+    private final Map<String, Integer> words;
+
+    private Entry(long version, int length, Map<String, Integer> words) {
+      this.version = version;
+      this.length = Math.max(1, length);
+      this.words = words;
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Is notified about changes of the nodes of a {@link TextNodeStore}. Register it
+ * using {@link TextNodeStore#addListener(TextNodeListener)}.
+ * <p/>
+ * Listeners are called synchronously by the thread that committed the change, after
+ * the change is visible in the store. Wrap slow listeners in an {@link AsyncTextNodeListener}.
+ * Events of concurrent commits may arrive out of order; use the versions of the events
+ * to detect this.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 01:12
+ */
+public interface TextNodeListener {
+
+  /**
+   * Called with the events of one or more commits, in the order they have
+   * been delivered by the store.
+   *
+   * @param events
+   */
+  void onEvents(@NotNull List<TextNodeEvent> events);
+
+}
@@ -23,6 +23,10 @@ import org.apache.wicket.model.IWrapModel;
 import org.apache.wicket.model.LoadableDetachableModel;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
 /**
  * Loadable model for {@link TextNode}s. It needs a {@link TextNodeStore} to work, which is 
  * supplied via the {@link IModel} interface. Usually (if some sort of DI is used), you can
@@ -42,6 +46,13 @@ import org.jetbrains.annotations.NotNull;
  *     }
  *   }
  * </pre>
+ * <p/>
+ * A model created with {@code snapshot = true} loads the immutable {@link TextNodeSnapshot}
+ * of the node, which is shared with all other readers and cannot be modified. Use it
+ * for components that only display the texts.
+ * <p/>
+ * When serialized, only the store model, the node id and the flags are written. A node
+ * passed to the constructor is never serialized, it is loaded again after deserialization.
  *
  * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
  * @since 17.12.11 14:41
@@ -53,7 +64,7 @@ public final class TextNodeModel extends LoadableDetachableModel<TextNode> imple
   private final String id;
   private final boolean required;
   private final boolean createNonExistingNode;
-
+  private final boolean snapshot;
 
   public TextNodeModel(@NotNull IModel<TextNodeStore> textNodeStore, @NotNull Class<?> clazz) {
     this(textNodeStore, clazz.getName());
@@ -64,10 +75,15 @@ public final class TextNodeModel extends LoadableDetachableModel<TextNode> imple
   }
 
   public TextNodeModel(@NotNull IModel<TextNodeStore> textNodeStore, boolean required, boolean createNonExistingNode, @NotNull String id) {
+    this(textNodeStore, required, createNonExistingNode, false, id);
+  }
+
+  public TextNodeModel(@NotNull IModel<TextNodeStore> textNodeStore, boolean required, boolean createNonExistingNode, boolean snapshot, @NotNull String id) {
     this.textNodeStore = textNodeStore;
     this.id = id;
     this.required = required;
     this.createNonExistingNode = createNonExistingNode;
+    this.snapshot = snapshot;
   }
 
   public TextNodeModel(@NotNull IModel<TextNodeStore> textNodeStore, @NotNull TextNode node, boolean required, boolean createNonExistingNode) {
@@ -76,6 +92,7 @@ public final class TextNodeModel extends LoadableDetachableModel<TextNode> imple
     this.id = node.getId();
     this.required = required;
     this.createNonExistingNode = createNonExistingNode;
+    this.snapshot = false;
   }
 
   public String getId() {
@@ -86,13 +103,41 @@ public final class TextNodeModel extends LoadableDetachableModel<TextNode> imple
     return required;
   }
 
+  public IModel<TextNodeStore> getStoreModel() {
+    return textNodeStore;
+  }
+
+  public boolean isSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Loads the node from the store. If a request is active, the node is looked up
+   * in the {@link TextNodeIdentityMap} first, so all models of the same node share
+   * one instance during a request. Snapshots are always requested from the store,
+   * which shares them across requests.
+   *
+   * @return
+   */
   @Override
   protected TextNode load() {
+    TextNodeStore store = textNodeStore.getObject();
+    TextNodeIdentityMap identityMap = TextNodeIdentityMap.get();
     TextNode node;
-    if (createNonExistingNode) {
-      node = textNodeStore.getObject().getOrCreateNode(id);
+    if (snapshot) {
+      node = identityMap != null ? identityMap.getSnapshot(store, id) : store.getSnapshot(id);
+      if (node == null && createNonExistingNode) {
+        store.getOrCreateNode(id);
+        node = identityMap != null ? identityMap.getSnapshot(store, id) : store.getSnapshot(id);
+      }
+    } else if (identityMap != null) {
+      node = createNonExistingNode
+          ? identityMap.getOrCreateNode(store, id)
+          : identityMap.getTextNode(store, id);
+    } else if (createNonExistingNode) {
+      node = store.getOrCreateNode(id);
     } else {
-      node = textNodeStore.getObject().getTextNode(id);
+      node = store.getTextNode(id);
     }
     if (node == null && isRequired()) {
       throw new IllegalStateException("Required node not found: " + id);
@@ -100,6 +145,14 @@ public final class TextNodeModel extends LoadableDetachableModel<TextNode> imple
     return node;
   }
 
+  private Object writeReplace() {
+    return new SerializedForm(this);
+  }
+
+  private void readObject(ObjectInputStream in) throws InvalidObjectException {
+    throw new InvalidObjectException("TextNodeModel is read from its serialized form");
+  }
+
   protected String getKey(Component component) {
     return component.getId();
   }
@@ -131,4 +184,31 @@ public final class TextNodeModel extends LoadableDetachableModel<TextNode> imple
     }
 
   }
+
+  /**
+   * The state of a {@link TextNodeModel} as it is serialized. The flags are
+   * packed into one byte.
+   */
+  private static final class SerializedForm implements Serializable {
+
+    private static final byte REQUIRED = 1;
+    private static final byte CREATE = 2;
+    private static final byte SNAPSHOT = 4;
+
+    private final IModel<TextNodeStore> store;
+    private final String id;
+    private final byte flags;
+
+    private SerializedForm(TextNodeModel model) {
+      this.store = model.textNodeStore;
+      this.id = model.id;
+      this.flags = (byte) ((model.required ? REQUIRED : 0)
+          | (model.createNonExistingNode ? CREATE : 0)
+          | (model.snapshot ? SNAPSHOT : 0));
+    }
+
+    private Object readResolve() {
+      return new TextNodeModel(store, (flags & REQUIRED) != 0, (flags & CREATE) != 0, (flags & SNAPSHOT) != 0, id);
+    }
+  }
 }
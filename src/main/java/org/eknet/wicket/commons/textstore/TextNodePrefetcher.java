@@ -0,0 +1,133 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.Page;
+import org.apache.wicket.application.IComponentOnBeforeRenderListener;
+import org.apache.wicket.markup.html.form.Form;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads the {@link TextNode}s of all {@link ViewOrEdit} and {@link TextNodeFormPanel}
+ * components of a page with one {@link TextNodeStore#getTextNodes(java.util.Collection)}
+ * call per store, before the page is rendered. Models that read snapshots are loaded
+ * with one {@link TextNodeStore#getSnapshots(java.util.Collection)} call per store
+ * instead. The nodes are put into the {@link TextNodeIdentityMap} of the current
+ * request, where the {@link TextNodeModel}s pick them up.
+ * <p/>
+ * Register it with your application to prefetch nodes for every page:
+ * <pre>
+ *   getComponentPreOnBeforeRenderListeners().add(new TextNodePrefetcher());
+ * </pre>
+ * or call {@link #prefetch(MarkupContainer)} yourself.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 17.10.26 20:31
+ */
+public class TextNodePrefetcher implements IComponentOnBeforeRenderListener {
+
+  @Override
+  public void onBeforeRender(Component component) {
+    if (component instanceof Page) {
+      prefetch((Page) component);
+    }
+  }
+
+  /**
+   * Collects the node ids of all text node models below the given container and
+   * loads the nodes that are not yet in the {@link TextNodeIdentityMap}.
+   *
+   * @param container
+   */
+  public static void prefetch(@NotNull MarkupContainer container) {
+    TextNodeIdentityMap identityMap = TextNodeIdentityMap.get();
+    if (identityMap == null) {
+      return;
+    }
+    final Map<TextNodeStore, Set<String>> ids = new IdentityHashMap<TextNodeStore, Set<String>>();
+    final Map<TextNodeStore, Set<String>> snapshotIds = new IdentityHashMap<TextNodeStore, Set<String>>();
+    container.visitChildren(new IVisitor<Component, Void>() {
+      @Override
+      public void component(Component component, IVisit<Void> visit) {
+        if (component instanceof ViewOrEdit) {
+          collect(ids, snapshotIds, ((ViewOrEdit) component).getModel());
+        } else if (component instanceof TextNodeFormPanel) {
+          Form<TextNode> form = ((TextNodeFormPanel) component).getForm();
+          if (form != null) {
+            collect(ids, snapshotIds, form.getModel());
+          }
+        }
+      }
+    });
+    for (Map.Entry<TextNodeStore, Set<String>> entry : snapshotIds.entrySet()) {
+      TextNodeStore store = entry.getKey();
+      Set<String> missing = new LinkedHashSet<String>();
+      for (String id : entry.getValue()) {
+        if (!identityMap.containsSnapshot(store, id)) {
+          missing.add(id);
+        }
+      }
+      if (!missing.isEmpty()) {
+        for (TextNodeSnapshot snapshot : store.getSnapshots(missing).values()) {
+          identityMap.putSnapshot(store, snapshot);
+        }
+      }
+    }
+    for (Map.Entry<TextNodeStore, Set<String>> entry : ids.entrySet()) {
+      TextNodeStore store = entry.getKey();
+      Set<String> missing = new LinkedHashSet<String>();
+      for (String id : entry.getValue()) {
+        if (!identityMap.contains(store, id)) {
+          missing.add(id);
+        }
+      }
+      if (!missing.isEmpty()) {
+        for (TextNode node : store.getTextNodes(missing).values()) {
+          identityMap.put(store, node);
+        }
+      }
+    }
+  }
+
+  private static void collect(Map<TextNodeStore, Set<String>> ids,
+                              Map<TextNodeStore, Set<String>> snapshotIds, IModel<?> model) {
+    if (model instanceof StagedTextNodeModel) {
+      model = ((StagedTextNodeModel) model).getNodeModel();
+    }
+    if (model instanceof TextNodeModel) {
+      TextNodeModel nodeModel = (TextNodeModel) model;
+      TextNodeStore store = nodeModel.getStoreModel().getObject();
+      Map<TextNodeStore, Set<String>> target = nodeModel.isSnapshot() ? snapshotIds : ids;
+      Set<String> storeIds = target.get(store);
+      if (storeIds == null) {
+        storeIds = new LinkedHashSet<String>();
+        target.put(store, storeIds);
+      }
+      storeIds.add(nodeModel.getId());
+    }
+  }
+}
@@ -21,15 +21,28 @@ import org.apache.wicket.model.Model;
 import org.apache.wicket.util.string.Strings;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 /**
+ * A model for the value of one key of a {@link TextNode}.
+ * <p/>
+ * Only the node model, the key and the default value are serialized. A default
+ * value given as a string is written as the string alone.
+ *
  * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
  * @since 17.12.11 15:00
  */
 public class TextNodePropertyModel implements IModel<String> {
   
-  private IModel<TextNode> nodeModel;
-  private String key;
-  private IModel<String> defaultValue;
+  private static final byte NO_DEFAULT = 0;
+  private static final byte STRING_DEFAULT = 1;
+  private static final byte MODEL_DEFAULT = 2;
+
+  private transient IModel<TextNode> nodeModel;
+  private transient String key;
+  private transient IModel<String> defaultValue;
 
   protected TextNodePropertyModel(@NotNull IModel<TextNode> nodeModel) {
     this.nodeModel = nodeModel;
@@ -92,4 +105,37 @@ public class TextNodePropertyModel implements IModel<String> {
   public void detach() {
     nodeModel.detach();
   }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    out.writeObject(nodeModel);
+    out.writeObject(key);
+    if (defaultValue == null) {
+      out.writeByte(NO_DEFAULT);
+    } else if (defaultValue.getClass() == Model.class) {
+      out.writeByte(STRING_DEFAULT);
+      out.writeObject(defaultValue.getObject());
+    } else {
+      out.writeByte(MODEL_DEFAULT);
+      out.writeObject(defaultValue);
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    //noinspection unchecked
+    nodeModel = (IModel<TextNode>) in.readObject();
+    key = (String) in.readObject();
+    switch (in.readByte()) {
+      case STRING_DEFAULT:
+        defaultValue = Model.of((String) in.readObject());
+        break;
+      case MODEL_DEFAULT:
+        //noinspection unchecked
+        defaultValue = (IModel<String>) in.readObject();
+        break;
+      default:
+        defaultValue = null;
+    }
+  }
 }
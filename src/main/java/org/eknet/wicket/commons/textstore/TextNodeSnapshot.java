@@ -0,0 +1,273 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable copy of a {@link TextNode} at a certain version. Snapshots can be
+ * shared by any number of threads without synchronization and are meant for
+ * components that only display the texts of a node.
+ * <p/>
+ * All methods that would modify the node throw an {@link UnsupportedOperationException}.
+ * The values are held in a compact layout, see {@link TextValues}.
+ * <p/>
+ * Stores may leave large values out of a snapshot and pass a {@link ValueLoader} instead,
+ * see {@link #of(String, long, Map, Map, ValueLoader)}. Such a value is loaded on the first
+ * {@link #getText(String)} call for its key and then kept with the snapshot. It is read
+ * from the store at that time, so it may be newer than the version of the snapshot.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 17.10.26 23:30
+ */
+public final class TextNodeSnapshot implements LazyTextNode {
+
+  private final String id;
+  private final long version;
+  private volatile TextValues values;
+  //sizes of the values not loaded yet
+  private volatile Map<String, Integer> lazySizes;
+  private final ValueLoader loader;
+
+  private TextNodeSnapshot(String id, long version, TextValues values) {
+    this(id, version, values, Collections.<String, Integer>emptyMap(), null);
+  }
+
+  private TextNodeSnapshot(String id, long version, TextValues values, Map<String, Integer> lazySizes,
+                           ValueLoader loader) {
+    this.id = id;
+    this.version = version;
+    this.values = values;
+    this.lazySizes = lazySizes;
+    this.loader = loader;
+  }
+
+  /**
+   * Creates a snapshot containing a copy of the given values.
+   *
+   * @param id
+   * @param version
+   * @param values
+   * @return
+   */
+  @NotNull
+  public static TextNodeSnapshot of(@NotNull String id, long version, @NotNull Map<String, String> values) {
+    return new TextNodeSnapshot(id, version, TextValues.of(values));
+  }
+
+  /**
+   * Creates a snapshot containing a copy of the given values. The values of the keys
+   * in {@code lazySizes} are loaded using the {@code loader} when they are read first.
+   *
+   * @param id
+   * @param version
+   * @param values
+   * @param lazySizes the number of characters of each value that is not loaded yet
+   * @param loader
+   * @return
+   */
+  @NotNull
+  public static TextNodeSnapshot of(@NotNull String id, long version, @NotNull Map<String, String> values,
+                                    @NotNull Map<String, Integer> lazySizes, @NotNull ValueLoader loader) {
+    if (lazySizes.isEmpty()) {
+      return of(id, version, values);
+    }
+    return new TextNodeSnapshot(id, version, TextValues.of(values),
+        Collections.unmodifiableMap(new HashMap<String, Integer>(lazySizes)), loader);
+  }
+
+  /**
+   * Creates a snapshot of the current state of the given node.
+   *
+   * @param node
+   * @return
+   */
+  @NotNull
+  public static TextNodeSnapshot of(@NotNull TextNode node) {
+    if (node instanceof TextNodeSnapshot) {
+      return (TextNodeSnapshot) node;
+    }
+    Map<String, String> values = new HashMap<String, String>();
+    for (String key : node.getKeys()) {
+      String value = node.getText(key);
+      if (value != null) {
+        values.put(key, value);
+      }
+    }
+    return new TextNodeSnapshot(node.getId(), node.getVersion(), TextValues.of(values));
+  }
+
+  /**
+   * Returns a new snapshot with the given changes applied and the version incremented
+   * by one. A {@code null} value removes the key. This snapshot is not modified.
+   *
+   * @param changes
+   * @return
+   */
+  @NotNull
+  public TextNodeSnapshot apply(@NotNull Map<String, String> changes) {
+    Map<String, Integer> sizes = lazySizes;
+    if (!sizes.isEmpty()) {
+      sizes = new HashMap<String, Integer>(sizes);
+      sizes.keySet().removeAll(changes.keySet());
+      sizes = sizes.isEmpty() ? Collections.<String, Integer>emptyMap() : Collections.unmodifiableMap(sizes);
+    }
+    return new TextNodeSnapshot(id, version + 1, values.apply(changes), sizes, loader);
+  }
+
+  @Override
+  public boolean isCreated() {
+    return false;
+  }
+
+  @Override
+  public boolean isModified() {
+    return version > 0;
+  }
+
+  @Override
+  public long getVersion() {
+    return version;
+  }
+
+  @NotNull
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @NotNull
+  @Override
+  public Set<String> getKeys() {
+    Map<String, Integer> sizes = lazySizes;
+    if (sizes.isEmpty()) {
+      return values.keys();
+    }
+    Set<String> keys = new HashSet<String>(values.keys());
+    keys.addAll(sizes.keySet());
+    return Collections.unmodifiableSet(keys);
+  }
+
+  @Nullable
+  @Override
+  public String getText(@NotNull String key) {
+    String value = values.get(key);
+    if (value == null && lazySizes.containsKey(key)) {
+      value = loadLazy(key);
+    }
+    return value;
+  }
+
+  @Override
+  public String getText(@NotNull String key, @Nullable String defaultValue) {
+    String value = getText(key);
+    return value != null ? value : defaultValue;
+  }
+
+  /**
+   * Returns the length of the value, without loading it if it has
+   * been left out of the snapshot.
+   *
+   * @param key
+   * @return
+   */
+  @Override
+  public int getTextSize(@NotNull String key) {
+    Integer size = lazySizes.get(key);
+    if (size != null) {
+      return size;
+    }
+    String value = values.get(key);
+    return value != null ? value.length() : -1;
+  }
+
+  @Override
+  public boolean isLoaded(@NotNull String key) {
+    return !lazySizes.containsKey(key);
+  }
+
+  /**
+   * Returns the loader of the values that have been left out of this snapshot.
+   *
+   * @return
+   */
+  @Nullable
+  ValueLoader getLoader() {
+    return loader;
+  }
+
+  @NotNull
+  @Override
+  public String requireText(@NotNull String key) {
+    String value = getText(key);
+    if (value == null) {
+      throw new IllegalArgumentException("No text found for key: " + key);
+    }
+    return value;
+  }
+
+  @Override
+  public void setText(@NotNull String key, @NotNull String value) {
+    throw new UnsupportedOperationException("Text node snapshots cannot be modified");
+  }
+
+  @Override
+  public void removeKey(@NotNull String key) {
+    throw new UnsupportedOperationException("Text node snapshots cannot be modified");
+  }
+
+  private synchronized String loadLazy(String key) {
+    if (!lazySizes.containsKey(key)) {
+      return values.get(key);
+    }
+    String value = loader.load(id, key);
+    values = values.apply(Collections.singletonMap(key, value));
+    Map<String, Integer> sizes = new HashMap<String, Integer>(lazySizes);
+    sizes.remove(key);
+    lazySizes = sizes.isEmpty() ? Collections.<String, Integer>emptyMap() : Collections.unmodifiableMap(sizes);
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return "TextNodeSnapshot[" + id + "@" + version + "]";
+  }
+
+  /**
+   * Loads a value that has been left out of a snapshot.
+   */
+  public interface ValueLoader {
+
+    /**
+     * Returns the current value of the key of the node or {@code null} if
+     * there is none.
+     *
+     * @param id
+     * @param key
+     * @return
+     */
+    @Nullable
+    String load(@NotNull String id, @NotNull String key);
+  }
+}
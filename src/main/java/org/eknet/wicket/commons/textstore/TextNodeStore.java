@@ -19,6 +19,9 @@ package org.eknet.wicket.commons.textstore;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * The persist service for {@link TextNode}s.
  * <p/>
@@ -67,6 +70,32 @@ public interface TextNodeStore {
   @Nullable
   TextNode getTextNode(@NotNull String id);
 
+  /**
+   * Returns an immutable snapshot of the current state of the {@link TextNode}
+   * with the supplied id or {@code null} if none is found. Snapshots are meant
+   * for reading only and should be used wherever a node is not modified.
+   * <p/>
+   * Implementations should publish a new snapshot with every change of a node,
+   * so that the same instance can be returned to all readers until then.
+   *
+   * @param id
+   * @return
+   */
+  @Nullable
+  TextNodeSnapshot getSnapshot(@NotNull String id);
+
+  /**
+   * Returns the snapshots of all nodes with the given ids, mapped by their id.
+   * Ids without a node in the store are not contained in the map.
+   * <p/>
+   * Implementations should fetch the nodes at once, if their backend allows it.
+   *
+   * @param ids
+   * @return
+   */
+  @NotNull
+  Map<String, TextNodeSnapshot> getSnapshots(@NotNull Collection<String> ids);
+
   /**
    * Returns a available {@link TextNode} of the supplied id from
    * the store or throws an exception if none is found.
@@ -77,4 +106,65 @@ public interface TextNodeStore {
   @NotNull
   TextNode requireTextNode(@NotNull String id);
 
+  /**
+   * Returns all available {@link TextNode}s of the supplied ids. The returned
+   * map contains an entry for each node that has been found, mapped by its id.
+   * Ids without a node in the store are not contained in the map.
+   * <p/>
+   * Implementations should fetch the nodes at once, if their backend allows it.
+   *
+   * @param ids
+   * @return
+   */
+  @NotNull
+  Map<String, TextNode> getTextNodes(@NotNull Collection<String> ids);
+
+  /**
+   * Applies all supplied changes to the {@link TextNode} of the given id at
+   * once. A {@code null} value removes the key from the node. The node is
+   * created if it does not exist.
+   * <p/>
+   * This is the same as setting each value via {@link TextNode#setText(String, String)}
+   * and {@link TextNode#removeKey(String)}, but allows implementations to persist
+   * all changes in one go.
+   *
+   * @param id
+   * @param changes
+   */
+  void updateNode(@NotNull String id, @NotNull Map<String, String> changes);
+
+  /**
+   * Applies all supplied changes to the {@link TextNode} of the given id, if
+   * the node is still at the expected version. This check and the update are
+   * done atomically, so that concurrent edits of the same node cannot overwrite
+   * each other.
+   *
+   * @param id
+   * @param expectedVersion the version the changes are based on, or
+   * {@link TextNode#ANY_VERSION} to skip the check
+   * @param changes the changes, where a {@code null} value removes a key
+   * @return the new version of the node
+   * @throws StaleTextNodeException if the node has been changed in the meantime
+   */
+  long updateNode(@NotNull String id, long expectedVersion, @NotNull Map<String, String> changes) throws StaleTextNodeException;
+
+  /**
+   * Registers a listener that is notified after each committed change of a node.
+   *
+   * @param listener
+   */
+  void addListener(@NotNull TextNodeListener listener);
+
+  void removeListener(@NotNull TextNodeListener listener);
+
+  /**
+   * Returns whether this store notifies its listeners about every change, including
+   * changes made via {@link TextNode#setText(String, String)}. The notification may
+   * be sent some time after the change, once it has been written. Stores returning
+   * {@code false} may not notify their listeners at all.
+   *
+   * @return
+   */
+  boolean isFiringEvents();
+
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, memory efficient set of values of a {@link TextNode}.
+ * <p/>
+ * The values of the keys used by the headline components and the node id are
+ * kept in an array with a fixed slot for each of these keys, so neither the keys
+ * nor any map entries are stored per node. Values of all other keys are kept
+ * in a map, which is only created if there are such values.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 17.10.26 23:52
+ */
+final class TextValues {
+
+  private static final String[] SLOT_KEYS = {
+      AbstractTextNode.UUID_KEY,
+      "headline",
+      "centerContent",
+      "centerContent1",
+      "centerContent2",
+      "columnContent",
+      "columnContent1",
+      "columnContent2"
+  };
+
+  private static final Map<String, Integer> SLOTS = new HashMap<String, Integer>();
+  static {
+    for (int i = 0; i < SLOT_KEYS.length; i++) {
+      SLOTS.put(SLOT_KEYS[i], i);
+    }
+  }
+
+  static final TextValues EMPTY = new TextValues(new String[0], null);
+
+  //only as long as needed for the last used slot
+  private final String[] slots;
+  private final Map<String, String> others;
+
+  private TextValues(String[] slots, Map<String, String> others) {
+    this.slots = slots;
+    this.others = others;
+  }
+
+  @NotNull
+  static TextValues of(@NotNull Map<String, String> values) {
+    return EMPTY.apply(values);
+  }
+
+  @Nullable
+  String get(@NotNull String key) {
+    Integer slot = SLOTS.get(key);
+    if (slot != null) {
+      return slot < slots.length ? slots[slot] : null;
+    }
+    return others != null ? others.get(key) : null;
+  }
+
+  boolean containsKey(@NotNull String key) {
+    return get(key) != null;
+  }
+
+  @NotNull
+  Set<String> keys() {
+    Set<String> keys = new HashSet<String>();
+    for (int i = 0; i < slots.length; i++) {
+      if (slots[i] != null) {
+        keys.add(SLOT_KEYS[i]);
+      }
+    }
+    if (others != null) {
+      keys.addAll(others.keySet());
+    }
+    return Collections.unmodifiableSet(keys);
+  }
+
+  int size() {
+    int size = others != null ? others.size() : 0;
+    for (String value : slots) {
+      if (value != null) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns new values with the given changes applied, where a {@code null}
+   * value removes the key.
+   *
+   * @param changes
+   * @return
+   */
+  @NotNull
+  TextValues apply(@NotNull Map<String, String> changes) {
+    String[] nextSlots = new String[SLOT_KEYS.length];
+    System.arraycopy(slots, 0, nextSlots, 0, slots.length);
+    Map<String, String> nextOthers = others != null ? new HashMap<String, String>(others) : null;
+    for (Map.Entry<String, String> change : changes.entrySet()) {
+      Integer slot = SLOTS.get(change.getKey());
+      if (slot != null) {
+        nextSlots[slot] = change.getValue();
+      } else if (change.getValue() != null) {
+        if (nextOthers == null) {
+          nextOthers = new HashMap<String, String>(4);
+        }
+        nextOthers.put(change.getKey(), change.getValue());
+      } else if (nextOthers != null) {
+        nextOthers.remove(change.getKey());
+      }
+    }
+    int length = nextSlots.length;
+    while (length > 0 && nextSlots[length - 1] == null) {
+      length--;
+    }
+    String[] trimmed = new String[length];
+    System.arraycopy(nextSlots, 0, trimmed, 0, length);
+    return new TextValues(trimmed, nextOthers != null && !nextOthers.isEmpty() ? nextOthers : null);
+  }
+}
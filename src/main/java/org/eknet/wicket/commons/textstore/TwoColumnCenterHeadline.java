@@ -16,19 +16,15 @@
 
 package org.eknet.wicket.commons.textstore;
 
-import org.apache.wicket.AttributeModifier;
-import org.apache.wicket.Component;
-import org.apache.wicket.markup.html.form.FormComponent;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
-import org.apache.wicket.model.ResourceModel;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
-import org.eknet.wicket.commons.ComponentSupplier;
-import org.eknet.wicket.commons.components.FormattedLabel;
 import org.eknet.wicket.commons.yaml.SubcolumnDef;
-import org.eknet.wicket.commons.yaml.Subcolumns;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * A component that contains 4 text components of the following layout:
  * <pre>
@@ -44,13 +40,17 @@ import org.jetbrains.annotations.NotNull;
  * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
  * @since 18.12.11 14:39
  */
-public class TwoColumnCenterHeadline extends ViewOrEdit {
-
+public class TwoColumnCenterHeadline extends TextLayoutPanel {
   private final static String headline = "headline";
   private final static String centerContent = "centerContent";
   private final static String columnContent1 = "columnContent1";
   private final static String columnContent2 = "columnContent2";
 
+  private final static TextLayout layout = createLayout(SubcolumnDef.ColumnDef.L_50, SubcolumnDef.ColumnDef.R_50);
+
+  //layouts of other column definitions, created on first use
+  private final static ConcurrentMap<String, TextLayout> customLayouts = new ConcurrentHashMap<String, TextLayout>();
+
   public TwoColumnCenterHeadline(@NotNull IModel<TextNodeStore> storeModel, String id, Mode mode) {
     super(storeModel, id, mode);
   }
@@ -59,51 +59,54 @@ public class TwoColumnCenterHeadline extends ViewOrEdit {
     super(storeModel, id, pp);
   }
 
-  @Override
-  protected void setEditMode() {
-    add(new ComponentSupplier<Component>() {
-      @NotNull
-      @Override
-      public Component get(@NotNull String id) {
-        return new EditForm(id);
-      }
-    });
+  private static TextLayout createLayout(SubcolumnDef.ColumnDef left, SubcolumnDef.ColumnDef right) {
+    return TextLayout.create("twoColumnCenterHeadline:" + left + ":" + right)
+        .add(TextLayout.headline(headline))
+        .add(TextLayout.content(centerContent).rows(12))
+        .addColumns(
+            TextLayout.column(left, TextLayout.content(columnContent1).rows(12)),
+            TextLayout.column(right, TextLayout.content(columnContent2).rows(12)))
+        .build();
   }
 
+  @NotNull
   @Override
-  protected void setViewMode() {
-    add(FormattedLabel.create()
-        .asHeadline(2)
-        .withText(new TextNodePropertyModel(getModel(), headline,
-            getDefaultValueModel(getHeadlineDefault()))));
-    add(FormattedLabel.create()
-        .escapeModelString(false)
-        .withText(new TextNodePropertyModel(getModel(), centerContent,
-            getDefaultValueModel(getCenterContentDefault()))));
-    Subcolumns.Builder cols = Subcolumns.create()
-        .addColumn(SubcolumnDef.create()
-            .setColumnDef(getLeftColumn1Def())
-            .setContentLeft(getLeftContent()))
-        .addColumn(SubcolumnDef.create()
-            .setColumnDef(getRightColumnDef())
-            .setContentRight(getRightContent()));
-    add(cols);
+  protected TextLayout getTextLayout() {
+    SubcolumnDef.ColumnDef left = getLeftColumn1Def();
+    SubcolumnDef.ColumnDef right = getRightColumnDef();
+    if (left == SubcolumnDef.ColumnDef.L_50 && right == SubcolumnDef.ColumnDef.R_50) {
+      return layout;
+    }
+    String spec = left + ":" + right;
+    TextLayout customLayout = customLayouts.get(spec);
+    if (customLayout == null) {
+      customLayout = createLayout(left, right);
+      TextLayout existing = customLayouts.putIfAbsent(spec, customLayout);
+      if (existing != null) {
+        customLayout = existing;
+      }
+    }
+    return customLayout;
   }
 
-  private ComponentSupplier<FormattedLabel> getLeftContent() {
-    return FormattedLabel.create()
-        .escapeModelString(false)
-        .withText(new TextNodePropertyModel(getModel(), columnContent1,
-            getDefaultValueModel(getColumnContent1Default())));
+  @NotNull
+  @Override
+  protected IModel<String> getDefault(@NotNull String key) {
+    if (headline.equals(key)) {
+      return getHeadlineDefault();
+    }
+    if (centerContent.equals(key)) {
+      return getCenterContentDefault();
+    }
+    if (columnContent1.equals(key)) {
+      return getColumnContent1Default();
+    }
+    if (columnContent2.equals(key)) {
+      return getColumnContent2Default();
+    }
+    return super.getDefault(key);
   }
 
-  private ComponentSupplier<FormattedLabel> getRightContent() {
-    return FormattedLabel.create()
-        .escapeModelString(false)
-        .withText(new TextNodePropertyModel(getModel(), columnContent2,
-            getDefaultValueModel(getColumnContent2Default())));
-  }
-  
   @NotNull
   protected IModel<String> getHeadlineDefault() {
     return Model.of("");
@@ -131,38 +134,4 @@ public class TwoColumnCenterHeadline extends ViewOrEdit {
   protected SubcolumnDef.ColumnDef getRightColumnDef() {
     return SubcolumnDef.ColumnDef.R_50;
   }
-
-  final class EditForm extends TextNodeFormPanel {
-
-    public EditForm(String id) {
-      super(getStoreModel(), id);
-      addDefaultButton();
-      addTextField(headline, new ResourceModel("headline"), getHeadlineDefault());
-      addTextArea(centerContent, new ResourceModel("centerContent"), getCenterContentDefault());
-      addTextArea(columnContent1, new ResourceModel("columnContent1"), getColumnContent1Default());
-      addTextArea(columnContent2, new ResourceModel("columnContent2"), getColumnContent1Default());
-    }
-
-    @Override
-    protected void onInitialize() {
-      super.onInitialize();
-      FormComponent fc = getFormComponent(centerContent);
-      if (fc != null) {
-        fc.add(new AttributeModifier("rows", "12"));
-      }
-      fc = getFormComponent(columnContent1);
-      if (fc != null) {
-        fc.add(new AttributeModifier("rows", "12"));
-      }
-      fc = getFormComponent(columnContent2);
-      if (fc != null) {
-        fc.add(new AttributeModifier("rows", "12"));
-      }
-    }
-
-    @Override
-    protected IModel<TextNode> newFormModel() {
-      return newTextNodeModel();
-    }
-  }
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An {@link InvalidationChannel} that sends each node id as a UDP datagram to a fixed
+ * list of peers, for example other application instances on the same host or in the same
+ * network. No broker or other infrastructure is needed: every instance binds its own
+ * address and lists the addresses of all others.
+ * <pre>
+ *   UdpInvalidationChannel channel = new UdpInvalidationChannel(
+ *       new InetSocketAddress("127.0.0.1", 7701),
+ *       Arrays.asList(new InetSocketAddress("127.0.0.1", 7702)));
+ * </pre>
+ * Received ids are passed to the listeners by a daemon thread. If receiving fails, the
+ * thread waits before trying again, up to {@value #MAX_BACKOFF_MILLIS} ms after repeated
+ * failures. Datagrams may get lost, so caches should still expire their entries eventually. Call {@link #close()} when the
+ * channel is no longer used.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 00:52
+ */
+public class UdpInvalidationChannel implements InvalidationChannel, Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(UdpInvalidationChannel.class);
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final int MAGIC = 0x544e4956;
+  private static final int HEADER_SIZE = 4 + 16;
+  private static final int MAX_PACKET_SIZE = 8192;
+  private static final long MIN_BACKOFF_MILLIS = 100;
+  private static final long MAX_BACKOFF_MILLIS = 10000;
+
+  private final DatagramSocket socket;
+  private final List<InetSocketAddress> peers;
+  private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+  private final UUID senderId = UUID.randomUUID();
+
+  private volatile boolean closed;
+
+  /**
+   * Binds the channel to the given local address and starts receiving.
+   *
+   * @param bindAddress the local address to receive invalidations on
+   * @param peers the addresses of all other channels to notify
+   * @throws IOException if the address cannot be bound
+   */
+  public UdpInvalidationChannel(@NotNull SocketAddress bindAddress, @NotNull Collection<InetSocketAddress> peers) throws IOException {
+    this.socket = new DatagramSocket(bindAddress);
+    this.peers = new ArrayList<InetSocketAddress>(peers);
+    Thread receiver = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        receive();
+      }
+    }, "textnode-invalidation-receiver");
+    receiver.setDaemon(true);
+    receiver.start();
+  }
+
+  /**
+   * Sends the node id to all peers. Failures are logged and otherwise ignored.
+   *
+   * @param nodeId
+   */
+  @Override
+  public void publish(@NotNull String nodeId) {
+    byte[] id = nodeId.getBytes(UTF8);
+    if (HEADER_SIZE + id.length > MAX_PACKET_SIZE) {
+      log.warn("Node id too long to publish an invalidation: {}", nodeId);
+      return;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + id.length);
+    buffer.putInt(MAGIC)
+        .putLong(senderId.getMostSignificantBits())
+        .putLong(senderId.getLeastSignificantBits())
+        .put(id);
+    for (InetSocketAddress peer : peers) {
+      try {
+        socket.send(new DatagramPacket(buffer.array(), buffer.capacity(), peer));
+      } catch (IOException e) {
+        log.warn("Unable to send invalidation of node " + nodeId + " to " + peer, e);
+      }
+    }
+  }
+
+  /**
+   * Returns the address this channel receives invalidations on.
+   *
+   * @return
+   */
+  @NotNull
+  public InetSocketAddress getLocalAddress() {
+    return (InetSocketAddress) socket.getLocalSocketAddress();
+  }
+
+  @Override
+  public void subscribe(@NotNull Listener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void unsubscribe(@NotNull Listener listener) {
+    listeners.remove(listener);
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    socket.close();
+  }
+
+  private void receive() {
+    byte[] data = new byte[MAX_PACKET_SIZE];
+    DatagramPacket packet = new DatagramPacket(data, data.length);
+    int failures = 0;
+    while (!closed) {
+      try {
+        packet.setLength(data.length);
+        socket.receive(packet);
+      } catch (IOException e) {
+        if (closed || socket.isClosed()) {
+          return;
+        }
+        failures++;
+        log.error("Unable to receive text node invalidations, failed " + failures + " times in a row", e);
+        if (!backOff(failures)) {
+          return;
+        }
+        continue;
+      }
+      failures = 0;
+      ByteBuffer buffer = ByteBuffer.wrap(data, 0, packet.getLength());
+      if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+        continue;
+      }
+      if (buffer.getLong() == senderId.getMostSignificantBits() && buffer.getLong() == senderId.getLeastSignificantBits()) {
+        continue;
+      }
+      String nodeId = new String(data, HEADER_SIZE, packet.getLength() - HEADER_SIZE, UTF8);
+      for (Listener listener : listeners) {
+        try {
+          listener.invalidated(nodeId);
+        } catch (RuntimeException e) {
+          log.error("Unable to invalidate text node " + nodeId, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits before receiving again, doubling the time with each failure.
+   *
+   * @param failures the number of failures in a row
+   * @return {@code false} if the thread has been interrupted
+   */
+  private boolean backOff(int failures) {
+    long millis = Math.min(MIN_BACKOFF_MILLIS << Math.min(failures - 1, 16), MAX_BACKOFF_MILLIS);
+    try {
+      Thread.sleep(millis);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
@@ -16,12 +16,18 @@
 
 package org.eknet.wicket.commons.textstore;
 
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.markup.html.AjaxLink;
 import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.IModel;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.response.StringResponse;
 import org.apache.wicket.util.string.StringValue;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import org.eknet.wicket.commons.components.DivContainer;
 
@@ -29,6 +35,29 @@ import org.eknet.wicket.commons.components.DivContainer;
  * An editable text component that can work in two modes: In {@link Mode#VIEW} mode
  * the component displays its model contents using labels. In {@link Mode#EDIT} the
  * component renders a form where the user can edit the label contents.
+ * <p/>
+ * If a {@link RenderedFragmentCache} is installed, the markup rendered in view mode is
+ * cached and written directly to the response as long as the node does not change. The
+ * components of the view mode are then not created at all. Subclasses whose markup depends
+ * on anything besides the node, the position of the component in the page, the locale,
+ * style and variation must return {@code false} from {@link #isFragmentCacheable()}. Nodes
+ * that have not been modified yet show the default values of the component and are not
+ * cached at all.
+ * <p/>
+ * Since the components of the view mode are not created when the cached markup is used,
+ * their header contributions ({@code renderHead}) are missing from the page then. Subclasses
+ * must either contribute to the header from this component itself, or return {@code false}
+ * from {@link #isFragmentCacheable()}.
+ * <p/>
+ * In view mode the component is stateless, so pages containing only components in view
+ * mode are not stored in the page store. Components added in view mode must therefore be
+ * stateless, too. In edit mode the component is stateful.
+ * <p/>
+ * With {@link #setAjaxEnabled(boolean) Ajax enabled}, the mode can be switched in place
+ * using {@link #switchMode(Mode, AjaxRequestTarget)} or a link created by
+ * {@link #newModeSwitchLink(String)}, which renders only this component again. The edit
+ * form is then submitted using Ajax and switches back to view mode after saving. Since
+ * its markup id is rendered, the view mode markup is not cached then.
  *
  * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
  * @since 18.12.11 13:31
@@ -51,6 +80,10 @@ public abstract class ViewOrEdit extends DivContainer {
   private Mode mode;
   
   private final IModel<TextNodeStore> storeModel;
+
+  private boolean viewCreated;
+  private boolean ajaxEnabled;
+  private transient String cachedMarkup;
   
   public ViewOrEdit(@NotNull IModel<TextNodeStore> storeModel, String id, Mode mode) {
     super(id);
@@ -66,23 +99,201 @@ public abstract class ViewOrEdit extends DivContainer {
     return mode;
   }
 
+  public boolean isAjaxEnabled() {
+    return ajaxEnabled;
+  }
+
+  /**
+   * Enables switching the mode using Ajax, instead of loading the page with
+   * another {@link #MODE_PARAM} parameter.
+   *
+   * @param ajaxEnabled
+   * @return
+   */
+  public ViewOrEdit setAjaxEnabled(boolean ajaxEnabled) {
+    this.ajaxEnabled = ajaxEnabled;
+    setOutputMarkupId(ajaxEnabled);
+    return this;
+  }
+
+  /**
+   * Replaces the components of this component with those of the given mode
+   * and adds it to the target.
+   *
+   * @param mode
+   * @param target
+   */
+  public void switchMode(@NotNull Mode mode, @NotNull AjaxRequestTarget target) {
+    if (!ajaxEnabled) {
+      throw new IllegalStateException("Ajax is not enabled for " + getPageRelativePath());
+    }
+    this.mode = mode;
+    removeAll();
+    getModel().detach();
+    setDefaultModel(newTextNodeModel());
+    viewCreated = false;
+    cachedMarkup = null;
+    getContainer().setVisible(true);
+    if (mode == Mode.EDIT) {
+      setEditMode();
+    } else {
+      createViewMode();
+    }
+    target.add(this);
+  }
+
+  /**
+   * Creates a link that switches this component to the other mode using Ajax.
+   * The link itself is rendered again as well.
+   *
+   * @param id
+   * @return
+   */
+  @NotNull
+  public AjaxLink<Void> newModeSwitchLink(@NotNull String id) {
+    AjaxLink<Void> link = new AjaxLink<Void>(id) {
+      @Override
+      public void onClick(AjaxRequestTarget target) {
+        switchMode(getMode() == Mode.VIEW ? Mode.EDIT : Mode.VIEW, target);
+        target.add(this);
+      }
+    };
+    link.setOutputMarkupId(true);
+    return link;
+  }
+
   @Override
   protected void onInitialize() {
     super.onInitialize();
     setDefaultModel(newTextNodeModel());
     if (getMode() == Mode.EDIT) {
       setEditMode();
-    } else {
-      setViewMode();
+    } else if (findCachedMarkup() == null) {
+      createViewMode();
+    }
+  }
+
+  @Override
+  protected void onBeforeRender() {
+    //once created, the components must be rendered
+    if (getMode() == Mode.VIEW && !viewCreated) {
+      cachedMarkup = findCachedMarkup();
+      if (cachedMarkup == null) {
+        createViewMode();
+      }
+      getContainer().setVisible(cachedMarkup == null);
+    }
+    super.onBeforeRender();
+  }
+
+  @Override
+  protected void onRender() {
+    if (cachedMarkup != null) {
+      getResponse().write(cachedMarkup);
+      cachedMarkup = null;
+      return;
     }
+    RenderedFragmentCache cache = getFragmentCache();
+    if (cache == null) {
+      super.onRender();
+      return;
+    }
+    RequestCycle cycle = getRequestCycle();
+    Response response = cycle.getResponse();
+    StringResponse buffer = new StringResponse();
+    cycle.setResponse(buffer);
+    try {
+      super.onRender();
+    } finally {
+      cycle.setResponse(response);
+    }
+    String markup = buffer.getBuffer().toString();
+    response.write(markup);
+    TextNode node = getModel().getObject();
+    if (isCacheable(node)) {
+      cache.put(node.getId(), node.getVersion(), getFragmentVariant(), markup);
+    }
+  }
+
+  /**
+   * Returns {@code true} in view mode only, where the component does not
+   * need to keep any state between requests.
+   *
+   * @return
+   */
+  @Override
+  protected boolean getStatelessHint() {
+    return getMode() == Mode.VIEW && super.getStatelessHint();
+  }
+
+  /**
+   * Returns whether the markup of this component may be cached in view mode.
+   * It is never cached if the component outputs its markup id.
+   *
+   * @return
+   */
+  protected boolean isFragmentCacheable() {
+    return true;
+  }
+
+  private void createViewMode() {
+    setViewMode();
+    viewCreated = true;
+  }
+
+  @Nullable
+  private RenderedFragmentCache getFragmentCache() {
+    if (getMode() != Mode.VIEW || getOutputMarkupId() || !isFragmentCacheable()) {
+      return null;
+    }
+    return RenderedFragmentCache.get();
+  }
+
+  @Nullable
+  private String findCachedMarkup() {
+    RenderedFragmentCache cache = getFragmentCache();
+    if (cache == null) {
+      return null;
+    }
+    TextNode node = getModel().getObject();
+    return isCacheable(node) ? cache.get(node.getId(), node.getVersion(), getFragmentVariant()) : null;
+  }
+
+  /**
+   * Unmodified nodes are rendered with the default values of this component,
+   * which are not part of the cache key.
+   *
+   * @param node
+   * @return
+   */
+  private boolean isCacheable(@Nullable TextNode node) {
+    return node != null && node.isModified();
+  }
+
+  /**
+   * Returns the part of the fragment cache key that distinguishes the markup
+   * of components rendering the same node. The outer tag of this component is
+   * part of the cached markup, so the key includes the page and the path of
+   * the component.
+   *
+   * @return
+   */
+  protected String getFragmentVariant() {
+    return getPage().getPageClass().getName() + ":" + getPageRelativePath() + ":" + getClass().getName() + ":" + getLocale() + ":" + getStyle() + ":" + getVariation();
   }
 
   public IModel<TextNodeStore> getStoreModel() {
     return storeModel;
   }
 
+  /**
+   * Creates the model of this component. In {@link Mode#VIEW} mode the model
+   * loads a read-only {@link TextNodeSnapshot} of the node.
+   *
+   * @return
+   */
   protected TextNodeModel newTextNodeModel() {
-    return new TextNodeModel(storeModel, getPage().getPageClass());
+    return new TextNodeModel(storeModel, true, true, getMode() == Mode.VIEW, getPage().getPageClass().getName());
   }
 
   protected abstract void setEditMode();
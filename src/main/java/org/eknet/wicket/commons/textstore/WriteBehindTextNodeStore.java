@@ -0,0 +1,486 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Defers writes to another {@link TextNodeStore}. Values set on the nodes of this store
+ * are kept in memory and the node is {@link TextNode#isModified() modified} until they are
+ * written to the underlying store by a background thread. Repeated writes to the same key
+ * are merged, and all changes of a node are written with one
+ * {@link TextNodeStore#updateNode(String, Map)} call.
+ * <p/>
+ * Changes are written at the latest after the configured delay. Call {@link #flush()}
+ * to write them immediately and {@link #shutdown()} when the application stops, which
+ * writes all remaining changes before it returns.
+ * <p/>
+ * While a node has pending changes, its {@link TextNode#getVersion() version} is the
+ * version of the underlying node plus one, which is the version it gets when the changes
+ * are written with one update. Version keyed caches therefore see the pending changes
+ * as a new version.
+ * <p/>
+ * Only unconditional writes are deferred. An {@link #updateNode(String, long, Map) update}
+ * with an expected version, as done by {@link StagedTextNodeModel} when a form of a
+ * {@link TextNodeFormPanel} is submitted, must check the version against the underlying
+ * store. It writes the pending changes of the node and then the update itself
+ * synchronously, so form submits still wait for the underlying store and cost the same
+ * as without this store.
+ * <p/>
+ * The changes of a node are written by one thread at a time, so a slow write can never
+ * overwrite a later one. If writing fails, the changes are kept and merged with the changes
+ * made in the meantime, which take precedence.
+ * <p/>
+ * Changes are lost if the JVM terminates before they have been flushed.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 17.10.26 20:58
+ */
+public class WriteBehindTextNodeStore extends DelegatingTextNodeStore {
+
+  private static final Logger log = LoggerFactory.getLogger(WriteBehindTextNodeStore.class);
+
+  private final ConcurrentMap<String, PendingChanges> pending = new ConcurrentHashMap<String, PendingChanges>();
+
+  private final long maxDelayMillis;
+  private final ScheduledThreadPoolExecutor executor;
+  private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+  private final Object[] flushLocks = new Object[32];
+
+  /**
+   * Creates a new store that writes changes to {@code delegate}.
+   *
+   * @param delegate the store to write to
+   * @param maxDelay the maximum time changes are kept before they are written
+   * @param unit the unit of {@code maxDelay}
+   */
+  public WriteBehindTextNodeStore(@NotNull TextNodeStore delegate, long maxDelay, @NotNull TimeUnit unit) {
+    super(delegate);
+    this.maxDelayMillis = unit.toMillis(maxDelay);
+    this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "textnode-write-behind");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    //shutdown() flushes itself instead of waiting for the scheduled flush
+    this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    for (int i = 0; i < flushLocks.length; i++) {
+      flushLocks[i] = new Object();
+    }
+  }
+
+  @NotNull
+  @Override
+  public TextNode createTextNode(@NotNull String id) {
+    return new WriteBehindNode(delegate.createTextNode(id));
+  }
+
+  @NotNull
+  @Override
+  public TextNode getOrCreateNode(@NotNull String id) {
+    return new WriteBehindNode(delegate.getOrCreateNode(id));
+  }
+
+  @Nullable
+  @Override
+  public TextNode getTextNode(@NotNull String id) {
+    TextNode node = delegate.getTextNode(id);
+    return node != null ? new WriteBehindNode(node) : null;
+  }
+
+  @NotNull
+  @Override
+  public Map<String, TextNode> getTextNodes(@NotNull Collection<String> ids) {
+    Map<String, TextNode> nodes = new LinkedHashMap<String, TextNode>();
+    for (TextNode node : delegate.getTextNodes(ids).values()) {
+      nodes.put(node.getId(), new WriteBehindNode(node));
+    }
+    return nodes;
+  }
+
+  /**
+   * Returns the snapshot of the underlying store, unless there are pending changes
+   * for the node. In that case a new snapshot including them is created.
+   *
+   * @param id
+   * @return
+   */
+  @Nullable
+  @Override
+  public TextNodeSnapshot getSnapshot(@NotNull String id) {
+    if (pending.containsKey(id)) {
+      TextNode node = getTextNode(id);
+      return node != null ? TextNodeSnapshot.of(node) : null;
+    }
+    return delegate.getSnapshot(id);
+  }
+
+  /**
+   * Reads the snapshots of all nodes without pending changes from the underlying
+   * store at once, see {@link #getSnapshot(String)}.
+   *
+   * @param ids
+   * @return
+   */
+  @NotNull
+  @Override
+  public Map<String, TextNodeSnapshot> getSnapshots(@NotNull Collection<String> ids) {
+    Set<String> unchanged = new LinkedHashSet<String>();
+    for (String id : ids) {
+      if (!pending.containsKey(id)) {
+        unchanged.add(id);
+      }
+    }
+    Map<String, TextNodeSnapshot> stored = delegate.getSnapshots(unchanged);
+    Map<String, TextNodeSnapshot> snapshots = new LinkedHashMap<String, TextNodeSnapshot>();
+    for (String id : ids) {
+      TextNodeSnapshot snapshot = unchanged.contains(id) ? stored.get(id) : getSnapshot(id);
+      if (snapshot != null) {
+        snapshots.put(id, snapshot);
+      }
+    }
+    return snapshots;
+  }
+
+  @Override
+  public void updateNode(@NotNull String id, @NotNull Map<String, String> changes) {
+    for (Map.Entry<String, String> change : changes.entrySet()) {
+      write(id, change.getKey(), change.getValue());
+    }
+  }
+
+  /**
+   * Defers the changes if {@code expectedVersion} is {@link TextNode#ANY_VERSION} and
+   * returns {@link TextNode#ANY_VERSION} then, because the new version is not known yet.
+   * Otherwise, all pending changes of the node are written first and then the given
+   * changes are applied to the underlying store immediately, so that the version can
+   * be checked. No other flush of the node can run in between. Since a node with
+   * pending changes reports the version it has after they are written, a version read
+   * from a node of this store matches unless the node has been changed in the meantime.
+   *
+   * @param id
+   * @param expectedVersion
+   * @param changes
+   * @return
+   */
+  @Override
+  public long updateNode(@NotNull String id, long expectedVersion, @NotNull Map<String, String> changes) {
+    if (expectedVersion == TextNode.ANY_VERSION) {
+      updateNode(id, changes);
+      return TextNode.ANY_VERSION;
+    }
+    synchronized (flushLock(id)) {
+      flush(id);
+      return delegate.updateNode(id, expectedVersion, changes);
+    }
+  }
+
+  /**
+   * Returns the number of nodes with changes that have not been written yet.
+   *
+   * @return
+   */
+  public int getPendingCount() {
+    return pending.size();
+  }
+
+  /**
+   * Writes all pending changes to the underlying store. If writing a node
+   * fails, its changes are kept and written with the next flush.
+   */
+  public void flush() {
+    RuntimeException error = null;
+    for (String id : new ArrayList<String>(pending.keySet())) {
+      try {
+        flush(id);
+      } catch (RuntimeException e) {
+        if (error == null) {
+          error = e;
+        }
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Writes the pending changes of the given node to the underlying store. If
+   * writing fails, the changes are kept. Flushes of the same node are serialized.
+   *
+   * @param id
+   */
+  public void flush(@NotNull String id) {
+    synchronized (flushLock(id)) {
+      PendingChanges changes = pending.get(id);
+      if (changes == null) {
+        return;
+      }
+      Map<String, String> values = changes.close();
+      try {
+        delegate.updateNode(id, values);
+        pending.remove(id, changes);
+      } catch (RuntimeException e) {
+        restore(id, changes);
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Stops the background thread and writes all pending changes. A flush
+   * that is currently running is awaited.
+   */
+  public void shutdown() {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(30, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  private Object flushLock(String id) {
+    return flushLocks[(id.hashCode() & 0x7fffffff) % flushLocks.length];
+  }
+
+  /**
+   * Puts the changes that could not be written back. Changes that have been made
+   * while they were written replace the failed values of the same keys.
+   *
+   * @param id
+   * @param failed
+   */
+  private void restore(String id, PendingChanges failed) {
+    while (true) {
+      PendingChanges current = pending.get(id);
+      PendingChanges merged = failed.reopen();
+      if (current == null) {
+        if (pending.putIfAbsent(id, merged) == null) {
+          return;
+        }
+      } else {
+        if (current != failed) {
+          merged.putAll(current.close());
+        }
+        if (pending.replace(id, current, merged)) {
+          return;
+        }
+      }
+    }
+  }
+
+  private void write(String id, String key, String value) {
+    if (executor.isShutdown()) {
+      throw new IllegalStateException("The store has been shut down");
+    }
+    while (true) {
+      PendingChanges changes = pending.get(id);
+      if (changes == null) {
+        changes = new PendingChanges();
+        changes.put(key, value);
+        if (pending.putIfAbsent(id, changes) == null) {
+          break;
+        }
+      } else if (changes.put(key, value)) {
+        break;
+      } else {
+        //the changes are currently being flushed, keep them for reading
+        PendingChanges next = changes.reopen();
+        next.put(key, value);
+        if (pending.replace(id, changes, next)) {
+          break;
+        }
+      }
+    }
+    scheduleFlush();
+  }
+
+  private void scheduleFlush() {
+    if (flushScheduled.compareAndSet(false, true)) {
+      executor.schedule(new Runnable() {
+        @Override
+        public void run() {
+          flushScheduled.set(false);
+          try {
+            flush();
+          } catch (RuntimeException e) {
+            log.error("Unable to write text nodes. Retrying with next flush.", e);
+            scheduleFlush();
+          }
+        }
+      }, maxDelayMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * The changes of one node that have not been written yet. A {@code null}
+   * value marks a removed key. Once closed for flushing, no further changes
+   * are accepted.
+   */
+  private static final class PendingChanges {
+    private final Map<String, String> values = new LinkedHashMap<String, String>();
+    private boolean closed;
+
+    synchronized boolean put(String key, String value) {
+      if (closed) {
+        return false;
+      }
+      values.remove(key);
+      values.put(key, value);
+      return true;
+    }
+
+    synchronized void putAll(Map<String, String> changes) {
+      for (Map.Entry<String, String> change : changes.entrySet()) {
+        values.remove(change.getKey());
+        values.put(change.getKey(), change.getValue());
+      }
+    }
+
+    synchronized boolean contains(String key) {
+      return values.containsKey(key);
+    }
+
+    synchronized String get(String key) {
+      return values.get(key);
+    }
+
+    synchronized void applyTo(Set<String> keys) {
+      for (Map.Entry<String, String> change : values.entrySet()) {
+        if (change.getValue() == null) {
+          keys.remove(change.getKey());
+        } else {
+          keys.add(change.getKey());
+        }
+      }
+    }
+
+    synchronized Map<String, String> close() {
+      closed = true;
+      return new LinkedHashMap<String, String>(values);
+    }
+
+    synchronized PendingChanges reopen() {
+      PendingChanges next = new PendingChanges();
+      next.values.putAll(values);
+      return next;
+    }
+  }
+
+  private final class WriteBehindNode extends AbstractTextNode {
+
+    private final TextNode node;
+
+    private WriteBehindNode(TextNode node) {
+      this.node = node;
+    }
+
+    @Override
+    public boolean isCreated() {
+      return node.isCreated();
+    }
+
+    @Override
+    public boolean isModified() {
+      return pending.containsKey(getId()) || node.isModified();
+    }
+
+    /**
+     * Returns the version of the underlying node, plus one if there are pending
+     * changes. A running flush of the node is awaited, so the version is never
+     * counted twice for changes that have just been written.
+     *
+     * @return
+     */
+    @Override
+    public long getVersion() {
+      String id = getId();
+      synchronized (flushLock(id)) {
+        long version = node.getVersion();
+        return pending.containsKey(id) ? version + 1 : version;
+      }
+    }
+
+    @NotNull
+    @Override
+    public String getId() {
+      return node.getId();
+    }
+
+    @NotNull
+    @Override
+    public Set<String> getKeys() {
+      Set<String> keys = new HashSet<String>(node.getKeys());
+      PendingChanges changes = pending.get(getId());
+      if (changes != null) {
+        changes.applyTo(keys);
+      }
+      return keys;
+    }
+
+    @Nullable
+    @Override
+    public String getText(@NotNull String key) {
+      PendingChanges changes = pending.get(getId());
+      if (changes != null && changes.contains(key)) {
+        return changes.get(key);
+      }
+      return node.getText(key);
+    }
+
+    @Override
+    public int getTextSize(@NotNull String key) {
+      PendingChanges changes = pending.get(getId());
+      if (changes != null && changes.contains(key)) {
+        return super.getTextSize(key);
+      }
+      return node.getTextSize(key);
+    }
+
+    @Override
+    protected void setProperty(@NotNull String key, @NotNull String value) {
+      write(getId(), key, value);
+    }
+
+    @Override
+    public void removeKey(@NotNull String key) {
+      write(getId(), key, null);
+    }
+  }
+}
@@ -21,6 +21,9 @@ import org.apache.wicket.Component;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.eknet.wicket.commons.ComponentSupplier;
+import org.eknet.wicket.commons.ComponentSuppliers;
+import org.eknet.wicket.commons.FreezableSupplier;
+import org.eknet.wicket.commons.SharedSupplier;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -62,7 +65,7 @@ public class SubcolumnDef extends Panel {
     return new Builder();
   }
 
-  public static class Builder implements ComponentSupplier<SubcolumnDef> {
+  public static class Builder implements FreezableSupplier<SubcolumnDef> {
 
     private ColumnDef columnDef;
     private ComponentSupplier<?> content;
@@ -98,7 +101,16 @@ public class SubcolumnDef extends Panel {
     public Builder setContentRight(ComponentSupplier<?> content) {
       return setContent(content, ContentAlign.RIGHT);
     }
-    
+
+    @NotNull
+    @Override
+    public SharedSupplier<SubcolumnDef> freeze() {
+      Builder copy = new Builder();
+      copy.columnDef = columnDef;
+      copy.content = content != null ? ComponentSuppliers.freeze(content) : null;
+      copy.align = align;
+      return SharedSupplier.of(copy);
+    }
   }
   public enum ColumnDef {
     
@@ -19,8 +19,13 @@ package org.eknet.wicket.commons.yaml;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.markup.repeater.RepeatingView;
 import org.eknet.wicket.commons.ComponentSupplier;
+import org.eknet.wicket.commons.ComponentSuppliers;
+import org.eknet.wicket.commons.FreezableSupplier;
+import org.eknet.wicket.commons.SharedSupplier;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -55,11 +60,18 @@ public class Subcolumns extends Panel {
     return new Builder();
   }
   
-  public static class Builder implements ComponentSupplier<Subcolumns> {
+  public static class Builder implements FreezableSupplier<Subcolumns> {
+
+    private final List<ComponentSupplier<? extends SubcolumnDef>> columns;
+
+    public Builder() {
+      this(new LinkedList<ComponentSupplier<? extends SubcolumnDef>>());
+    }
+
+    private Builder(List<ComponentSupplier<? extends SubcolumnDef>> columns) {
+      this.columns = columns;
+    }
 
-    private List<ComponentSupplier<? extends SubcolumnDef>> columns =
-        new LinkedList<ComponentSupplier<? extends SubcolumnDef>>();
-    
     @NotNull
     @Override
     public Subcolumns get(@NotNull String id) {
@@ -74,5 +86,16 @@ public class Subcolumns extends Panel {
       this.columns.add(columnDef);
       return this;
     }
+
+    @NotNull
+    @Override
+    public SharedSupplier<Subcolumns> freeze() {
+      List<ComponentSupplier<? extends SubcolumnDef>> frozen =
+          new ArrayList<ComponentSupplier<? extends SubcolumnDef>>(columns.size());
+      for (ComponentSupplier<? extends SubcolumnDef> column : columns) {
+        frozen.add(ComponentSuppliers.freeze(column));
+      }
+      return SharedSupplier.of(new Builder(Collections.unmodifiableList(frozen)));
+    }
   }
 }
@@ -18,11 +18,11 @@ package org.eknet.wicket.commons.yaml;
 
 import org.apache.wicket.AttributeModifier;
 import org.apache.wicket.Component;
-import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.model.IModel;
 import org.eknet.wicket.commons.ComponentSupplier;
 import org.eknet.wicket.commons.ComponentSuppliers;
+import org.eknet.wicket.commons.LabelSuppliers;
 import org.eknet.wicket.commons.components.navlist.Navigation;
 
 /**
@@ -49,7 +49,7 @@ public class VerticalListNav extends Panel {
   }
 
   public void setTitle(IModel<?> titleModel) {
-    setTitle(ComponentSuppliers.provide(Label.class, titleModel));
+    setTitle(LabelSuppliers.create(titleModel));
   }
 
   public Navigation getRootNavigation() {
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons;
+
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.nio.CharBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 12:05
+ */
+public class ConstructorCacheTest {
+
+  @Test
+  public void testExactMatch() throws Exception {
+    Constructor<Target> c = ConstructorCache.get(Target.class, String.class, Integer.class);
+    assertArrayEquals(new Class<?>[] { String.class, Integer.class }, c.getParameterTypes());
+    assertSame(c, ConstructorCache.get(Target.class, String.class, Integer.class));
+  }
+
+  @Test
+  public void testMostSpecific() throws Exception {
+    Constructor<Target> c = ConstructorCache.get(Target.class, String.class, Long.class);
+    assertArrayEquals(new Class<?>[] { String.class, Number.class }, c.getParameterTypes());
+    c = ConstructorCache.get(Target.class, String.class, int.class);
+    assertArrayEquals(new Class<?>[] { String.class, Integer.class }, c.getParameterTypes());
+  }
+
+  @Test(expected = NoSuchMethodException.class)
+  public void testNoMatch() throws Exception {
+    ConstructorCache.get(Target.class, String.class, Boolean.class);
+  }
+
+  @Test
+  public void testAmbiguous() throws Exception {
+    try {
+      ConstructorCache.get(Ambiguous.class, String.class, String.class);
+      fail("ambiguous constructors must be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    // still ambiguous on the second call, nothing was cached
+    try {
+      ConstructorCache.get(Ambiguous.class, String.class, String.class);
+      fail("ambiguous constructors must be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    Constructor<Ambiguous> c = ConstructorCache.get(Ambiguous.class, String.class, CharBuffer.class);
+    assertArrayEquals(new Class<?>[] { String.class, CharSequence.class }, c.getParameterTypes());
+  }
+
+  public static class Target {
+    public Target(String id, Number value) {
+    }
+
+    public Target(String id, Integer value) {
+    }
+  }
+
+  public static class Ambiguous {
+    public Ambiguous(String id, CharSequence value) {
+    }
+
+    public Ambiguous(String id, Serializable value) {
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons;
+
+import org.apache.wicket.Component;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 12:21
+ */
+public class SharedSupplierTest {
+
+  private final static SharedSupplier<Component> first = SharedSupplier.of(new NullSupplier()).share(SharedSupplierTest.class, "first");
+
+  @Test
+  public void testSerializedAsReference() throws Exception {
+    assertEquals("first", first.getName());
+    assertSame(first, copy(first));
+    SharedSupplier<Component> unshared = SharedSupplier.of(new NullSupplier());
+    assertNull(unshared.getName());
+    assertNotSame(unshared, copy(unshared));
+  }
+
+  @Test
+  public void testDuplicateNamesRejected() {
+    try {
+      SharedSupplier.of(new NullSupplier()).share(SharedSupplierTest.class, "first");
+      fail("a name can be shared only once per owner");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    SharedSupplier<Component> other = SharedSupplier.of(new NullSupplier()).share(NullSupplier.class, "first");
+    assertNotSame(first, other);
+  }
+
+  private static Object copy(Object object) throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(object);
+    out.close();
+    return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+  }
+
+  private static class NullSupplier implements ComponentSupplier<Component> {
+    @NotNull
+    @Override
+    public Component get(@NotNull String id) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.apt;
+
+import org.eknet.wicket.commons.ComponentSupplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compiles annotated components with the {@link SupplierProcessor} and checks
+ * the generated suppliers.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 14:20
+ */
+public class SupplierProcessorTest {
+
+  private final static String myLabel = "package test;\n"
+      + "import org.apache.wicket.markup.html.basic.Label;\n"
+      + "import org.apache.wicket.model.IModel;\n"
+      + "import org.eknet.wicket.commons.apt.GenerateSupplier;\n"
+      + "public class MyLabel extends Label {\n"
+      + "  @GenerateSupplier\n"
+      + "  public MyLabel(String id, IModel<?> model) {\n"
+      + "    super(id, model);\n"
+      + "  }\n"
+      + "}\n";
+
+  private final static String usage = "package test;\n"
+      + "import org.apache.wicket.model.Model;\n"
+      + "import org.eknet.wicket.commons.ComponentSupplier;\n"
+      + "public class Usage {\n"
+      + "  public static ComponentSupplier<MyLabel> supplier() {\n"
+      + "    return MyLabelSuppliers.create(Model.of(\"text\"));\n"
+      + "  }\n"
+      + "}\n";
+
+  private final static String withoutId = "package test;\n"
+      + "import org.apache.wicket.markup.html.basic.Label;\n"
+      + "import org.apache.wicket.model.IModel;\n"
+      + "import org.eknet.wicket.commons.apt.GenerateSupplier;\n"
+      + "public class NoIdLabel extends Label {\n"
+      + "  @GenerateSupplier\n"
+      + "  public NoIdLabel(IModel<?> model) {\n"
+      + "    super(\"label\", model);\n"
+      + "  }\n"
+      + "}\n";
+
+  private File dir;
+  private DiagnosticCollector<JavaFileObject> diagnostics;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = File.createTempFile("suppliers", "");
+    assertTrue(dir.delete() && dir.mkdir());
+    diagnostics = new DiagnosticCollector<JavaFileObject>();
+  }
+
+  @After
+  public void tearDown() {
+    delete(dir);
+  }
+
+  @Test
+  public void testGeneratesSuppliers() throws Exception {
+    assertTrue(diagnostics.getDiagnostics().toString(), compile("MyLabel", myLabel, "Usage", usage));
+    assertTrue(new File(dir, "test/MyLabelSuppliers.java").isFile());
+
+    URLClassLoader loader = new URLClassLoader(new URL[] { dir.toURI().toURL() }, getClass().getClassLoader());
+    Class<?> suppliers = loader.loadClass("test.MyLabelSuppliers");
+    Method create = suppliers.getMethod("create", Class.forName("org.apache.wicket.model.IModel"));
+    assertEquals(ComponentSupplier.class, create.getReturnType());
+    Object supplier = loader.loadClass("test.Usage").getMethod("supplier").invoke(null);
+    assertTrue(supplier instanceof ComponentSupplier);
+  }
+
+  @Test
+  public void testReportsConstructorWithoutId() throws IOException {
+    assertFalse(compile("NoIdLabel", withoutId));
+    List<String> errors = new ArrayList<String>();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        errors.add(diagnostic.getMessage(null));
+      }
+    }
+    assertTrue(errors.toString(), errors.contains("The first argument must be the component id"));
+    assertFalse(new File(dir, "test/NoIdLabelSuppliers.java").exists());
+  }
+
+  /**
+   * Writes the sources, given as pairs of class name and source code, to the
+   * package {@code test} and compiles them with the processor.
+   *
+   * @param sources
+   * @return {@code true} if there were no errors
+   * @throws IOException
+   */
+  private boolean compile(String... sources) throws IOException {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assertNotNull("The tests must run on a JDK", compiler);
+    File pkg = new File(dir, "test");
+    assertTrue(pkg.mkdirs());
+    List<File> files = new ArrayList<File>();
+    for (int i = 0; i < sources.length; i += 2) {
+      File file = new File(pkg, sources[i] + ".java");
+      Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+      try {
+        out.write(sources[i + 1]);
+      } finally {
+        out.close();
+      }
+      files.add(file);
+    }
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+    try {
+      List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"),
+          "-d", dir.getPath(), "-s", dir.getPath(), "-encoding", "UTF-8");
+      JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+          fileManager.getJavaFileObjectsFromFiles(files));
+      task.setProcessors(Collections.singletonList(new SupplierProcessor()));
+      return task.call();
+    } finally {
+      fileManager.close();
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.components;
+
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.util.tester.WicketTester;
+import org.eknet.wicket.commons.ComponentSupplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 14:28
+ */
+public class FormattedLabelTest {
+
+  private WicketTester tester;
+
+  @Before
+  public void setUp() {
+    tester = new WicketTester();
+  }
+
+  @After
+  public void tearDown() {
+    tester.destroy();
+  }
+
+  @Test
+  public void testBuilderPassesModels() {
+    IModel<String> text = Model.of("text");
+    IModel<String> format = Model.of("<b>%s</b>");
+    FormattedLabel.Builder builder = FormattedLabel.create().withText(text).withFormat(format);
+    assertSame(text, builder.get("first").getDefaultModel());
+    assertSame(format, builder.get("second").getFormat());
+  }
+
+  @Test
+  public void testFrozenBuilderCopiesPlainModels() {
+    IModel<String> text = Model.of("text");
+    ComponentSupplier<FormattedLabel> frozen = FormattedLabel.create().withText(text).asHeadline(2).freeze();
+    FormattedLabel first = frozen.get("first");
+    FormattedLabel second = frozen.get("second");
+    assertNotSame(text, first.getDefaultModel());
+    assertNotSame(first.getDefaultModel(), second.getDefaultModel());
+    assertNotSame(first.getFormat(), second.getFormat());
+    assertEquals("text", first.getDefaultModelObject());
+    assertEquals("<h2>%s</h2>", second.getFormat().getObject());
+  }
+}
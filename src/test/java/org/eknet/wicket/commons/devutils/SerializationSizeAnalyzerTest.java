@@ -0,0 +1,238 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.devutils;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.util.tester.WicketTester;
+import org.eknet.wicket.commons.ComponentSupplier;
+import org.eknet.wicket.commons.textstore.AbstractTextNode;
+import org.eknet.wicket.commons.textstore.TextNode;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 12:34
+ */
+public class SerializationSizeAnalyzerTest {
+
+  private final static int largeText = 10000;
+
+  private WicketTester tester;
+
+  @Before
+  public void setUp() {
+    tester = new WicketTester();
+  }
+
+  @After
+  public void tearDown() {
+    tester.destroy();
+  }
+
+  @Test
+  public void testSizes() {
+    SerializationSizeAnalyzer.Report report = SerializationSizeAnalyzer.analyze(new LabelPage());
+    assertTrue(report.getFindings().toString(), report.getFindings().isEmpty());
+    assertTrue(report.getTotalSize() > largeText);
+
+    Map<String, Long> components = report.getComponentSizes();
+    assertTrue(components.containsKey("<LabelPage>"));
+    assertEquals("large", components.keySet().iterator().next());
+    assertTrue(components.get("large") > largeText);
+    assertTrue(components.get("small") < largeText);
+    // components of the page are not counted again
+    assertTrue(components.get("<LabelPage>") < largeText);
+
+    String modelClass = Model.class.getName();
+    assertEquals(2, report.getClassCount(modelClass));
+    assertTrue(report.getClassSizes().get(modelClass) > largeText);
+    assertEquals(0, report.getClassCount(String.class.getName()));
+  }
+
+  @Test
+  public void testBudgets() {
+    SerializationSizeAnalyzer.Report report = SerializationSizeAnalyzer.analyze(new LabelPage());
+    report.requireNoFindings()
+        .requireTotalSizeBelow(report.getTotalSize())
+        .requireComponentSizeBelow("small", largeText);
+    try {
+      report.requireTotalSizeBelow(report.getTotalSize() - 1);
+      fail("total size exceeds the budget");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("large"));
+    }
+    try {
+      report.requireComponentSizeBelow("large", largeText);
+      fail("component size exceeds the budget");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    try {
+      report.requireComponentSizeBelow("missing", largeText);
+      fail("there is no such component");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFindings() {
+    SerializationSizeAnalyzer.Report report = SerializationSizeAnalyzer.analyze(new FindingsPage());
+    List<String> findings = report.getFindings();
+    assertTrue(findings.toString(), contains(findings, "references the page " + FindingsPage.class.getName()));
+    assertTrue(findings.toString(), contains(findings, "references the text node node1"));
+    assertTrue(findings.toString(), contains(findings, "(" + Label.class.getName() + ") that is not part of the page"));
+    assertTrue(findings.toString(), contains(findings, "cannot be serialized"));
+    assertEquals(1, report.getClassCount(NodeModel.class.getName()));
+    try {
+      report.requireNoFindings();
+      fail("the page has findings");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("Findings:"));
+    }
+  }
+
+  private static boolean contains(List<String> findings, String text) {
+    for (String finding : findings) {
+      if (finding.contains(text)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String repeat(char c, int count) {
+    StringBuilder buf = new StringBuilder(count);
+    for (int i = 0; i < count; i++) {
+      buf.append(c);
+    }
+    return buf.toString();
+  }
+
+  public static class LabelPage extends WebPage {
+    public LabelPage() {
+      add(new Label("large", repeat('x', largeText)));
+      add(new Label("small", "small"));
+    }
+  }
+
+  public static class FindingsPage extends WebPage {
+
+    private final ComponentSupplier<Label> supplier;
+
+    public FindingsPage() {
+      // an anonymous supplier references the page it is created in
+      supplier = new ComponentSupplier<Label>() {
+        @NotNull
+        @Override
+        public Label get(@NotNull String id) {
+          return new Label(id);
+        }
+      };
+      add(new Label("node", new NodeModel(new SimpleNode("node1"))));
+      add(new Label("foreign", new ComponentModel(new Label("other"))));
+      add(new Label("broken", new ComponentModel(new Object())));
+    }
+  }
+
+  public static class NodeModel extends AbstractReadOnlyModel<String> {
+
+    private final TextNode node;
+
+    public NodeModel(TextNode node) {
+      this.node = node;
+    }
+
+    @Override
+    public String getObject() {
+      return node.getText("text");
+    }
+  }
+
+  public static class ComponentModel extends AbstractReadOnlyModel<String> {
+
+    private final Object value;
+
+    public ComponentModel(Object value) {
+      this.value = value;
+    }
+
+    @Override
+    public String getObject() {
+      return value instanceof Component ? ((Component) value).getId() : String.valueOf(value);
+    }
+  }
+
+  private static class SimpleNode extends AbstractTextNode implements Serializable {
+
+    private final String id;
+
+    private SimpleNode(String id) {
+      this.id = id;
+    }
+
+    @NotNull
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @Override
+    protected void setProperty(@NotNull String key, @NotNull String value) {
+    }
+
+    @Override
+    public boolean isCreated() {
+      return false;
+    }
+
+    @Override
+    public boolean isModified() {
+      return false;
+    }
+
+    @NotNull
+    @Override
+    public Set<String> getKeys() {
+      return Collections.singleton(UUID_KEY);
+    }
+
+    @Override
+    public String getText(@NotNull String key) {
+      return null;
+    }
+
+    @Override
+    public void removeKey(@NotNull String key) {
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.devutils;
+
+import org.apache.wicket.util.tester.WicketTester;
+import org.eknet.wicket.commons.textstore.HeadlineTestPage;
+import org.eknet.wicket.commons.textstore.ViewOrEdit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 11:52
+ */
+public class StatelessViewCheckerTest {
+
+  private WicketTester tester;
+
+  @Before
+  public void setUp() {
+    tester = new WicketTester();
+  }
+
+  @After
+  public void tearDown() {
+    tester.destroy();
+  }
+
+  @Test
+  public void testViewPageIsStateless() {
+    HeadlineTestPage page = tester.startPage(new HeadlineTestPage(ViewOrEdit.Mode.VIEW));
+    assertTrue(StatelessViewChecker.isViewPage(page));
+    assertTrue(page.isPageStateless());
+    StatelessViewChecker.check(page);
+  }
+
+  @Test
+  public void testEditPageIsNotChecked() {
+    HeadlineTestPage page = tester.startPage(new HeadlineTestPage(ViewOrEdit.Mode.EDIT));
+    assertFalse(StatelessViewChecker.isViewPage(page));
+    StatelessViewChecker.check(page);
+  }
+
+  @Test
+  public void testStatefulViewPage() {
+    HeadlineTestPage page = tester.startPage(new HeadlineTestPage(ViewOrEdit.Mode.VIEW).addStatefulLink());
+    assertTrue(StatelessViewChecker.isViewPage(page));
+    try {
+      StatelessViewChecker.check(page);
+      fail("The page with a link is stateful");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("link"));
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 13:31
+ */
+public class AbstractTextNodeStoreTest {
+
+  @Test
+  public void testUpdateIncrementsVersion() {
+    PropertyStore store = new PropertyStore();
+    assertEquals(1, store.updateNode("a", 0, Collections.singletonMap("title", "first")));
+    assertEquals(2, store.updateNode("a", 1, Collections.singletonMap("title", "second")));
+    store.updateNode("a", Collections.singletonMap("body", "text"));
+    TextNode node = store.requireTextNode("a");
+    assertEquals(3, node.getVersion());
+    assertEquals("second", node.getText("title"));
+    assertEquals("text", node.getText("body"));
+  }
+
+  @Test
+  public void testStaleUpdateIsRejected() {
+    PropertyStore store = new PropertyStore();
+    store.updateNode("a", 0, Collections.singletonMap("title", "first"));
+    try {
+      store.updateNode("a", 0, Collections.singletonMap("title", "stale"));
+      fail("the node is at version 1");
+    } catch (StaleTextNodeException e) {
+      // expected
+    }
+    assertEquals("first", store.requireTextNode("a").getText("title"));
+    assertEquals(1, store.requireTextNode("a").getVersion());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReservedKeys() {
+    new PropertyStore().updateNode("a", Collections.singletonMap(AbstractTextNode.VERSION_KEY, "7"));
+  }
+
+  @Test
+  public void testListenersAreNotified() {
+    PropertyStore store = new PropertyStore();
+    final List<TextNodeEvent> events = new ArrayList<TextNodeEvent>();
+    store.addListener(new TextNodeListener() {
+      @Override
+      public void onEvents(@NotNull List<TextNodeEvent> batch) {
+        events.addAll(batch);
+      }
+    });
+    store.updateNode("a", Collections.singletonMap("title", "first"));
+    Map<String, String> changes = new HashMap<String, String>();
+    changes.put("title", null);
+    changes.put("body", "text");
+    store.updateNode("a", 1, changes);
+
+    assertEquals(4, events.size());
+    assertEquals(TextNodeEvent.Type.CREATED, events.get(0).getType());
+    assertEquals(TextNodeEvent.Type.CHANGED, events.get(1).getType());
+    assertEquals(0, events.get(1).getOldVersion());
+    assertEquals(1, events.get(1).getNewVersion());
+    assertEquals(TextNodeEvent.Type.CHANGED, events.get(2).getType());
+    assertEquals(TextNodeEvent.Type.KEY_REMOVED, events.get(3).getType());
+    assertEquals(2, events.get(3).getNewVersion());
+  }
+
+  /**
+   * A store that keeps the values of a node in a map and leaves versions and
+   * events to {@link AbstractTextNodeStore}, like stores written before nodes
+   * had versions.
+   */
+  private static class PropertyStore extends AbstractTextNodeStore {
+
+    private final ConcurrentMap<String, PropertyNode> nodes = new ConcurrentHashMap<String, PropertyNode>();
+
+    @NotNull
+    @Override
+    public TextNode createTextNode(@NotNull String id) {
+      PropertyNode node = new PropertyNode(id);
+      if (nodes.putIfAbsent(id, node) != null) {
+        throw new IllegalArgumentException("A node with id '" + id + "' already exists");
+      }
+      return node;
+    }
+
+    @Nullable
+    @Override
+    public TextNode getTextNode(@NotNull String id) {
+      return nodes.get(id);
+    }
+  }
+
+  private static class PropertyNode extends AbstractTextNode {
+
+    private final Map<String, String> values = new ConcurrentHashMap<String, String>();
+
+    private PropertyNode(String id) {
+      values.put(UUID_KEY, id);
+    }
+
+    @Override
+    public boolean isCreated() {
+      return values.size() == 1;
+    }
+
+    @Override
+    public boolean isModified() {
+      return values.size() > 1;
+    }
+
+    @NotNull
+    @Override
+    public Set<String> getKeys() {
+      return new HashSet<String>(values.keySet());
+    }
+
+    @Nullable
+    @Override
+    public String getText(@NotNull String key) {
+      return values.get(key);
+    }
+
+    @Override
+    protected void setProperty(@NotNull String key, @NotNull String value) {
+      values.put(key, value);
+    }
+
+    @Override
+    public void removeKey(@NotNull String key) {
+      values.remove(key);
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 10:48
+ */
+public class AbstractTextNodeTest {
+
+  @Test
+  public void testDefaultVersion() {
+    SimpleNode node = new SimpleNode("a");
+    assertEquals(0, node.getVersion());
+    node.setText(AbstractTextNode.VERSION_KEY, "5");
+    assertEquals(5, node.getVersion());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testInvalidVersion() {
+    SimpleNode node = new SimpleNode("a");
+    node.setText(AbstractTextNode.VERSION_KEY, "five");
+    node.getVersion();
+  }
+
+  @Test
+  public void testDefaultSnapshots() {
+    MemoryTextNodeStore store = new MemoryTextNodeStore();
+    store.createTextNode("a").setText("title", "A");
+    store.createTextNode("b").setText("title", "B");
+
+    Map<String, TextNodeSnapshot> snapshots = store.getSnapshots(Arrays.asList("a", "b", "c"));
+    assertEquals(2, snapshots.size());
+    assertEquals("A", snapshots.get("a").getText("title"));
+    assertEquals("B", snapshots.get("b").getText("title"));
+    assertFalse(snapshots.containsKey("c"));
+  }
+
+  /**
+   * A node that only implements the abstract methods.
+   */
+  private static class SimpleNode extends AbstractTextNode {
+    private final Map<String, String> values = new HashMap<String, String>();
+
+    private SimpleNode(String id) {
+      values.put(UUID_KEY, id);
+    }
+
+    @Override
+    protected void setProperty(@NotNull String key, @NotNull String value) {
+      values.put(key, value);
+    }
+
+    @Override
+    public boolean isCreated() {
+      return false;
+    }
+
+    @Override
+    public boolean isModified() {
+      return false;
+    }
+
+    @NotNull
+    @Override
+    public Set<String> getKeys() {
+      return new HashSet<String>(values.keySet());
+    }
+
+    @Override
+    public String getText(@NotNull String key) {
+      return values.get(key);
+    }
+
+    @Override
+    public void removeKey(@NotNull String key) {
+      values.remove(key);
+    }
+  }
+}
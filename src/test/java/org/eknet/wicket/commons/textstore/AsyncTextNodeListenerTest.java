@@ -0,0 +1,120 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 13:58
+ */
+public class AsyncTextNodeListenerTest {
+
+  @Test
+  public void testQueuedEventsAreBatched() throws InterruptedException {
+    BlockingListener delegate = new BlockingListener();
+    AsyncTextNodeListener listener = new AsyncTextNodeListener(delegate, 100, 3);
+    listener.onEvents(events(1));
+    assertTrue(delegate.entered.await(5, TimeUnit.SECONDS));
+    listener.onEvents(events(5));
+    assertEquals(5, listener.getPendingCount());
+
+    delegate.release.countDown();
+    listener.shutdown();
+    assertEquals(Arrays.asList(1, 3, 2), delegate.batchSizes);
+    assertEquals(6, delegate.count());
+  }
+
+  @Test
+  public void testDropWhenQueueFull() throws InterruptedException {
+    BlockingListener delegate = new BlockingListener();
+    AsyncTextNodeListener listener = new AsyncTextNodeListener(delegate, 2, 10);
+    listener.onEvents(events(1));
+    assertTrue(delegate.entered.await(5, TimeUnit.SECONDS));
+    listener.onEvents(events(3));
+    assertEquals(2, listener.getPendingCount());
+
+    delegate.release.countDown();
+    listener.shutdown();
+    assertEquals(3, delegate.count());
+  }
+
+  @Test
+  public void testShutdownDeliversQueuedEvents() {
+    BlockingListener delegate = new BlockingListener();
+    delegate.release.countDown();
+    AsyncTextNodeListener listener = new AsyncTextNodeListener(delegate, 1000, 1);
+    for (int i = 0; i < 10; i++) {
+      listener.onEvents(events(10));
+    }
+    listener.shutdown();
+    assertEquals(100, delegate.count());
+    assertEquals(0, listener.getPendingCount());
+    try {
+      listener.onEvents(events(1));
+      fail("Events must not be accepted after shutdown");
+    } catch (IllegalStateException e) {
+      //expected
+    }
+  }
+
+  private static List<TextNodeEvent> events(int count) {
+    List<TextNodeEvent> events = new ArrayList<TextNodeEvent>();
+    for (int i = 0; i < count; i++) {
+      events.add(new TextNodeEvent(TextNodeEvent.Type.CHANGED, "node" + i, 0, 1, Collections.singleton("title")));
+    }
+    return events;
+  }
+
+  /**
+   * Records the size of each batch. The first call blocks until it is released.
+   */
+  private static class BlockingListener implements TextNodeListener {
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+    @Override
+    public void onEvents(@NotNull List<TextNodeEvent> events) {
+      batchSizes.add(events.size());
+      entered.countDown();
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private int count() {
+      int count = 0;
+      for (int size : batchSizes) {
+        count += size;
+      }
+      return count;
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 11:02
+ */
+public class CachingTextNodeStoreTest {
+
+  @Test
+  public void testSlowReadIsNotCached() throws Exception {
+    final SlowReadStore delegate = new SlowReadStore();
+    delegate.createTextNode("a").setText("title", "old");
+    final CachingTextNodeStore store = new CachingTextNodeStore(delegate, 100);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<TextNode> read = executor.submit(new Callable<TextNode>() {
+        @Override
+        public TextNode call() throws Exception {
+          return store.getTextNode("a");
+        }
+      });
+      assertTrue(delegate.read.await(10, TimeUnit.SECONDS));
+      store.updateNode("a", Collections.singletonMap("title", "new"));
+      delegate.release.countDown();
+
+      assertEquals("old", read.get(10, TimeUnit.SECONDS).getText("title"));
+      assertEquals("new", store.getTextNode("a").getText("title"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testPublishAfterWrite() {
+    RecordingChannel channel = new RecordingChannel();
+    MemoryTextNodeStore memory = new MemoryTextNodeStore();
+    memory.createTextNode("a");
+    WriteBehindTextNodeStore writeBehind = new WriteBehindTextNodeStore(memory, 1, TimeUnit.HOURS);
+    CachingTextNodeStore store = new CachingTextNodeStore(writeBehind, 100, 0, TimeUnit.MILLISECONDS, channel);
+    try {
+      store.updateNode("a", Collections.singletonMap("title", "Hello"));
+      assertEquals("Hello", store.getTextNode("a").getText("title"));
+      assertTrue(channel.published.isEmpty());
+
+      writeBehind.flush();
+      assertEquals(Collections.singletonList("a"), channel.published);
+    } finally {
+      writeBehind.shutdown();
+    }
+  }
+
+  @Test
+  public void testPublishWithoutEvents() {
+    RecordingChannel channel = new RecordingChannel();
+    TextNodeStore silent = new DelegatingTextNodeStore(new MemoryTextNodeStore()) {
+      @Override
+      public void addListener(@NotNull TextNodeListener listener) {
+      }
+
+      @Override
+      public boolean isFiringEvents() {
+        return false;
+      }
+    };
+    CachingTextNodeStore store = new CachingTextNodeStore(silent, 100, 0, TimeUnit.MILLISECONDS, channel);
+    store.updateNode("a", Collections.singletonMap("title", "Hello"));
+    assertEquals(Collections.singletonList("a"), channel.published);
+
+    store.getTextNode("a").setText("title", "Hi");
+    assertEquals(Arrays.asList("a", "a"), channel.published);
+  }
+
+  @Test
+  public void testInvalidationOfOtherCache() {
+    MemoryTextNodeStore shared = new MemoryTextNodeStore();
+    LocalInvalidationChannel channel = new LocalInvalidationChannel();
+    CachingTextNodeStore first = new CachingTextNodeStore(shared, 100, 0, TimeUnit.MILLISECONDS, channel);
+    CachingTextNodeStore second = new CachingTextNodeStore(shared, 100, 0, TimeUnit.MILLISECONDS, channel);
+    shared.createTextNode("a").setText("title", "old");
+
+    assertEquals("old", second.getSnapshot("a").getText("title"));
+    first.updateNode("a", Collections.singletonMap("title", "new"));
+    assertEquals("new", second.getSnapshot("a").getText("title"));
+  }
+
+  @Test
+  public void testGetSnapshotsAtOnce() {
+    CountingTextNodeStore delegate = new CountingTextNodeStore();
+    delegate.updateNode("a", Collections.singletonMap("title", "A"));
+    delegate.updateNode("b", Collections.singletonMap("title", "B"));
+    CachingTextNodeStore store = new CachingTextNodeStore(delegate, 100);
+
+    Map<String, TextNodeSnapshot> snapshots = store.getSnapshots(Arrays.asList("a", "b", "c"));
+    assertEquals(2, snapshots.size());
+    assertEquals("B", snapshots.get("b").getText("title"));
+    assertEquals(1, delegate.snapshotBatches);
+    assertEquals(0, delegate.snapshotSingles);
+
+    assertSame(snapshots.get("a"), store.getSnapshot("a"));
+    assertEquals(snapshots, store.getSnapshots(Arrays.asList("a", "b")));
+    assertEquals(1, delegate.snapshotBatches);
+    assertEquals(0, delegate.snapshotSingles);
+  }
+
+  /**
+   * Returns detached copies of the nodes, like a database backed store. The
+   * first read blocks after the node has been read until it is released.
+   */
+  private static class SlowReadStore extends MemoryTextNodeStore {
+    private final CountDownLatch read = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Nullable
+    @Override
+    public TextNode getTextNode(@NotNull String id) {
+      TextNode node = getSnapshot(id);
+      if (read.getCount() > 0) {
+        read.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return node;
+    }
+  }
+
+  private static class RecordingChannel implements InvalidationChannel {
+    private final List<String> published = new ArrayList<String>();
+
+    @Override
+    public void publish(@NotNull String nodeId) {
+      published.add(nodeId);
+    }
+
+    @Override
+    public void subscribe(@NotNull Listener listener) {
+    }
+
+    @Override
+    public void unsubscribe(@NotNull Listener listener) {
+    }
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 11:23
+ */
+public class CompressingTextNodeStoreTest {
+
+  @Test
+  public void testRoundTrip() {
+    MemoryTextNodeStore memory = new MemoryTextNodeStore();
+    CompressingTextNodeStore store = new CompressingTextNodeStore(memory, 16);
+    String text = repeat("Gr\u00fc\u00dfe aus K\u00f6ln. ", 100);
+    store.updateNode("a", Collections.singletonMap("body", text));
+    store.updateNode("a", Collections.singletonMap("title", "Short"));
+
+    assertEquals(1, store.getCompressedCount());
+    String stored = memory.requireTextNode("a").getText("body");
+    assertTrue(stored.length() < text.length());
+
+    TextNode node = store.requireTextNode("a");
+    assertEquals(text, node.getText("body"));
+    assertEquals(text.length(), node.getTextSize("body"));
+    assertEquals("Short", node.getText("title"));
+    assertEquals(5, node.getTextSize("title"));
+    assertEquals((double) stored.length() / text.length(), store.getCompressionRatio(), 0.0001);
+  }
+
+  @Test
+  public void testMarkerIsEscaped() {
+    MemoryTextNodeStore memory = new MemoryTextNodeStore();
+    CompressingTextNodeStore store = new CompressingTextNodeStore(memory, 16);
+    store.updateNode("a", Collections.singletonMap("title", "\u0001D5,5:abc"));
+    assertEquals("\u0001D5,5:abc", store.requireTextNode("a").getText("title"));
+    assertEquals(9, store.requireTextNode("a").getTextSize("title"));
+  }
+
+  /**
+   * The underlying store creates a new snapshot on each call. The values are
+   * inflated once per version anyway.
+   */
+  @Test
+  public void testSnapshotsCachedByVersion() {
+    CompressingTextNodeStore store = new CompressingTextNodeStore(new CopyingStore(), 16);
+    String text = repeat("abc", 100);
+    store.updateNode("a", Collections.singletonMap("body", text));
+
+    TextNodeSnapshot snapshot = store.getSnapshot("a");
+    assertEquals(text, snapshot.getText("body"));
+    assertSame(snapshot, store.getSnapshot("a"));
+    assertEquals(1, store.getInflateCount());
+
+    store.updateNode("a", Collections.singletonMap("body", repeat("xyz", 100)));
+    assertEquals(repeat("xyz", 100), store.getSnapshot("a").getText("body"));
+    assertEquals(2, store.getInflateCount());
+  }
+
+  @Test
+  public void testRemovedNodeNotCached() {
+    MemoryTextNodeStore memory = new MemoryTextNodeStore();
+    CompressingTextNodeStore store = new CompressingTextNodeStore(memory, 16);
+    store.updateNode("a", Collections.singletonMap("body", repeat("abc", 100)));
+    assertEquals(repeat("abc", 100), store.getSnapshot("a").getText("body"));
+
+    memory.removeTextNode("a");
+    store.updateNode("a", Collections.singletonMap("body", repeat("xyz", 100)));
+    assertEquals(repeat("xyz", 100), store.getSnapshot("a").getText("body"));
+  }
+
+  @Test
+  public void testLazyValuesAreNotLoaded() {
+    LazyStore lazy = new LazyStore("body");
+    CompressingTextNodeStore store = new CompressingTextNodeStore(lazy, 16);
+    String text = repeat("abc", 100);
+    store.updateNode("a", Collections.singletonMap("body", text));
+    store.updateNode("a", Collections.singletonMap("title", "Short"));
+    int storedSize = lazy.requireTextNode("a").getTextSize("body");
+    assertTrue(storedSize < text.length());
+
+    TextNodeSnapshot snapshot = store.getSnapshot("a");
+    assertEquals("Short", snapshot.getText("title"));
+    assertFalse(snapshot.isLoaded("body"));
+    assertEquals(storedSize, snapshot.getTextSize("body"));
+    assertEquals(storedSize, store.getTextNode("a").getTextSize("body"));
+    assertEquals(0, lazy.loads);
+    assertEquals(0, store.getInflateCount());
+
+    assertEquals(text, snapshot.getText("body"));
+    assertEquals(text.length(), snapshot.getTextSize("body"));
+    assertEquals(1, lazy.loads);
+    assertEquals(1, store.getInflateCount());
+  }
+
+  private static String repeat(String s, int times) {
+    StringBuilder buf = new StringBuilder(s.length() * times);
+    for (int i = 0; i < times; i++) {
+      buf.append(s);
+    }
+    return buf.toString();
+  }
+
+  /**
+   * Returns a new snapshot on every call, like a database backed store.
+   */
+  private static class CopyingStore extends MemoryTextNodeStore {
+    @Nullable
+    @Override
+    public TextNodeSnapshot getSnapshot(@NotNull String id) {
+      TextNode node = getTextNode(id);
+      return node != null ? TextNodeSnapshot.of(node) : null;
+    }
+  }
+
+  /**
+   * Leaves the value of one key out of the snapshots and nodes it returns, like
+   * a database backed store does with large values.
+   */
+  private static class LazyStore extends MemoryTextNodeStore {
+    private final String lazyKey;
+    private int loads;
+
+    private LazyStore(String lazyKey) {
+      this.lazyKey = lazyKey;
+    }
+
+    @Nullable
+    @Override
+    public TextNodeSnapshot getSnapshot(@NotNull String id) {
+      TextNode node = super.getTextNode(id);
+      if (node == null) {
+        return null;
+      }
+      Map<String, String> values = new HashMap<String, String>();
+      for (String key : node.getKeys()) {
+        values.put(key, node.getText(key));
+      }
+      Map<String, Integer> lazySizes = new HashMap<String, Integer>();
+      String lazy = values.remove(lazyKey);
+      if (lazy != null) {
+        lazySizes.put(lazyKey, lazy.length());
+      }
+      return TextNodeSnapshot.of(id, node.getVersion(), values, lazySizes, new TextNodeSnapshot.ValueLoader() {
+        @Nullable
+        @Override
+        public String load(@NotNull String id, @NotNull String key) {
+          loads++;
+          return LazyStore.super.getTextNode(id).getText(key);
+        }
+      });
+    }
+
+    @Nullable
+    @Override
+    public TextNode getTextNode(@NotNull String id) {
+      return getSnapshot(id);
+    }
+  }
+}
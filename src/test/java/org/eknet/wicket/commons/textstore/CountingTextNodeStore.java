@@ -0,0 +1,88 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A memory store that counts the single and the batched lookups of
+ * nodes and snapshots.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 12:48
+ */
+class CountingTextNodeStore extends MemoryTextNodeStore {
+
+  int nodeSingles;
+  int nodeBatches;
+  int snapshotSingles;
+  int snapshotBatches;
+
+  @Nullable
+  @Override
+  public TextNode getTextNode(@NotNull String id) {
+    nodeSingles++;
+    return super.getTextNode(id);
+  }
+
+  @NotNull
+  @Override
+  public Map<String, TextNode> getTextNodes(@NotNull Collection<String> ids) {
+    nodeBatches++;
+    Map<String, TextNode> nodes = new HashMap<String, TextNode>();
+    for (String id : ids) {
+      TextNode node = super.getTextNode(id);
+      if (node != null) {
+        nodes.put(id, node);
+      }
+    }
+    return nodes;
+  }
+
+  @Nullable
+  @Override
+  public TextNodeSnapshot getSnapshot(@NotNull String id) {
+    snapshotSingles++;
+    return super.getSnapshot(id);
+  }
+
+  @NotNull
+  @Override
+  public Map<String, TextNodeSnapshot> getSnapshots(@NotNull Collection<String> ids) {
+    snapshotBatches++;
+    Map<String, TextNodeSnapshot> snapshots = new HashMap<String, TextNodeSnapshot>();
+    for (String id : ids) {
+      TextNodeSnapshot snapshot = super.getSnapshot(id);
+      if (snapshot != null) {
+        snapshots.put(id, snapshot);
+      }
+    }
+    return snapshots;
+  }
+
+  void reset() {
+    nodeSingles = 0;
+    nodeBatches = 0;
+    snapshotSingles = 0;
+    snapshotBatches = 0;
+  }
+}
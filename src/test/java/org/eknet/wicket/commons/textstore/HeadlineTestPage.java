@@ -0,0 +1,147 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.link.Link;
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A page with {@link TwoColumnTwoCenterHeadline}s and inline markup for tests.
+ * The stores are registered by name and the page only holds their names, so
+ * they are not serialized with the page. All headlines read the node with the
+ * name of this class.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 13:02
+ */
+public class HeadlineTestPage extends WebPage implements IMarkupResourceStreamProvider {
+
+  public final static String DEFAULT_STORE = "default";
+
+  private final static ConcurrentMap<String, TextNodeStore> stores = new ConcurrentHashMap<String, TextNodeStore>();
+  static {
+    stores.put(DEFAULT_STORE, new MemoryTextNodeStore());
+  }
+
+  private final List<String> headlines = new ArrayList<String>();
+  private boolean withLink;
+  private boolean withModeSwitch;
+
+  /**
+   * Creates a page with one headline using the default store.
+   *
+   * @param mode
+   */
+  public HeadlineTestPage(ViewOrEdit.Mode mode) {
+    this(mode, DEFAULT_STORE);
+  }
+
+  /**
+   * Creates a page with one headline for each of the given store names.
+   *
+   * @param mode
+   * @param storeNames
+   */
+  public HeadlineTestPage(ViewOrEdit.Mode mode, String... storeNames) {
+    for (String storeName : storeNames) {
+      String id = "headline" + headlines.size();
+      headlines.add(id);
+      add(new TwoColumnTwoCenterHeadline(new StoreModel(storeName), id, mode));
+    }
+  }
+
+  @NotNull
+  public static TextNodeStore getStore(@NotNull String name) {
+    TextNodeStore store = stores.get(name);
+    if (store == null) {
+      throw new IllegalArgumentException("No store registered as " + name);
+    }
+    return store;
+  }
+
+  public static void setStore(@NotNull String name, @NotNull TextNodeStore store) {
+    stores.put(name, store);
+  }
+
+  /**
+   * Adds a non-bookmarkable link, which makes the page stateful.
+   *
+   * @return
+   */
+  public HeadlineTestPage addStatefulLink() {
+    withLink = true;
+    add(new Link<Void>("link") {
+      @Override
+      public void onClick() {
+      }
+    });
+    return this;
+  }
+
+  /**
+   * Enables Ajax for the first headline and adds a link switching its mode.
+   *
+   * @return
+   */
+  public HeadlineTestPage addModeSwitchLink() {
+    withModeSwitch = true;
+    ViewOrEdit headline = (ViewOrEdit) get(headlines.get(0));
+    headline.setAjaxEnabled(true);
+    add(headline.newModeSwitchLink("switch"));
+    return this;
+  }
+
+  @Override
+  public IResourceStream getMarkupResourceStream(MarkupContainer container, Class<?> containerClass) {
+    StringBuilder markup = new StringBuilder("<html><body>");
+    for (String id : headlines) {
+      markup.append("<div wicket:id=\"").append(id).append("\"></div>");
+    }
+    if (withLink) {
+      markup.append("<a wicket:id=\"link\">link</a>");
+    }
+    if (withModeSwitch) {
+      markup.append("<a wicket:id=\"switch\">switch</a>");
+    }
+    return new StringResourceStream(markup.append("</body></html>"));
+  }
+
+  public static class StoreModel extends AbstractReadOnlyModel<TextNodeStore> {
+
+    private final String name;
+
+    public StoreModel(@NotNull String name) {
+      this.name = name;
+    }
+
+    @Override
+    public TextNodeStore getObject() {
+      return getStore(name);
+    }
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the {@link JdbcTextNodeStore} against an in-memory H2 database.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 10:41
+ */
+public class JdbcTextNodeStoreTest {
+
+  private static int counter;
+
+  private JdbcDataSource dataSource;
+  private Connection keepAlive;
+  private JdbcTextNodeStore store;
+
+  @Before
+  public void setUp() throws SQLException {
+    dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:textnodes" + (counter++));
+    //the in-memory database lives as long as a connection is open
+    keepAlive = dataSource.getConnection();
+    store = new JdbcTextNodeStore(dataSource, "textnode", 10);
+    store.createTable();
+  }
+
+  @After
+  public void tearDown() throws SQLException {
+    keepAlive.close();
+  }
+
+  @Test
+  public void testCreateAndUpdate() {
+    TextNode node = store.createTextNode("a");
+    assertTrue(node.isCreated());
+    assertEquals(0, node.getVersion());
+    assertEquals(node.getId(), store.requireTextNode("a").getText(AbstractTextNode.UUID_KEY));
+
+    Map<String, String> values = new HashMap<String, String>();
+    values.put("title", "Hello");
+    values.put("body", "World");
+    assertEquals(1, store.updateNode("a", 0, values));
+    assertEquals(2, store.updateNode("a", 1, Collections.singletonMap("title", (String) null)));
+
+    node = store.requireTextNode("a");
+    assertFalse(node.isCreated());
+    assertTrue(node.isModified());
+    assertEquals(2, node.getVersion());
+    assertNull(node.getText("title"));
+    assertEquals("World", node.getText("body"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCreateExisting() {
+    store.createTextNode("a");
+    store.createTextNode("a");
+  }
+
+  @Test(expected = StaleTextNodeException.class)
+  public void testStaleUpdate() {
+    store.updateNode("a", Collections.singletonMap("title", "Hello"));
+    store.updateNode("a", 0, Collections.singletonMap("title", "Hi"));
+  }
+
+  @Test
+  public void testNodeSetText() {
+    TextNode node = store.getOrCreateNode("a");
+    node.setText("title", "Hello");
+    assertEquals(1, node.getVersion());
+    assertEquals("Hello", node.getText("title"));
+    assertEquals("Hello", store.requireTextNode("a").getText("title"));
+  }
+
+  /**
+   * Values longer than the threshold of 10 characters are replaced by {@code null}
+   * in the query of the node and loaded on first access.
+   */
+  @Test
+  public void testLazyValues() {
+    Map<String, String> values = new HashMap<String, String>();
+    values.put("short", "Hello");
+    values.put("long", "Hello World, this is longer");
+    store.updateNode("a", values);
+
+    TextNode node = store.requireTextNode("a");
+    assertEquals(27, node.getTextSize("long"));
+    assertEquals(5, node.getTextSize("short"));
+    assertTrue(node.getKeys().contains("long"));
+    assertEquals("Hello World, this is longer", node.getText("long"));
+    assertEquals("Hello", node.getText("short"));
+
+    TextNode batched = store.getTextNodes(Arrays.asList("a", "b")).get("a");
+    assertEquals(27, batched.getTextSize("long"));
+    assertEquals("Hello World, this is longer", batched.getText("long"));
+  }
+
+  /**
+   * Snapshots are read with one query and keep large values lazy, too.
+   */
+  @Test
+  public void testLazySnapshots() {
+    Map<String, String> values = new HashMap<String, String>();
+    values.put("short", "Hello");
+    values.put("long", "Hello World, this is longer");
+    store.updateNode("a", values);
+    store.updateNode("b", Collections.singletonMap("short", "Hi"));
+
+    int[] connections = { 0 };
+    JdbcTextNodeStore counted = new JdbcTextNodeStore(countConnections(dataSource, connections), "textnode", 10);
+    Map<String, TextNodeSnapshot> snapshots = counted.getSnapshots(Arrays.asList("a", "b", "c"));
+    assertEquals(1, connections[0]);
+    assertEquals(2, snapshots.size());
+    assertEquals("Hi", snapshots.get("b").getText("short"));
+
+    TextNodeSnapshot snapshot = snapshots.get("a");
+    assertEquals(1, snapshot.getVersion());
+    assertEquals("Hello", snapshot.getText("short"));
+    assertEquals(27, snapshot.getTextSize("long"));
+    assertTrue(snapshot.getKeys().contains("long"));
+    assertEquals(1, connections[0]);
+
+    assertEquals("Hello World, this is longer", snapshot.getText("long"));
+    assertEquals("Hello World, this is longer", snapshot.getText("long"));
+    assertEquals(2, connections[0]);
+
+    assertEquals(27, counted.getSnapshot("a").getTextSize("long"));
+    assertEquals(3, connections[0]);
+    assertNull(counted.getSnapshot("c"));
+  }
+
+  @Test
+  public void testGetTextNodes() {
+    for (int i = 0; i < 250; i++) {
+      store.updateNode("node" + i, Collections.singletonMap("text", "value " + i));
+    }
+    String[] ids = new String[260];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = "node" + i;
+    }
+    Map<String, TextNode> nodes = store.getTextNodes(Arrays.asList(ids));
+    assertEquals(250, nodes.size());
+    assertEquals("value 249", nodes.get("node249").getText("text"));
+    assertEquals(1, nodes.get("node0").getVersion());
+  }
+
+  /**
+   * Another transaction creates the node after it has been found missing. The
+   * failed insert must not prevent the update from being retried.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testConcurrentCreate() throws Exception {
+    DataSource racing = interceptFirstInsert(dataSource, new Runnable() {
+      @Override
+      public void run() {
+        store.updateNode("a", Collections.singletonMap("title", "first"));
+      }
+    });
+    JdbcTextNodeStore other = new JdbcTextNodeStore(racing, "textnode", 10);
+    assertEquals(2, other.updateNode("a", TextNode.ANY_VERSION, Collections.singletonMap("body", "second")));
+
+    TextNode node = store.requireTextNode("a");
+    assertEquals("first", node.getText("title"));
+    assertEquals("second", node.getText("body"));
+  }
+
+  @Test
+  public void testTableName() throws SQLException {
+    Statement stmt = keepAlive.createStatement();
+    try {
+      stmt.executeUpdate("CREATE SCHEMA texts");
+    } finally {
+      stmt.close();
+    }
+    JdbcTextNodeStore other = new JdbcTextNodeStore(dataSource, "texts.nodes");
+    other.createTable();
+    other.updateNode("a", Collections.singletonMap("title", "Hello"));
+    assertEquals("Hello", other.requireTextNode("a").getText("title"));
+    assertNull(store.getTextNode("a"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidTableName() {
+    new JdbcTextNodeStore(dataSource, "textnode; DROP TABLE textnode");
+  }
+
+  /**
+   * Returns a data source that counts the connections taken from it.
+   *
+   * @param dataSource
+   * @param count
+   * @return
+   */
+  private static DataSource countConnections(final DataSource dataSource, final int[] count) {
+    return (DataSource) Proxy.newProxyInstance(JdbcTextNodeStoreTest.class.getClassLoader(),
+        new Class<?>[] { DataSource.class }, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if ("getConnection".equals(method.getName())) {
+          count[0]++;
+        }
+        return invokeOn(dataSource, method, args);
+      }
+    });
+  }
+
+  /**
+   * Returns a data source that runs the given action right before the first
+   * {@code INSERT} statement is prepared.
+   *
+   * @param dataSource
+   * @param action
+   * @return
+   */
+  private static DataSource interceptFirstInsert(final DataSource dataSource, final Runnable action) {
+    final boolean[] done = { false };
+    return (DataSource) Proxy.newProxyInstance(JdbcTextNodeStoreTest.class.getClassLoader(),
+        new Class<?>[] { DataSource.class }, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Object result = invokeOn(dataSource, method, args);
+        if (!"getConnection".equals(method.getName())) {
+          return result;
+        }
+        final Connection conn = (Connection) result;
+        return Proxy.newProxyInstance(JdbcTextNodeStoreTest.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("prepareStatement".equals(method.getName()) && !done[0]
+                && ((String) args[0]).startsWith("INSERT")) {
+              done[0] = true;
+              action.run();
+            }
+            return invokeOn(conn, method, args);
+          }
+        });
+      }
+    });
+  }
+
+  private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 10:12
+ */
+public class LogTextNodeStoreTest {
+
+  private File file;
+  private LogTextNodeStore store;
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("textnodes", ".log");
+    if (!file.delete()) {
+      throw new IOException("Unable to delete " + file);
+    }
+    store = new LogTextNodeStore(file, false, 4);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    store.close();
+    if (!file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+
+  @Test
+  public void testWriteAndReopen() throws IOException {
+    Map<String, String> values = new HashMap<String, String>();
+    values.put("title", "Hello");
+    values.put("body", "Grüße");
+    assertEquals(1, store.updateNode("a", 0, values));
+    store.updateNode("a", Collections.singletonMap("title", (String) null));
+    assertEquals("Grüße", store.getTextNode("a").getText("body"));
+
+    reopen();
+    TextNode node = store.requireTextNode("a");
+    assertEquals(2, node.getVersion());
+    assertNull(node.getText("title"));
+    assertEquals("Grüße", node.getText("body"));
+    assertEquals(Collections.singleton("body"), withoutReserved(node));
+  }
+
+  /**
+   * A compaction that stopped after the log has been renamed to its
+   * backup leaves only the backup.
+   */
+  @Test
+  public void testReopenFromBackup() throws IOException {
+    store.updateNode("a", Collections.singletonMap("title", "Hello"));
+    store.close();
+    File backup = new File(file.getPath() + ".bak");
+    assertTrue(file.renameTo(backup));
+
+    store = new LogTextNodeStore(file);
+    assertEquals("Hello", store.requireTextNode("a").getText("title"));
+    assertTrue(file.exists());
+    assertFalse(backup.exists());
+  }
+
+  @Test
+  public void testMappingIsGrownInChunks() throws IOException {
+    for (int i = 0; i < 1000; i++) {
+      store.updateNode("node" + i, Collections.singletonMap("text", "value " + i));
+      assertEquals("value " + i, store.getTextNode("node" + i).getText("text"));
+    }
+    assertTrue(file.length() > store.getFileSize());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals("value " + i, store.getTextNode("node" + i).getText("text"));
+    }
+
+    long used = store.getFileSize();
+    store.close();
+    assertEquals(used, file.length());
+    store = new LogTextNodeStore(file);
+    assertEquals(1000, store.size());
+    assertEquals("value 999", store.getTextNode("node999").getText("text"));
+  }
+
+  @Test
+  public void testReopenAfterCrash() throws IOException {
+    store.updateNode("a", Collections.singletonMap("title", "Hello"));
+    //the space reserved by the mapping is not truncated in a crash
+    store.getTextNode("a").getText("title");
+    long used = store.getFileSize();
+    Map<String, String> values = new HashMap<String, String>();
+    values.put("title", "World");
+    values.put("body", "Text");
+    store.updateNode("b", values);
+    store.updateNode("a", 1, values);
+    long crashed = store.getFileSize() - 3;
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(crashed);
+      raf.setLength(crashed + 1024);
+    } finally {
+      raf.close();
+    }
+    store.close();
+
+    store = new LogTextNodeStore(file);
+    //the last commit is discarded as a whole
+    TextNode a = store.getTextNode("a");
+    assertEquals(1, a.getVersion());
+    assertEquals("Hello", a.getText("title"));
+    assertNull(a.getText("body"));
+    assertEquals("World", store.getTextNode("b").getText("title"));
+    assertEquals("Text", store.getTextNode("b").getText("body"));
+    assertTrue(store.getFileSize() < crashed);
+
+    store.updateNode("c", Collections.singletonMap("title", "Again"));
+    reopen();
+    assertEquals("Again", store.getTextNode("c").getText("title"));
+    assertTrue(used < store.getFileSize());
+  }
+
+  @Test
+  public void testNewNodeIsDiscardedWithItsCommit() throws IOException {
+    store.updateNode("a", Collections.singletonMap("title", "Hello"));
+    long used = store.getFileSize();
+    store.updateNode("b", Collections.singletonMap("title", "World"));
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(store.getFileSize() - 1);
+    } finally {
+      raf.close();
+    }
+    store.close();
+
+    store = new LogTextNodeStore(file);
+    assertNull(store.getTextNode("b"));
+    assertEquals(used, store.getFileSize());
+  }
+
+  /**
+   * Logs of version 1 consist of single records only and are upgraded on open.
+   *
+   * @throws IOException
+   */
+  @Test
+  public void testReadVersion1() throws IOException {
+    store.close();
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(0);
+      raf.writeInt(0x544e4c47);
+      raf.writeInt(1);
+      writeRecord(raf, 1, "a", AbstractTextNode.UUID_KEY, "a");
+      writeRecord(raf, 1, "a", "title", "Hello");
+      writeRecord(raf, 1, "a", "body", "World");
+      writeRecord(raf, 1, "a", AbstractTextNode.VERSION_KEY, "1");
+      writeRecord(raf, 2, "a", "body", null);
+      writeRecord(raf, 1, "a", AbstractTextNode.VERSION_KEY, "2");
+    } finally {
+      raf.close();
+    }
+    store = new LogTextNodeStore(file);
+    TextNode node = store.requireTextNode("a");
+    assertEquals(2, node.getVersion());
+    assertEquals("Hello", node.getText("title"));
+    assertNull(node.getText("body"));
+    store.updateNode("a", 2, Collections.singletonMap("body", "Again"));
+
+    reopen();
+    assertEquals("Again", store.requireTextNode("a").getText("body"));
+    assertEquals(3, store.requireTextNode("a").getVersion());
+    raf = new RandomAccessFile(file, "r");
+    try {
+      raf.seek(4);
+      assertEquals(2, raf.readInt());
+    } finally {
+      raf.close();
+    }
+  }
+
+  @Test
+  public void testSnapshotsFollowUpdates() {
+    for (int i = 0; i < 10; i++) {
+      store.updateNode("node" + i, Collections.singletonMap("text", "a"));
+      assertEquals("a", store.getSnapshot("node" + i).getText("text"));
+    }
+    for (int i = 0; i < 10; i++) {
+      store.updateNode("node" + i, Collections.singletonMap("text", "b"));
+    }
+    for (int i = 0; i < 10; i++) {
+      TextNodeSnapshot snapshot = store.getSnapshot("node" + i);
+      assertEquals("b", snapshot.getText("text"));
+      assertEquals(2, snapshot.getVersion());
+    }
+  }
+
+  @Test
+  public void testCompact() {
+    for (int i = 0; i < 100; i++) {
+      store.updateNode("a", Collections.singletonMap("text", "value " + i));
+    }
+    long before = store.getFileSize();
+    store.compact();
+    assertTrue(store.getFileSize() < before);
+    assertEquals("value 99", store.getTextNode("a").getText("text"));
+    assertEquals(100, store.getTextNode("a").getVersion());
+  }
+
+  private static void writeRecord(RandomAccessFile raf, int type, String id, String key, String value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream payload = new DataOutputStream(bytes);
+    payload.writeByte(type);
+    writeString(payload, id);
+    writeString(payload, key);
+    if (value != null) {
+      writeString(payload, value);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(bytes.toByteArray());
+    raf.writeInt(bytes.size());
+    raf.writeInt((int) crc.getValue());
+    raf.write(bytes.toByteArray());
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes("UTF-8");
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private void reopen() throws IOException {
+    store.close();
+    store = new LogTextNodeStore(file);
+  }
+
+  private static Set<String> withoutReserved(TextNode node) {
+    Set<String> keys = new HashSet<String>(node.getKeys());
+    keys.remove(AbstractTextNode.UUID_KEY);
+    keys.remove(AbstractTextNode.VERSION_KEY);
+    return keys;
+  }
+}
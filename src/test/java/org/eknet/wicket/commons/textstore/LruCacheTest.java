@@ -0,0 +1,120 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 09:31
+ */
+public class LruCacheTest {
+
+  @Test
+  public void testGetAndPut() {
+    LruCache<String, String> cache = new LruCache<String, String>(10, 0);
+    assertNull(cache.get("a"));
+    cache.put("a", "1");
+    assertEquals("1", cache.get("a"));
+    assertEquals("1", cache.remove("a"));
+    assertNull(cache.get("a"));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(1d / 3, cache.getHitRatio(), 0.0001);
+  }
+
+  @Test
+  public void testSizeIsBounded() {
+    for (int maxSize : new int[] { 1, 7, 100, 1000 }) {
+      LruCache<Integer, Integer> cache = new LruCache<Integer, Integer>(maxSize, 0);
+      for (int i = 0; i < maxSize * 10; i++) {
+        cache.put(i, i);
+        assertTrue(cache.size() <= maxSize);
+      }
+      cache.clear();
+      assertEquals(0, cache.size());
+    }
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    LruCache<Integer, Integer> cache = new LruCache<Integer, Integer>(3, 0);
+    cache.put(1, 1);
+    cache.put(2, 2);
+    cache.put(3, 3);
+    cache.get(1);
+    cache.put(4, 4);
+    assertNull(cache.get(2));
+    assertNotNull(cache.get(1));
+    assertNotNull(cache.get(3));
+    assertNotNull(cache.get(4));
+  }
+
+  @Test
+  public void testExpiry() throws Exception {
+    LruCache<String, String> cache = new LruCache<String, String>(10, 20);
+    cache.put("a", "1");
+    assertEquals("1", cache.get("a"));
+    Thread.sleep(40);
+    assertNull(cache.get("a"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testConcurrentAccess() throws Exception {
+    final LruCache<Integer, Integer> cache = new LruCache<Integer, Integer>(256, 0);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<Object>> results = new ArrayList<Future<Object>>();
+    try {
+      for (int t = 0; t < 8; t++) {
+        final int seed = t;
+        results.add(executor.submit(new Callable<Object>() {
+          @Override
+          public Object call() throws Exception {
+            for (int i = 0; i < 50000; i++) {
+              int key = (i * 31 + seed) % 512;
+              Integer value = cache.get(key);
+              if (value == null) {
+                cache.put(key, key);
+              } else {
+                assertEquals(key, value.intValue());
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Object> result : results) {
+        result.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertTrue(cache.size() <= 256);
+    assertEquals(8 * 50000, cache.getHitCount() + cache.getMissCount());
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 09:02
+ */
+public class MemoryTextNodeStoreTest {
+
+  private final static int threads = 8;
+  private final static int increments = 2000;
+
+  @Test
+  public void testVersions() {
+    MemoryTextNodeStore store = new MemoryTextNodeStore();
+    TextNode node = store.createTextNode("a");
+    assertTrue(node.isCreated());
+    assertEquals(0, node.getVersion());
+
+    node.setText("title", "Hello");
+    assertTrue(node.isModified());
+    assertEquals(1, node.getVersion());
+    assertEquals(2, store.updateNode("a", 1, Collections.singletonMap("title", "Hi")));
+    assertEquals("Hi", store.getSnapshot("a").getText("title"));
+    assertSame(store.getSnapshot("a"), store.getSnapshot("a"));
+  }
+
+  @Test(expected = StaleTextNodeException.class)
+  public void testStaleUpdate() {
+    MemoryTextNodeStore store = new MemoryTextNodeStore();
+    store.updateNode("a", Collections.singletonMap("title", "Hello"));
+    store.updateNode("a", 0, Collections.singletonMap("title", "Hi"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReservedKey() {
+    new MemoryTextNodeStore().updateNode("a", Collections.singletonMap(AbstractTextNode.VERSION_KEY, "5"));
+  }
+
+  @Test
+  public void testRemoveFiresEvents() {
+    MemoryTextNodeStore store = new MemoryTextNodeStore();
+    store.updateNode("a", Collections.singletonMap("title", "Hello"));
+    store.updateNode("b", Collections.singletonMap("title", "Hello"));
+    RecordingListener listener = new RecordingListener();
+    store.addListener(listener);
+
+    assertTrue(store.removeTextNode("a"));
+    assertFalse(store.removeTextNode("a"));
+    assertNull(store.getTextNode("a"));
+    assertEquals(1, listener.events.size());
+    TextNodeEvent event = listener.events.get(0);
+    assertEquals(TextNodeEvent.Type.REMOVED, event.getType());
+    assertEquals("a", event.getNodeId());
+    assertEquals(1, event.getOldVersion());
+
+    store.clear();
+    assertEquals(0, store.size());
+    assertEquals(2, listener.events.size());
+    assertEquals("b", listener.events.get(1).getNodeId());
+    assertEquals(TextNodeEvent.Type.REMOVED, listener.events.get(1).getType());
+  }
+
+  /**
+   * Increments a counter from many threads using optimistic updates, while other
+   * threads check that every snapshot they read is consistent with its version.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testConcurrentIncrements() throws Exception {
+    final MemoryTextNodeStore store = new MemoryTextNodeStore();
+    store.updateNode("counter", Collections.singletonMap("value", "0"));
+    final RecordingListener listener = new RecordingListener();
+    store.addListener(listener);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads * 2);
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch writersDone = new CountDownLatch(threads);
+    List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+    try {
+      for (int i = 0; i < threads; i++) {
+        results.add(executor.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() throws Exception {
+            start.await();
+            int retries = 0;
+            try {
+              for (int n = 0; n < increments; n++) {
+                while (true) {
+                  TextNodeSnapshot snapshot = store.getSnapshot("counter");
+                  int value = Integer.parseInt(snapshot.getText("value"));
+                  try {
+                    store.updateNode("counter", snapshot.getVersion(),
+                        Collections.singletonMap("value", String.valueOf(value + 1)));
+                    break;
+                  } catch (StaleTextNodeException e) {
+                    retries++;
+                  }
+                }
+              }
+            } finally {
+              writersDone.countDown();
+            }
+            return retries;
+          }
+        }));
+        results.add(executor.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() throws Exception {
+            start.await();
+            long lastVersion = 0;
+            while (writersDone.getCount() > 0) {
+              TextNodeSnapshot snapshot = store.getSnapshot("counter");
+              assertTrue(snapshot.getVersion() >= lastVersion);
+              assertEquals(snapshot.getVersion() - 1, Long.parseLong(snapshot.getText("value")));
+              lastVersion = snapshot.getVersion();
+            }
+            return 0;
+          }
+        }));
+      }
+      start.countDown();
+      for (Future<Integer> result : results) {
+        result.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    TextNodeSnapshot snapshot = store.getSnapshot("counter");
+    assertEquals(threads * increments, Integer.parseInt(snapshot.getText("value")));
+    assertEquals(threads * increments + 1, snapshot.getVersion());
+    assertEquals(threads * increments, listener.events.size());
+  }
+
+  private static class RecordingListener implements TextNodeListener {
+    private final List<TextNodeEvent> events = Collections.synchronizedList(new ArrayList<TextNodeEvent>());
+
+    @Override
+    public void onEvents(@NotNull List<TextNodeEvent> events) {
+      this.events.addAll(events);
+    }
+  }
+}
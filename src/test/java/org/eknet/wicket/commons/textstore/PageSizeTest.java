@@ -0,0 +1,90 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.apache.wicket.util.tester.WicketTester;
+import org.eknet.wicket.commons.devutils.SerializationSizeAnalyzer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the serialized size of a page with a {@link TwoColumnTwoCenterHeadline}
+ * below a budget. The text node models must only write their node id, key and
+ * store model, and never a loaded node.
+ *
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 11:40
+ */
+public class PageSizeTest {
+
+  private final static long editBudget = 32 * 1024;
+  private final static long viewBudget = 16 * 1024;
+  private final static long propertyModelBudget = 512;
+
+  private WicketTester tester;
+
+  @Before
+  public void setUp() {
+    tester = new WicketTester();
+    Map<String, String> values = new HashMap<String, String>();
+    values.put("headline", "Headline");
+    values.put("centerContent1", "First center content");
+    values.put("columnContent1", "Left column");
+    values.put("columnContent2", "Right column");
+    values.put("centerContent2", "Second center content");
+    HeadlineTestPage.getStore(HeadlineTestPage.DEFAULT_STORE).updateNode(HeadlineTestPage.class.getName(), values);
+  }
+
+  @After
+  public void tearDown() {
+    tester.destroy();
+  }
+
+  @Test
+  public void testEditModePageSize() {
+    HeadlineTestPage page = tester.startPage(new HeadlineTestPage(ViewOrEdit.Mode.EDIT));
+    SerializationSizeAnalyzer.Report report = SerializationSizeAnalyzer.analyze(page)
+        .requireNoFindings()
+        .requireTotalSizeBelow(editBudget);
+    requireClassSizeBelow(report, TextNodePropertyModel.class, propertyModelBudget);
+  }
+
+  @Test
+  public void testViewModePageSize() {
+    HeadlineTestPage page = tester.startPage(new HeadlineTestPage(ViewOrEdit.Mode.VIEW));
+    SerializationSizeAnalyzer.analyze(page)
+        .requireNoFindings()
+        .requireTotalSizeBelow(viewBudget);
+  }
+
+  /**
+   * Fails if the instances of the class take more than the given number
+   * of bytes on average.
+   */
+  private static void requireClassSizeBelow(SerializationSizeAnalyzer.Report report, Class<?> type, long maxBytes) {
+    int count = report.getClassCount(type.getName());
+    Long size = report.getClassSizes().get(type.getName());
+    if (count > 0 && size / count > maxBytes) {
+      throw new IllegalStateException("A " + type.getSimpleName() + " takes " + (size / count)
+          + " bytes and exceeds the budget of " + maxBytes + " bytes.\n" + report);
+    }
+  }
+}
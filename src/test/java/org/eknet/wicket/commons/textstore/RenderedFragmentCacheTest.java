@@ -0,0 +1,123 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.apache.wicket.markup.html.form.FormComponent;
+import org.apache.wicket.util.tester.FormTester;
+import org.apache.wicket.util.tester.WicketTester;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 13:45
+ */
+public class RenderedFragmentCacheTest {
+
+  private final static String storeName = "fragments";
+  private final static String nodeId = HeadlineTestPage.class.getName();
+
+  private WicketTester tester;
+  private RenderedFragmentCache cache;
+  private TextNodeStore store;
+
+  @Before
+  public void setUp() {
+    tester = new WicketTester();
+    cache = new RenderedFragmentCache(10);
+    RenderedFragmentCache.install(tester.getApplication(), cache);
+    store = new MemoryTextNodeStore();
+    HeadlineTestPage.setStore(storeName, store);
+  }
+
+  @After
+  public void tearDown() {
+    tester.destroy();
+  }
+
+  @Test
+  public void testModifiedNodesAreCached() {
+    store.updateNode(nodeId, Collections.singletonMap("headline", "Cached headline"));
+    tester.startPage(new HeadlineTestPage(ViewOrEdit.Mode.VIEW, storeName));
+    String markup = cache.get(nodeId, store.getTextNode(nodeId).getVersion(), getVariant());
+    assertNotNull(markup);
+    assertTrue(markup.contains("Cached headline"));
+  }
+
+  @Test
+  public void testRenderFromCache() {
+    store.updateNode(nodeId, Collections.singletonMap("headline", "Cached headline"));
+    tester.startPage(new HeadlineTestPage(ViewOrEdit.Mode.VIEW, storeName));
+    long version = store.getTextNode(nodeId).getVersion();
+    cache.put(nodeId, version, getVariant(), "<div>From the cache</div>");
+
+    tester.startPage(new HeadlineTestPage(ViewOrEdit.Mode.VIEW, storeName));
+    String response = tester.getLastResponseAsString();
+    assertTrue(response.contains("From the cache"));
+    assertFalse(response.contains("Cached headline"));
+  }
+
+  @Test
+  public void testUnmodifiedNodesAreSkipped() {
+    tester.startPage(new HeadlineTestPage(ViewOrEdit.Mode.VIEW, storeName));
+    TextNode node = store.getTextNode(nodeId);
+    assertNotNull(node);
+    assertFalse(node.isModified());
+    assertNull(cache.get(nodeId, node.getVersion(), getVariant()));
+  }
+
+  @Test
+  public void testInvalidatedOnSubmit() {
+    store.updateNode(nodeId, Collections.singletonMap("headline", "Old headline"));
+    long version = store.getTextNode(nodeId).getVersion();
+    tester.startPage(new HeadlineTestPage(ViewOrEdit.Mode.EDIT, storeName));
+    String variant = getVariant();
+    cache.put(nodeId, version, variant, "<div>Old headline</div>");
+
+    TextNodeFormPanel panel = findFormPanel();
+    String formPath = panel.getForm().getPageRelativePath();
+    FormComponent<String> field = panel.getFormComponent("headline");
+    FormTester form = tester.newFormTester(formPath);
+    form.setValue(field.getPageRelativePath().substring(formPath.length() + 1), "New headline");
+    form.submit();
+
+    assertEquals("New headline", store.getTextNode(nodeId).getText("headline"));
+    assertNull(cache.get(nodeId, version, variant));
+  }
+
+  private String getVariant() {
+    ViewOrEdit headline = (ViewOrEdit) tester.getComponentFromLastRenderedPage("headline0");
+    return headline.getFragmentVariant();
+  }
+
+  private TextNodeFormPanel findFormPanel() {
+    return tester.getLastRenderedPage().visitChildren(TextNodeFormPanel.class,
+        new IVisitor<TextNodeFormPanel, TextNodeFormPanel>() {
+          @Override
+          public void component(TextNodeFormPanel object, IVisit<TextNodeFormPanel> visit) {
+            visit.stop(object);
+          }
+        });
+  }
+}
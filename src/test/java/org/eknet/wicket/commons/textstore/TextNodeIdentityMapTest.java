@@ -0,0 +1,104 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 12:52
+ */
+public class TextNodeIdentityMapTest {
+
+  private WicketTester tester;
+  private CountingTextNodeStore store;
+
+  @Before
+  public void setUp() {
+    tester = new WicketTester();
+    store = new CountingTextNodeStore();
+    store.updateNode("a", Collections.singletonMap("title", "A"));
+    store.reset();
+  }
+
+  @After
+  public void tearDown() {
+    tester.destroy();
+  }
+
+  @Test
+  public void testSameInstanceWithinRequest() {
+    TextNodeIdentityMap map = TextNodeIdentityMap.get();
+    assertNotNull(map);
+    assertSame(map, TextNodeIdentityMap.get());
+
+    TextNode node = map.getTextNode(store, "a");
+    assertNotNull(node);
+    assertSame(node, TextNodeIdentityMap.get().getTextNode(store, "a"));
+    assertSame(node, map.getOrCreateNode(store, "a"));
+    assertTrue(map.contains(store, "a"));
+    assertEquals(1, store.nodeSingles);
+
+    TextNodeSnapshot snapshot = map.getSnapshot(store, "a");
+    assertNotNull(snapshot);
+    assertSame(snapshot, map.getSnapshot(store, "a"));
+    assertTrue(map.containsSnapshot(store, "a"));
+    assertEquals(1, store.snapshotSingles);
+
+    // missing nodes are not remembered
+    assertNull(map.getTextNode(store, "x"));
+    assertNull(map.getTextNode(store, "x"));
+    assertFalse(map.contains(store, "x"));
+    assertEquals(3, store.nodeSingles);
+  }
+
+  @Test
+  public void testNodesOfDifferentStores() {
+    MemoryTextNodeStore other = new MemoryTextNodeStore();
+    other.updateNode("a", Collections.singletonMap("title", "other"));
+    TextNodeIdentityMap map = TextNodeIdentityMap.get();
+    assertEquals("A", map.getTextNode(store, "a").getText("title"));
+    assertEquals("other", map.getTextNode(other, "a").getText("title"));
+    map.remove(store, "a");
+    assertFalse(map.contains(store, "a"));
+    assertTrue(map.contains(other, "a"));
+  }
+
+  @Test
+  public void testClearedOnDetach() {
+    tester.getRequestCycle().getListeners().add(new TextNodeIdentityMap.Listener());
+    TextNodeIdentityMap map = TextNodeIdentityMap.get();
+    map.getTextNode(store, "a");
+    map.getSnapshot(store, "a");
+
+    tester.getRequestCycle().detach();
+    assertFalse(map.contains(store, "a"));
+    assertFalse(map.containsSnapshot(store, "a"));
+
+    TextNodeIdentityMap next = TextNodeIdentityMap.get();
+    assertNotSame(map, next);
+    assertNotNull(next.getTextNode(store, "a"));
+    assertEquals(2, store.nodeSingles);
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 11:31
+ */
+public class TextNodeIndexTest {
+
+  private File file;
+  private StaleReadStore store;
+  private TextNodeIndex index;
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("textnodes", ".idx");
+    if (!file.delete()) {
+      throw new IOException("Unable to delete " + file);
+    }
+    store = new StaleReadStore();
+    index = new TextNodeIndex(store, file, Long.MAX_VALUE);
+    store.addListener(index);
+  }
+
+  @After
+  public void tearDown() {
+    delete(file);
+    delete(new File(file.getPath() + ".bak"));
+  }
+
+  @Test
+  public void testSearch() {
+    store.updateNode("a", Collections.singletonMap("body", "<p>Wicket components</p>"));
+    store.updateNode("b", Collections.singletonMap("body", "Text nodes &amp; components"));
+
+    List<TextNodeIndex.Hit> hits = index.search("wicket", 10);
+    assertEquals(1, hits.size());
+    assertEquals("a", hits.get(0).getNodeId());
+    assertEquals(2, index.search("Components", 10).size());
+    assertTrue(index.search("amp", 10).isEmpty());
+  }
+
+  /**
+   * A listener reads an older snapshot after a newer one has been indexed.
+   */
+  @Test
+  public void testOlderVersionIsIgnored() {
+    store.updateNode("a", Collections.singletonMap("body", "first"));
+    TextNodeSnapshot first = store.getSnapshot("a");
+    store.updateNode("a", Collections.singletonMap("body", "second"));
+    assertEquals(2, index.getIndexedVersion("a"));
+
+    store.stale = first;
+    index.onEvents(Collections.singletonList(new TextNodeEvent(TextNodeEvent.Type.CHANGED, "a", 0, 1,
+        Collections.singleton("body"))));
+    assertEquals(2, index.getIndexedVersion("a"));
+    assertEquals(1, index.search("second", 10).size());
+    assertTrue(index.search("first", 10).isEmpty());
+  }
+
+  @Test
+  public void testRemovedAndCreatedAgain() {
+    store.updateNode("a", Collections.singletonMap("body", "first"));
+    store.updateNode("a", Collections.singletonMap("body", "second"));
+    assertTrue(store.removeTextNode("a"));
+    assertEquals(0, index.size());
+
+    store.updateNode("a", Collections.singletonMap("body", "third"));
+    assertEquals(1, index.getIndexedVersion("a"));
+    assertEquals(1, index.search("third", 10).size());
+  }
+
+  @Test
+  public void testSaveAndLoad() throws IOException {
+    store.updateNode("a", Collections.singletonMap("body", "first"));
+    index.save();
+    store.updateNode("b", Collections.singletonMap("body", "second"));
+    index.close();
+
+    TextNodeIndex loaded = new TextNodeIndex(store, file);
+    assertEquals(2, loaded.size());
+    assertEquals(1, loaded.getIndexedVersion("b"));
+    assertEquals("b", loaded.search("second", 10).get(0).getNodeId());
+  }
+
+  /**
+   * The backup is left over if the index file could not be replaced.
+   */
+  @Test
+  public void testLoadBackup() throws IOException {
+    store.updateNode("a", Collections.singletonMap("body", "first"));
+    index.save();
+    assertTrue(file.renameTo(new File(file.getPath() + ".bak")));
+
+    TextNodeIndex loaded = new TextNodeIndex(store, file);
+    assertEquals(1, loaded.size());
+  }
+
+  private static void delete(File f) {
+    if (f.exists() && !f.delete()) {
+      f.deleteOnExit();
+    }
+  }
+
+  /**
+   * Returns a given snapshot once instead of the current one.
+   */
+  private static class StaleReadStore extends MemoryTextNodeStore {
+    private TextNodeSnapshot stale;
+
+    @Nullable
+    @Override
+    public TextNodeSnapshot getSnapshot(@NotNull String id) {
+      TextNodeSnapshot snapshot = stale;
+      if (snapshot != null) {
+        stale = null;
+        return snapshot;
+      }
+      return super.getSnapshot(id);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 13:14
+ */
+public class TextNodePrefetcherTest {
+
+  private WicketTester tester;
+  private CountingTextNodeStore first;
+  private CountingTextNodeStore second;
+
+  @Before
+  public void setUp() {
+    tester = new WicketTester();
+    tester.getApplication().getComponentPreOnBeforeRenderListeners().add(new TextNodePrefetcher());
+    first = newStore("first");
+    second = newStore("second");
+  }
+
+  @After
+  public void tearDown() {
+    tester.destroy();
+  }
+
+  private static CountingTextNodeStore newStore(String name) {
+    CountingTextNodeStore store = new CountingTextNodeStore();
+    store.updateNode(HeadlineTestPage.class.getName(), Collections.singletonMap("headline", name));
+    store.reset();
+    HeadlineTestPage.setStore(name, store);
+    return store;
+  }
+
+  @Test
+  public void testSnapshotsInViewMode() {
+    tester.startPage(new HeadlineTestPage(ViewOrEdit.Mode.VIEW, "first", "second", "first"));
+    for (CountingTextNodeStore store : new CountingTextNodeStore[] { first, second }) {
+      assertEquals(1, store.snapshotBatches);
+      assertEquals(0, store.snapshotSingles);
+      assertEquals(0, store.nodeBatches);
+      assertEquals(0, store.nodeSingles);
+    }
+  }
+
+  @Test
+  public void testNodesInEditMode() {
+    tester.startPage(new HeadlineTestPage(ViewOrEdit.Mode.EDIT, "first", "second", "first"));
+    for (CountingTextNodeStore store : new CountingTextNodeStore[] { first, second }) {
+      assertEquals(1, store.nodeBatches);
+      assertEquals(0, store.nodeSingles);
+      assertEquals(0, store.snapshotBatches);
+      assertEquals(0, store.snapshotSingles);
+    }
+  }
+
+  @Test
+  public void testLoadedNodesAreSkipped() {
+    TextNodeIdentityMap map = TextNodeIdentityMap.get();
+    map.getSnapshot(first, HeadlineTestPage.class.getName());
+    first.reset();
+    HeadlineTestPage page = new HeadlineTestPage(ViewOrEdit.Mode.VIEW, "first", "second");
+    TextNodePrefetcher.prefetch(page);
+    assertEquals(0, first.snapshotBatches);
+    assertEquals(1, second.snapshotBatches);
+    assertTrue(map.containsSnapshot(second, HeadlineTestPage.class.getName()));
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 11:14
+ */
+public class TextNodeSnapshotTest {
+
+  @Test
+  public void testLazyValue() {
+    RecordingLoader loader = new RecordingLoader();
+    TextNodeSnapshot snapshot = TextNodeSnapshot.of("a", 3, Collections.singletonMap("title", "Hello"),
+        Collections.singletonMap("body", 11), loader);
+
+    assertEquals(11, snapshot.getTextSize("body"));
+    assertTrue(snapshot.getKeys().contains("body"));
+    assertTrue(loader.loaded.isEmpty());
+
+    assertEquals("body of a", snapshot.getText("body"));
+    assertEquals("body of a", snapshot.requireText("body"));
+    assertEquals(9, snapshot.getTextSize("body"));
+    assertEquals(Collections.singletonList("body"), loader.loaded);
+    assertEquals("Hello", snapshot.getText("title"));
+  }
+
+  @Test
+  public void testApplyReplacesLazyValue() {
+    RecordingLoader loader = new RecordingLoader();
+    TextNodeSnapshot snapshot = TextNodeSnapshot.of("a", 3, Collections.<String, String>emptyMap(),
+        Collections.singletonMap("body", 11), loader);
+
+    TextNodeSnapshot next = snapshot.apply(Collections.singletonMap("body", "changed"));
+    assertEquals(4, next.getVersion());
+    assertEquals("changed", next.getText("body"));
+    assertTrue(loader.loaded.isEmpty());
+  }
+
+  private static class RecordingLoader implements TextNodeSnapshot.ValueLoader {
+    private final List<String> loaded = new ArrayList<String>();
+
+    @Nullable
+    @Override
+    public String load(@NotNull String id, @NotNull String key) {
+      loaded.add(key);
+      return key + " of " + id;
+    }
+  }
+}
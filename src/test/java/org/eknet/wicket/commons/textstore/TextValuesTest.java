@@ -0,0 +1,67 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 10:55
+ */
+public class TextValuesTest {
+
+  @Test
+  public void testSlotsAndOthers() {
+    Map<String, String> values = new LinkedHashMap<String, String>();
+    values.put(AbstractTextNode.UUID_KEY, "a");
+    values.put("headline", "Hello");
+    values.put("custom", "value");
+    TextValues textValues = TextValues.of(values);
+    assertEquals("a", textValues.get(AbstractTextNode.UUID_KEY));
+    assertEquals("Hello", textValues.get("headline"));
+    assertEquals("value", textValues.get("custom"));
+    assertNull(textValues.get("columnContent2"));
+    assertEquals(3, textValues.size());
+    assertEquals(values.keySet(), textValues.keys());
+  }
+
+  @Test
+  public void testApplyRemoves() {
+    Map<String, String> values = new HashMap<String, String>();
+    values.put("headline", "Hello");
+    values.put("custom", "value");
+    TextValues textValues = TextValues.of(values);
+
+    Map<String, String> changes = new HashMap<String, String>();
+    changes.put("headline", null);
+    changes.put("custom", null);
+    changes.put("centerContent", "Center");
+    TextValues changed = textValues.apply(changes);
+    assertNull(changed.get("headline"));
+    assertNull(changed.get("custom"));
+    assertEquals("Center", changed.get("centerContent"));
+    assertEquals(1, changed.size());
+    //the original values are not changed
+    assertEquals("Hello", textValues.get("headline"));
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 13:52
+ */
+public class UdpInvalidationChannelTest {
+
+  private UdpInvalidationChannel receiver;
+  private UdpInvalidationChannel sender;
+  private RecordingListener received;
+
+  @Before
+  public void setUp() throws IOException {
+    receiver = new UdpInvalidationChannel(new InetSocketAddress("127.0.0.1", 0),
+        Collections.<InetSocketAddress>emptyList());
+    sender = new UdpInvalidationChannel(new InetSocketAddress("127.0.0.1", 0),
+        Collections.singletonList(receiver.getLocalAddress()));
+    received = new RecordingListener();
+    receiver.subscribe(received);
+  }
+
+  @After
+  public void tearDown() {
+    sender.close();
+    receiver.close();
+  }
+
+  @Test
+  public void testPublishToPeer() throws InterruptedException {
+    sender.publish("a");
+    sender.publish("b");
+    assertEquals("a", received.ids.poll(5, TimeUnit.SECONDS));
+    assertEquals("b", received.ids.poll(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testUnsubscribe() throws InterruptedException {
+    receiver.unsubscribe(received);
+    RecordingListener other = new RecordingListener();
+    receiver.subscribe(other);
+    sender.publish("a");
+    assertEquals("a", other.ids.poll(5, TimeUnit.SECONDS));
+    assertTrue(received.ids.isEmpty());
+  }
+
+  @Test
+  public void testOwnInvalidationsAreIgnored() throws IOException, InterruptedException {
+    InetSocketAddress self = freeAddress();
+    //the channel sends to itself first, then to the receiver
+    UdpInvalidationChannel channel = new UdpInvalidationChannel(self, Arrays.asList(self, receiver.getLocalAddress()));
+    try {
+      RecordingListener own = new RecordingListener();
+      channel.subscribe(own);
+      channel.publish("a");
+      assertEquals("a", received.ids.poll(5, TimeUnit.SECONDS));
+      assertNull(own.ids.poll(100, TimeUnit.MILLISECONDS));
+    } finally {
+      channel.close();
+    }
+  }
+
+  private static InetSocketAddress freeAddress() throws IOException {
+    DatagramSocket socket = new DatagramSocket(new InetSocketAddress("127.0.0.1", 0));
+    try {
+      return (InetSocketAddress) socket.getLocalSocketAddress();
+    } finally {
+      socket.close();
+    }
+  }
+
+  private static class RecordingListener implements InvalidationChannel.Listener {
+    private final BlockingQueue<String> ids = new LinkedBlockingQueue<String>();
+
+    @Override
+    public void invalidated(@NotNull String nodeId) {
+      ids.add(nodeId);
+    }
+  }
+}
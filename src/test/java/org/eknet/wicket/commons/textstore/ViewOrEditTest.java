@@ -0,0 +1,102 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.apache.wicket.markup.html.form.FormComponent;
+import org.apache.wicket.util.tester.FormTester;
+import org.apache.wicket.util.tester.WicketTester;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 14:12
+ */
+public class ViewOrEditTest {
+
+  private final static String storeName = "viewOrEdit";
+  private final static String nodeId = HeadlineTestPage.class.getName();
+
+  private WicketTester tester;
+  private TextNodeStore store;
+
+  @Before
+  public void setUp() {
+    tester = new WicketTester();
+    store = new MemoryTextNodeStore();
+    store.updateNode(nodeId, Collections.singletonMap("headline", "Old headline"));
+    HeadlineTestPage.setStore(storeName, store);
+  }
+
+  @After
+  public void tearDown() {
+    tester.destroy();
+  }
+
+  @Test
+  public void testSwitchModeWithAjax() {
+    tester.startPage(new HeadlineTestPage(ViewOrEdit.Mode.VIEW, storeName).addModeSwitchLink());
+    ViewOrEdit headline = getHeadline();
+    assertEquals(ViewOrEdit.Mode.VIEW, headline.getMode());
+
+    tester.clickLink("switch", true);
+    assertEquals(ViewOrEdit.Mode.EDIT, headline.getMode());
+    tester.assertComponentOnAjaxResponse(headline);
+    assertNotNull(findFormPanel());
+
+    tester.clickLink("switch", true);
+    assertEquals(ViewOrEdit.Mode.VIEW, headline.getMode());
+    tester.assertComponentOnAjaxResponse(headline);
+    assertTrue(tester.getLastResponseAsString().contains("Old headline"));
+  }
+
+  @Test
+  public void testSubmitAfterSwitch() {
+    tester.startPage(new HeadlineTestPage(ViewOrEdit.Mode.VIEW, storeName).addModeSwitchLink());
+    tester.clickLink("switch", true);
+
+    TextNodeFormPanel panel = findFormPanel();
+    String formPath = panel.getForm().getPageRelativePath();
+    FormComponent<String> field = panel.getFormComponent("headline");
+    FormTester form = tester.newFormTester(formPath);
+    form.setValue(field.getPageRelativePath().substring(formPath.length() + 1), "New headline");
+    form.submit();
+
+    assertEquals("New headline", store.getTextNode(nodeId).getText("headline"));
+  }
+
+  private ViewOrEdit getHeadline() {
+    return (ViewOrEdit) tester.getComponentFromLastRenderedPage("headline0");
+  }
+
+  private TextNodeFormPanel findFormPanel() {
+    return tester.getLastRenderedPage().visitChildren(TextNodeFormPanel.class,
+        new IVisitor<TextNodeFormPanel, TextNodeFormPanel>() {
+          @Override
+          public void component(TextNodeFormPanel object, IVisit<TextNodeFormPanel> visit) {
+            visit.stop(object);
+          }
+        });
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2011 Eike Kettner
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.eknet.wicket.commons.textstore;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:eike.kettner@gmail.com">Eike Kettner</a>
+ * @since 18.10.26 09:48
+ */
+public class WriteBehindTextNodeStoreTest {
+
+  private BlockingStore delegate;
+  private WriteBehindTextNodeStore store;
+
+  @Before
+  public void setUp() {
+    delegate = new BlockingStore();
+    store = new WriteBehindTextNodeStore(delegate, 1, TimeUnit.HOURS);
+  }
+
+  @After
+  public void tearDown() {
+    delegate.release();
+    store.shutdown();
+  }
+
+  @Test
+  public void testDeferredWrite() {
+    store.getOrCreateNode("a").setText("title", "Hello");
+    assertEquals("Hello", store.getTextNode("a").getText("title"));
+    assertEquals("Hello", store.getSnapshot("a").getText("title"));
+    assertNull(delegate.getTextNode("a").getText("title"));
+    assertEquals(1, store.getPendingCount());
+
+    store.flush();
+    assertEquals("Hello", delegate.getTextNode("a").getText("title"));
+    assertEquals(0, store.getPendingCount());
+  }
+
+  /**
+   * A flush of changes made while an older flush of the same node is still
+   * writing must not be overtaken by the older one.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testFlushesOfOneNodeAreSerialized() throws Exception {
+    store.getOrCreateNode("a").setText("title", "first");
+    delegate.block();
+    Thread slow = flushInBackground("a");
+    delegate.awaitBlocked();
+
+    store.getOrCreateNode("a").setText("title", "second");
+    assertEquals("second", store.getTextNode("a").getText("title"));
+    Thread fast = flushInBackground("a");
+    Thread.sleep(50);
+    delegate.release();
+    slow.join(5000);
+    fast.join(5000);
+
+    assertEquals("second", delegate.getTextNode("a").getText("title"));
+    assertEquals(0, store.getPendingCount());
+  }
+
+  @Test
+  public void testFailedChangesAreMerged() throws Exception {
+    TextNode node = store.getOrCreateNode("a");
+    node.setText("title", "old title");
+    node.setText("body", "old body");
+    delegate.block();
+    delegate.fail = true;
+    Thread failing = flushInBackground("a");
+    delegate.awaitBlocked();
+
+    node.setText("title", "new title");
+    delegate.release();
+    failing.join(5000);
+
+    assertEquals(1, store.getPendingCount());
+    assertEquals("new title", node.getText("title"));
+    assertEquals("old body", node.getText("body"));
+
+    store.flush();
+    assertEquals("new title", delegate.getTextNode("a").getText("title"));
+    assertEquals("old body", delegate.getTextNode("a").getText("body"));
+  }
+
+  @Test
+  public void testConditionalUpdateWritesPendingChangesFirst() {
+    store.getOrCreateNode("a").setText("title", "Hello");
+    long version = delegate.getTextNode("a").getVersion();
+    long next = store.updateNode("a", version + 1, Collections.singletonMap("body", "World"));
+    assertEquals(version + 2, next);
+    assertEquals("Hello", delegate.getTextNode("a").getText("title"));
+    assertEquals("World", delegate.getTextNode("a").getText("body"));
+  }
+
+  /**
+   * A form rendered while changes are pending reads the version from a node of
+   * this store and must be able to submit against it.
+   */
+  @Test
+  public void testVersionIncludesPendingChanges() {
+    long stored = delegate.getOrCreateNode("a").getVersion();
+    store.getOrCreateNode("a").setText("title", "Hello");
+    long version = store.getTextNode("a").getVersion();
+    assertEquals(stored + 1, version);
+    assertEquals(version, store.getSnapshot("a").getVersion());
+
+    assertEquals(version + 1, store.updateNode("a", version, Collections.singletonMap("body", "World")));
+    assertEquals(0, store.getPendingCount());
+    assertEquals(version + 1, store.getTextNode("a").getVersion());
+    try {
+      store.updateNode("a", version, Collections.singletonMap("body", "stale"));
+      fail("the node has been changed since the version was read");
+    } catch (StaleTextNodeException e) {
+      // expected
+    }
+    assertEquals("World", delegate.getTextNode("a").getText("body"));
+  }
+
+  private Thread flushInBackground(final String id) {
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          store.flush(id);
+        } catch (IllegalStateException e) {
+          //expected by the failing test
+        }
+      }
+    });
+    thread.start();
+    return thread;
+  }
+
+  /**
+   * Blocks the next update until released and fails it if requested.
+   */
+  private static class BlockingStore extends MemoryTextNodeStore {
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+    private final AtomicReference<CountDownLatch> next = new AtomicReference<CountDownLatch>();
+    private volatile boolean fail;
+
+    void block() {
+      next.set(released);
+    }
+
+    void awaitBlocked() throws InterruptedException {
+      assertTrue(blocked.await(5, TimeUnit.SECONDS));
+    }
+
+    void release() {
+      released.countDown();
+    }
+
+    @Override
+    public long updateNode(@NotNull String id, long expectedVersion, @NotNull Map<String, String> changes) {
+      CountDownLatch latch = next.getAndSet(null);
+      if (latch != null) {
+        blocked.countDown();
+        try {
+          latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        if (fail) {
+          throw new IllegalStateException("write failed");
+        }
+      }
+      return super.updateNode(id, expectedVersion, changes);
+    }
+  }
+}